@@ -0,0 +1,93 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.buffer.Buffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the wire encoding of one document's worth of messages: an element batch round trip, a
+ * per-element <code>ShredEvent</code> round trip for comparison, and the round trip of the
+ * document's final <code>TagStats</code>.
+ *
+ * @author Jason Hallford
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class CodecBenchmark {
+  // Fields
+  private static final int BATCH_SIZE = 1024;
+
+  private final ElementBatchCodec batchCodec = new ElementBatchCodec();
+  private final ShredEventCodec eventCodec = new ShredEventCodec();
+  private final TagStatsCodec statsCodec = new TagStatsCodec();
+  private final List<ElementBatch> batches = new ArrayList<>();
+  private TagStats stats;
+
+  // Lifecycle
+  @Setup(Level.Trial)
+  public void buildMessages(DocumentState document) {
+    var batch = new ElementBatch(1, BATCH_SIZE);
+    for (int symbol : document.getSymbols()) {
+      if (batch.isFull()) {
+        this.batches.add(batch);
+        batch = new ElementBatch(1, BATCH_SIZE);
+      }
+      batch.add(symbol);
+    }
+    batch.setLast(true);
+    this.batches.add(batch);
+
+    this.stats = new TagStats();
+    for (int symbol : document.getSymbols()) {
+      this.stats.increment(symbol);
+    }
+  }
+
+  // Benchmarks
+  @Benchmark
+  public void elementBatches(DocumentState document, EventCounters counters, Blackhole blackhole) {
+    for (ElementBatch batch : this.batches) {
+      var buffer = Buffer.buffer();
+      this.batchCodec.encodeToWire(buffer, batch);
+      blackhole.consume(this.batchCodec.decodeFromWire(0, buffer));
+    }
+
+    counters.events += document.getElementCount();
+  }
+
+  @Benchmark
+  public void shredEvents(DocumentState document, EventCounters counters, Blackhole blackhole) {
+    for (int symbol : document.getSymbols()) {
+      var buffer = Buffer.buffer();
+      this.eventCodec.encodeToWire(buffer, ShredEvent.startElement(1, symbol));
+      blackhole.consume(this.eventCodec.decodeFromWire(0, buffer));
+    }
+
+    counters.events += document.getElementCount();
+  }
+
+  @Benchmark
+  public TagStats tagStats() {
+    var buffer = Buffer.buffer();
+    this.statsCodec.encodeToWire(buffer, this.stats);
+    return this.statsCodec.decodeFromWire(0, buffer);
+  }
+}
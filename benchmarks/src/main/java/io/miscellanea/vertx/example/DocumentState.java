@@ -0,0 +1,110 @@
+package io.miscellanea.vertx.example;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A synthetic document shared by the benchmarks. The document's root holds <code>records</code>
+ * record elements, each of which nests <code>depth</code> elements whose names are drawn from
+ * <code>cardinality</code> distinct tag names. The document is generated deterministically, so
+ * every run measures the same input.
+ *
+ * <p>Besides the serialized document, the state exposes its element names as a symbol sequence in
+ * document order, which drives the benchmarks that bypass the parser.
+ *
+ * @author Jason Hallford
+ */
+@State(Scope.Benchmark)
+public class DocumentState {
+  // Fields
+  @Param({"1000", "100000"})
+  public int records;
+
+  @Param({"8", "512"})
+  public int cardinality;
+
+  @Param({"2", "16"})
+  public int depth;
+
+  private byte[] document;
+  private int[] symbols;
+  private Path file;
+
+  // Constructors
+  public DocumentState() {}
+
+  // Lifecycle
+  @Setup(Level.Trial)
+  public void generate() throws IOException {
+    var names = new String[this.cardinality];
+    for (int i = 0; i < names.length; i++) {
+      names[i] = "tag" + i;
+    }
+
+    var table = SymbolTable.shared();
+    var xml = new StringBuilder(this.records * this.depth * 24);
+    this.symbols = new int[2 + this.records * (this.depth + 1)];
+    int count = 0;
+
+    xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<feed>\n");
+    this.symbols[count++] = table.intern("feed");
+    for (int r = 0; r < this.records; r++) {
+      xml.append("<record id=\"").append(r).append("\">");
+      this.symbols[count++] = table.intern("record");
+
+      for (int d = 0; d < this.depth; d++) {
+        var name = names[(r * this.depth + d) % names.length];
+        xml.append('<').append(name).append('>');
+        this.symbols[count++] = table.intern(name);
+      }
+      xml.append("value ").append(r);
+      for (int d = this.depth - 1; d >= 0; d--) {
+        xml.append("</").append(names[(r * this.depth + d) % names.length]).append('>');
+      }
+      xml.append("</record>\n");
+    }
+    xml.append("</feed>\n");
+
+    this.document = xml.toString().getBytes(StandardCharsets.UTF_8);
+    this.symbols = Arrays.copyOf(this.symbols, count);
+    this.file = Files.createTempFile("shred-benchmark-", ".xml");
+    Files.write(this.file, this.document);
+  }
+
+  @TearDown(Level.Trial)
+  public void delete() throws IOException {
+    Files.deleteIfExists(this.file);
+  }
+
+  // Properties
+  public byte[] getDocument() {
+    return document;
+  }
+
+  /**
+   * Gets the symbols of the document's start elements, in document order.
+   *
+   * @return The symbols.
+   */
+  public int[] getSymbols() {
+    return symbols;
+  }
+
+  public int getElementCount() {
+    return symbols.length;
+  }
+
+  public Path getFile() {
+    return file;
+  }
+}
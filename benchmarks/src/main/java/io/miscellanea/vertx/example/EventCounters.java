@@ -0,0 +1,27 @@
+package io.miscellanea.vertx.example;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Counts the element events a benchmark iteration handles, so that JMH reports an events per
+ * second rate next to each operation rate. Allocation per event is <code>gc.alloc.rate.norm</code>
+ * (from <code>-prof gc</code>) divided by the document's element count.
+ *
+ * @author Jason Hallford
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class EventCounters {
+  // Fields
+  public long events;
+
+  // Lifecycle
+  @Setup(Level.Iteration)
+  public void reset() {
+    this.events = 0;
+  }
+}
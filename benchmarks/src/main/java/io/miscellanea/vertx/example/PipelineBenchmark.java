@@ -0,0 +1,133 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Measures a whole job on an embedded Vert.x instance: the scheduler dispatches the document to a
+ * shredder, which drives <code>TagNameXmlEventProcessor</code>, whose batches are counted by
+ * <code>TagNameProcessorVerticle</code>. An operation ends when the processor publishes the job's
+ * statistics on its finished address.
+ *
+ * @author Jason Hallford
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class PipelineBenchmark {
+  // Fields
+  private static final long DEPLOY_TIMEOUT_SECONDS = 30;
+  private static final long JOB_TIMEOUT_SECONDS = 60;
+
+  @Param({"blocking", "async"})
+  public String mode;
+
+  private final Map<Integer, CompletableFuture<Void>> pending = new ConcurrentHashMap<>();
+  private Vertx vertx;
+  private int nextJobId = 1;
+
+  // Lifecycle
+  @Setup(Level.Trial)
+  public void deploy() throws Exception {
+    this.vertx = Vertx.vertx();
+    MessageCodecs.registerDefaults(this.vertx.eventBus());
+    this.vertx
+        .eventBus()
+        .<TagStats>consumer(
+            TagNameProcessorVerticle.JOB_FINISHED_ADDRESS,
+            message -> {
+              var jobId = message.headers().get(TagNameProcessorVerticle.JOB_ID_HEADER);
+              var job = this.pending.remove(Integer.valueOf(jobId));
+              if (job != null) {
+                job.complete(null);
+              }
+            });
+
+    var config = new JsonObject().put("shred-mode", this.mode);
+    this.deployVerticle(TagNameProcessorVerticle.class.getName(), new DeploymentOptions());
+    this.deployVerticle(JobSchedulerVerticle.class.getName(), new DeploymentOptions());
+    this.deployVerticle(
+        "async".equals(this.mode)
+            ? AsyncXmlShredderVerticle.class.getName()
+            : XmlShredderVerticle.class.getName(),
+        new DeploymentOptions().setWorker(!"async".equals(this.mode)).setConfig(config));
+  }
+
+  @TearDown(Level.Trial)
+  public void close() throws Exception {
+    var closed = new CompletableFuture<Void>();
+    this.vertx.close(result -> closed.complete(null));
+    closed.get(DEPLOY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+  }
+
+  // Benchmarks
+  @Benchmark
+  public void shred(DocumentState document, EventCounters counters) throws Exception {
+    int jobId = this.nextJobId++;
+    var job = new CompletableFuture<Void>();
+    this.pending.put(jobId, job);
+
+    this.vertx
+        .eventBus()
+        .request(
+            JobSchedulerVerticle.SUBMIT_ADDRESS,
+            new JsonObject()
+                .put("doc-type", "xml")
+                .put("path-to-file", document.getFile().toString())
+                .put("job-id", jobId),
+            reply -> {
+              if (reply.failed()) {
+                job.completeExceptionally(reply.cause());
+              }
+            });
+    try {
+      job.get(JOB_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    } catch (TimeoutException e) {
+      // A lost result must fail the iteration rather than hang the run.
+      this.pending.remove(jobId);
+      throw new IllegalStateException(
+          "Job " + jobId + " did not finish within " + JOB_TIMEOUT_SECONDS + " seconds.", e);
+    }
+
+    counters.events += document.getElementCount();
+  }
+
+  // Helper methods
+  private void deployVerticle(String name, DeploymentOptions options) throws Exception {
+    var deployed = new CompletableFuture<String>();
+    this.vertx.deployVerticle(
+        name,
+        options,
+        result -> {
+          if (result.succeeded()) {
+            deployed.complete(result.result());
+          } else {
+            deployed.completeExceptionally(result.cause());
+          }
+        });
+    deployed.get(DEPLOY_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+  }
+}
@@ -0,0 +1,75 @@
+package io.miscellanea.vertx.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the parser alone: raw StAX iteration over an in-memory document, and the same
+ * iteration through an <code>XmlCursor</code> that resolves each element's symbol as the shredder
+ * does. The gap between these and <code>PipelineBenchmark</code> is the cost of the event bus.
+ *
+ * @author Jason Hallford
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class StaxBenchmark {
+  // Fields
+  private final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+
+  // Benchmarks
+  @Benchmark
+  public void rawStax(DocumentState document, EventCounters counters, Blackhole blackhole)
+      throws XMLStreamException {
+    var reader =
+        this.inputFactory.createXMLStreamReader(new ByteArrayInputStream(document.getDocument()));
+    try {
+      while (reader.hasNext()) {
+        if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+          blackhole.consume(reader.getLocalName());
+        }
+      }
+    } finally {
+      reader.close();
+    }
+
+    counters.events += document.getElementCount();
+  }
+
+  @Benchmark
+  public void cursor(DocumentState document, EventCounters counters, Blackhole blackhole)
+      throws XMLStreamException {
+    var reader =
+        this.inputFactory.createXMLStreamReader(new ByteArrayInputStream(document.getDocument()));
+    var cursor = new XmlCursor(reader, SymbolTable.shared());
+    try {
+      while (cursor.hasNext()) {
+        cursor.next();
+        if (cursor.isStartElement()) {
+          blackhole.consume(cursor.getLocalNameSymbol());
+        }
+      }
+    } finally {
+      reader.close();
+    }
+
+    counters.events += document.getElementCount();
+  }
+}
@@ -0,0 +1,84 @@
+package io.miscellanea.vertx.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures counter updates for one document's worth of element observations: per-symbol and
+ * batched updates to <code>TagStats</code>, against a string-keyed <code>HashMap</code> baseline.
+ *
+ * @author Jason Hallford
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlogback.configurationFile=logback-benchmark.xml")
+public class TagStatsBenchmark {
+  // Fields
+  private static final int BATCH_SIZE = 1024;
+
+  private String[] names;
+
+  // Lifecycle
+  @Setup(Level.Trial)
+  public void resolveNames(DocumentState document) {
+    var symbols = document.getSymbols();
+    this.names = new String[symbols.length];
+    for (int i = 0; i < symbols.length; i++) {
+      this.names[i] = SymbolTable.shared().nameOf(symbols[i]);
+    }
+  }
+
+  // Benchmarks
+  @Benchmark
+  public TagStats increment(DocumentState document, EventCounters counters) {
+    var stats = new TagStats();
+    for (int symbol : document.getSymbols()) {
+      stats.increment(symbol);
+    }
+
+    counters.events += document.getElementCount();
+    return stats;
+  }
+
+  @Benchmark
+  public TagStats incrementAll(DocumentState document, EventCounters counters) {
+    var stats = new TagStats();
+    var symbols = document.getSymbols();
+    var batch = new int[BATCH_SIZE];
+    for (int offset = 0; offset < symbols.length; offset += BATCH_SIZE) {
+      int length = Math.min(BATCH_SIZE, symbols.length - offset);
+      System.arraycopy(symbols, offset, batch, 0, length);
+      stats.incrementAll(batch, length);
+    }
+
+    counters.events += document.getElementCount();
+    return stats;
+  }
+
+  @Benchmark
+  public Map<String, Long> hashMap(DocumentState document, EventCounters counters) {
+    var counts = new HashMap<String, Long>();
+    for (String name : this.names) {
+      counts.merge(name, 1L, Long::sum);
+    }
+
+    counters.events += document.getElementCount();
+    return counts;
+  }
+}
@@ -0,0 +1,1190 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.eventbus.ReplyFailure;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base class for verticles that "shred" XML documents by cooperating with one or more
+ * processor-provided content handlers. It loads the providers, owns the shredder's private event bus
+ * addresses and the job lifecycle messages exchanged over them; subclasses decide how a document's
+ * bytes reach the parser.
+ *
+ * @author Jason Hallford
+ */
+public abstract class AbstractXmlShredderVerticle extends AbstractVerticle {
+  // Fields
+  private static final Logger LOGGER = LoggerFactory.getLogger(AbstractXmlShredderVerticle.class);
+
+  private static final int DEFAULT_MAX_ACTIVE_JOBS = 4;
+  private static final long REGISTER_RETRY_MS = 1000L;
+  private static final int DEFAULT_BATCH_SIZE = 1000;
+  private static final long DEFAULT_BATCH_TIME_BUDGET_MS = 5L;
+  private static final int DEFAULT_DECOMPRESS_CHUNK_SIZE = 64 * 1024;
+  private static final int DEFAULT_DECOMPRESS_CHUNK_COUNT = 16;
+  private static final String DEFAULT_CHECKPOINT_DIR = "checkpoints";
+  private static final int MAX_PENDING_RESULTS = 1024;
+
+  /**
+   * The address on which shredders publish the end of every job. Each event carries the job's
+   * <code>job-id</code>, the <code>origin-job-id</code> of the job it was derived from, and the
+   * number of <code>successors</code> that replaced it: zero for a job that was shredded, or the
+   * number of parts or archive entries it was resubmitted as. A failed job also carries its <code>
+   * error</code>. A submitted job is complete once it and all of its successors have ended.
+   */
+  public static final String JOB_ENDED_ADDRESS = "xml.shred.ended";
+
+  /** The request field naming the submitted job from which a split part or archive entry came. */
+  public static final String ORIGIN_JOB_ID = "origin-job-id";
+
+  /**
+   * The request field marking a job as a successor of an admitted job. The scheduler admits
+   * successors whether or not its queue is full, since their origin was already counted against it.
+   */
+  public static final String SUCCESSOR = "successor";
+
+  /**
+   * The request field naming a job's priority class, one of the keys of <code>
+   * shred-priority-weights</code>. Jobs without one, or with an unknown one, are in the <code>
+   * shred-default-priority</code> class.
+   */
+  public static final String PRIORITY = "priority";
+
+  /**
+   * The request field holding a JSON object of processor properties that override the configured
+   * <code>processor-properties</code> for one job, such as <code>tag-name.mode</code>.
+   */
+  public static final String PROCESSOR_PROPERTIES = "processor-properties";
+
+  /** A result a job's provider will publish, and the key under which it will be cached. */
+  private static final class PendingResult {
+    private final XmlResultBinding binding;
+    private final String key;
+
+    private PendingResult(XmlResultBinding binding, String key) {
+      this.binding = binding;
+      this.key = key;
+    }
+  }
+
+  /** How often, in events, a pump checks the clock against its time budget. */
+  protected static final int CLOCK_CHECK_INTERVAL = 64;
+
+  private List<XmlEventProcessorProviderSPI> providers = new ArrayList<>();
+  private JsonObject processorProperties;
+  private Map<Integer, List<XmlEventProcessorContext>> processorContexts = new HashMap<>();
+  private Map<Integer, Integer> unfinishedProcessors = new HashMap<>();
+  private Map<Integer, Integer> jobOrigins = new HashMap<>();
+  private boolean fanOut;
+  private Map<List<String>, XmlPathMachine> pathMachines = new HashMap<>();
+  private int decompressChunkSize;
+  private int decompressChunkCount;
+  private CheckpointStore checkpointStore;
+  private Map<Integer, List<String>> jobProviders = new HashMap<>();
+  private Map<Integer, Checkpoint> resumePoints = new HashMap<>();
+  private Map<Integer, String> checkpointKeys = new HashMap<>();
+  private Set<Integer> checkpointedJobs = new HashSet<>();
+  private Map<Integer, JsonObject> jobProperties = new HashMap<>();
+  private ResultCache resultCache;
+  private Map<String, Boolean> resultAddresses = new HashMap<>();
+
+  // A job whose result never arrives, such as a split job with a failed part, is forgotten once
+  // enough newer jobs are waiting.
+  private Map<Integer, Map<String, PendingResult>> pendingResults =
+      new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Map<String, PendingResult>> eldest) {
+          return this.size() > MAX_PENDING_RESULTS;
+        }
+      };
+
+  private String privateJobAddress;
+  private String privateNextAddress;
+  private String privateEndAddress;
+  private String privateErrorAddress;
+  private String privateCreditAddress;
+
+  protected int batchSize;
+  protected long batchTimeBudgetNanos;
+  protected long checkpointIntervalBytes;
+  protected ShredMetrics metrics;
+
+  // Vert.x lifecycle methods
+  @Override
+  public void start(Promise<Void> startPromise) {
+    LOGGER.info("Starting XML Shredder verticle ({}).", this.getClass().getSimpleName());
+
+    var identifier = ClusterNode.qualify(this);
+    this.privateJobAddress = "xml.shred.job." + identifier;
+    this.privateNextAddress = "xml.shred.next." + identifier;
+    this.privateEndAddress = "xml.shred.end." + identifier;
+    this.privateErrorAddress = "xml.shred.error." + identifier;
+    this.privateCreditAddress = "xml.shred.credit." + identifier;
+
+    this.processorProperties = config().getJsonObject("processor-properties", new JsonObject());
+    this.fanOut = config().getBoolean("shred-fan-out", false);
+    this.decompressChunkSize =
+        config().getInteger("decompress-chunk-size", DEFAULT_DECOMPRESS_CHUNK_SIZE);
+    this.decompressChunkCount =
+        config().getInteger("decompress-chunk-count", DEFAULT_DECOMPRESS_CHUNK_COUNT);
+    this.metrics = new ShredMetrics(ShredMetrics.registry(), String.valueOf(this.hashCode()));
+
+    this.checkpointIntervalBytes = config().getLong("checkpoint-interval-bytes", 0L);
+    if (this.checkpointIntervalBytes > 0 && this.supportsCheckpoints()) {
+      var directory = config().getString("checkpoint-dir", DEFAULT_CHECKPOINT_DIR);
+      this.checkpointStore = new CheckpointStore(Path.of(directory));
+    }
+    this.resultCache = ResultCache.shared(config()).orElse(null);
+
+    this.batchSize = Math.max(1, config().getInteger("shred-batch-size", DEFAULT_BATCH_SIZE));
+    this.batchTimeBudgetNanos =
+        TimeUnit.MILLISECONDS.toNanos(
+            config().getLong("shred-batch-time-budget-ms", DEFAULT_BATCH_TIME_BUDGET_MS));
+    LOGGER.debug(
+        "Event pump will process at most {} event(s) or {} ns per batch.",
+        this.batchSize,
+        this.batchTimeBudgetNanos);
+
+    // Via the Java Service Loader, load all content handler providers.
+    getVertx()
+        .executeBlocking(
+            this::loadContentHandlers,
+            result -> {
+              if (result.succeeded()) {
+                // Registering shredding handler; jobs are pulled from the scheduler.
+                getVertx().eventBus().consumer(this.privateJobAddress, this::shredDocument);
+
+                // Create private address for XML event iteration.
+                getVertx().eventBus().consumer(this.privateNextAddress, this::nextElement);
+                getVertx().eventBus().consumer(this.privateEndAddress, this::endShredding);
+                getVertx().eventBus().consumer(this.privateErrorAddress, this::handleError);
+                for (int i = 0; i < Math.max(1, this.providers.size()); i++) {
+                  int index = i;
+                  getVertx()
+                      .eventBus()
+                      .<JsonObject>consumer(
+                          this.privateCreditAddress + "." + index,
+                          message -> this.grantCredits(message, index));
+                }
+                LOGGER.debug("Registered private event bus addresses.");
+
+                if (this.acceptsScheduledJobs()) {
+                  this.registerWithScheduler(startPromise);
+                } else {
+                  startPromise.complete();
+                }
+              } else {
+                startPromise.fail("Unable to initialize XML Shredder verticle.");
+              }
+            });
+  }
+
+  @Override
+  public void stop() {
+    if (this.checkpointStore != null) {
+      this.checkpointKeys.values().forEach(this.checkpointStore::release);
+    }
+    if (!this.acceptsScheduledJobs()) {
+      return;
+    }
+
+    getVertx()
+        .eventBus()
+        .send(
+            JobSchedulerVerticle.UNREGISTER_ADDRESS,
+            new JsonObject().put("address", this.privateJobAddress));
+  }
+
+  // Initialization
+  private void registerWithScheduler(Promise<Void> startPromise) {
+    int maxActiveJobs = config().getInteger("shred-max-active-jobs", DEFAULT_MAX_ACTIVE_JOBS);
+
+    getVertx()
+        .eventBus()
+        .request(
+            JobSchedulerVerticle.REGISTER_ADDRESS,
+            new JsonObject().put("address", this.privateJobAddress).put("capacity", maxActiveJobs),
+            reply -> {
+              if (reply.succeeded()) {
+                LOGGER.debug("Registered with the job scheduler; capacity = {}.", maxActiveJobs);
+                startPromise.complete();
+              } else if (getVertx().isClustered()
+                  && reply.cause() instanceof ReplyException
+                  && ((ReplyException) reply.cause()).failureType() == ReplyFailure.NO_HANDLERS) {
+                // The scheduler runs on one node of the cluster, which may not have started yet.
+                LOGGER.debug("Waiting for a node of the cluster to start the job scheduler.");
+                getVertx()
+                    .setTimer(
+                        REGISTER_RETRY_MS, timerId -> this.registerWithScheduler(startPromise));
+              } else {
+                startPromise.fail("Unable to register with the job scheduler.");
+              }
+            });
+  }
+
+  private void loadContentHandlers(Promise<Object> promise) {
+    LOGGER.debug("Loading content handler providers from classpath.");
+
+    try {
+      var loader = ServiceLoader.load(XmlEventProcessorProviderSPI.class);
+
+      if (loader != null) {
+        for (XmlEventProcessorProviderSPI provider : loader) {
+          LOGGER.debug("Adding '{}' to provider list.", provider.getName());
+          this.providers.add(provider);
+        }
+      } else {
+        LOGGER.warn(
+            "No content handler providers registered in class path; shredding is disabled.");
+      }
+      promise.complete();
+    } catch (Exception e) {
+      LOGGER.error("Unable to load content handlers; shredding is disabled.", e);
+      promise.fail(e);
+    }
+  }
+
+  // Vert.x handlers
+  private void shredDocument(Message<JsonObject> message) {
+    LOGGER.debug("Attempting to shred document.");
+    var jobId = message.body().getInteger("job-id");
+
+    // The scheduler requeues a job that no shredder acknowledges.
+    message.reply(new JsonObject().put("job-id", jobId).put("accepted", true));
+    this.jobOrigins.put(jobId, message.body().getInteger(ORIGIN_JOB_ID, jobId));
+    this.setJobProperties(jobId, message.body().getJsonObject(PROCESSOR_PROPERTIES));
+
+    this.tryExpandArchive(
+        message.body(),
+        expanded -> {
+          if (expanded) {
+            LOGGER.debug("Job {} was expanded into one job per archive entry.", jobId);
+            this.releaseSlot(jobId);
+          } else {
+            this.shredSingleDocument(message.body());
+          }
+        });
+  }
+
+  /** Continues a job whose document is not an archive of several entries. */
+  private void shredSingleDocument(JsonObject request) {
+    var jobId = request.getInteger("job-id");
+    this.tryCachedResult(
+        request,
+        answered -> {
+          if (answered) {
+            this.releaseSlot(jobId);
+          } else {
+            this.shredUncachedDocument(request);
+          }
+        });
+  }
+
+  /** Continues a job whose results are not cached. */
+  private void shredUncachedDocument(JsonObject request) {
+    // Find the first content provider that supports the specified doc type.
+    var docType = request.getString("doc-type");
+    var jobId = request.getInteger("job-id");
+
+    if (this.trySplit(request)) {
+      LOGGER.debug("Job {} was split into parts.", jobId);
+      this.releaseSlot(jobId);
+      return;
+    }
+
+    var processor =
+        this.createProcessor(
+            jobId, docType, request.getJsonObject("part"), this.findCheckpoint(request));
+    if (processor.isPresent()) {
+      this.beginShredding(request, processor.get());
+    } else {
+      this.releaseCheckpoint(jobId);
+      this.releaseSlot(jobId);
+      this.publishJobEnded(jobId, 0, "No processor handles doc type '" + docType + "'.");
+    }
+  }
+
+  private void nextElement(Message<ShredEvent> message) {
+    var jobId = message.body().getJobId();
+
+    LOGGER.debug("Received nextElement() for job {}.", jobId);
+    this.continueShredding(jobId);
+  }
+
+  private void endShredding(Message<ShredEvent> message) {
+    var jobId = message.body().getJobId();
+    if (!this.processorContexts.containsKey(jobId)) {
+      LOGGER.debug("Ignoring end of job {}, which has already ended.", jobId);
+      return;
+    }
+
+    // With fan-out, the job ends when its last processor finishes.
+    int unfinished = this.unfinishedProcessors.merge(jobId, -1, Integer::sum);
+    if (unfinished > 0) {
+      LOGGER.debug("Job {} has {} processor(s) still running.", jobId, unfinished);
+      return;
+    }
+
+    LOGGER.info("Shredding completed for job {}. Cleaning up context.", jobId);
+    this.cleanupContext(jobId);
+    this.forgetJob(jobId);
+
+    // The document is done, so its checkpoint is no longer needed. The claim is held until the
+    // checkpoint is gone, so that no new job resumes from it.
+    this.checkpointedJobs.remove(jobId);
+    var key = this.checkpointKeys.remove(jobId);
+    if (key != null) {
+      getVertx()
+          .executeBlocking(
+              promise -> {
+                this.checkpointStore.delete(key);
+                promise.complete();
+              },
+              false,
+              result -> this.checkpointStore.release(key));
+    }
+    this.metrics.jobFinished(jobId, true);
+    this.releaseSlot(jobId);
+    this.publishJobEnded(jobId, 0, null);
+    this.jobEnded(jobId, null);
+  }
+
+  private void handleError(Message<ShredEvent> message) {
+    var jobId = message.body().getJobId();
+    var error = message.body().getMessage();
+    if (!this.processorContexts.containsKey(jobId)) {
+      LOGGER.debug("Ignoring error for job {}, which has already ended: {}", jobId, error);
+      return;
+    }
+
+    LOGGER.warn("Shredding for job {} terminated with an error: {}", jobId, error);
+    this.pendingResults.remove(jobId);
+    this.cleanupContext(jobId);
+    this.forgetJob(jobId);
+    if (this.checkpointedJobs.remove(jobId)) {
+      LOGGER.info("Job {} will resume from its last checkpoint when it is resubmitted.", jobId);
+    }
+    this.releaseCheckpoint(jobId);
+    this.metrics.jobFinished(jobId, false);
+    this.releaseSlot(jobId);
+    this.publishJobEnded(jobId, 0, error);
+    this.jobEnded(jobId, error);
+  }
+
+  private void recordResult(Message<Object> message) {
+    var header = message.headers().get(TagNameProcessorVerticle.JOB_ID_HEADER);
+    var jobResults = header != null ? this.pendingResults.get(Integer.valueOf(header)) : null;
+    var pending = jobResults != null ? jobResults.remove(message.address()) : null;
+    if (pending == null) {
+      // Another shredder's job, or a result answered from the cache.
+      return;
+    }
+
+    if (jobResults.isEmpty()) {
+      this.pendingResults.remove(Integer.valueOf(header));
+    }
+    var result = pending.binding.encode(message.body());
+    getVertx()
+        .executeBlocking(
+            promise -> {
+              this.resultCache.put(pending.key, result);
+              promise.complete();
+            },
+            false,
+            cached -> LOGGER.debug("Cached the result of job {} for '{}'.", header, pending.key));
+  }
+
+  private void grantCredits(Message<JsonObject> message, int index) {
+    var jobId = message.body().getInteger("job-id");
+    var jobContexts = this.processorContexts.get(jobId);
+
+    // Grants may trail a job that has already finished.
+    if (jobContexts != null && index < jobContexts.size()) {
+      this.deliverCredits(jobId, jobContexts.get(index), message.body().getLong("credits"));
+    }
+  }
+
+  // Helper methods
+
+  /**
+   * Creates the processor for a job, and begins tracking the job's processor contexts and metrics.
+   * The processor comes from the first provider that handles the job's document type or, in
+   * fan-out mode, from every such provider, combined by a <code>FanOutProcessor</code>. A provider
+   * that handles the type but supplies no processor, or has an invalid subscription, is skipped in
+   * favor of the next one, and the context it was offered is cleaned up. Each provider's processor
+   * gets its own context, with its own credit address, and sees only the events the provider
+   * subscribed to.
+   *
+   * @param jobId The job identifier.
+   * @param docType The document type.
+   * @param part The job's part descriptor if it is one part of a split document, or <code>null
+   *     </code>.
+   * @return The processor, or an empty optional if no provider supplied one.
+   */
+  protected Optional<XmlStreamProcessor> createProcessor(
+      Integer jobId, String docType, JsonObject part) {
+    return this.createProcessor(jobId, docType, part, null);
+  }
+
+  /**
+   * Creates the processor for a job that may resume from a checkpoint. The checkpoint is used only
+   * if it was taken from the same providers' processors, in which case each processor's context is
+   * given its saved state and <code>getResumePoint</code> returns the checkpoint.
+   *
+   * @param jobId The job identifier.
+   * @param docType The document type.
+   * @param part The job's part descriptor, or <code>null</code>.
+   * @param checkpoint The document's checkpoint, or <code>null</code>.
+   * @return The processor, or an empty optional if no provider supplied one.
+   */
+  private Optional<XmlStreamProcessor> createProcessor(
+      Integer jobId, String docType, JsonObject part, Checkpoint checkpoint) {
+    LOGGER.debug("Looking for content handler providers.");
+
+    var jobContexts = new ArrayList<XmlEventProcessorContext>();
+    var processors = new ArrayList<XmlStreamProcessor>();
+    var providerNames = new ArrayList<String>();
+    var subscriptions = new ArrayList<XmlSubscription>();
+    var machines = new ArrayList<XmlPathMachine>();
+    for (XmlEventProcessorProviderSPI provider : this.providers) {
+      var processorContext = this.createProcessorContext(jobId, jobContexts.size());
+      if (!provider.handlesDocType(docType, processorContext)) {
+        processorContext.cleanup();
+        continue;
+      }
+
+      if (part != null) {
+        processorContext.putProperty(
+            XmlEventProcessorContext.PARENT_JOB_ID_PROPERTY,
+            String.valueOf(part.getInteger("parent-job-id")));
+        processorContext.putProperty(
+            XmlEventProcessorContext.PART_COUNT_PROPERTY,
+            String.valueOf(part.getInteger("part-count")));
+        processorContext.putProperty(
+            XmlEventProcessorContext.PART_INDEX_PROPERTY,
+            String.valueOf(part.getInteger("part-index")));
+        if (part.getLong("start") > 0) {
+          var rootName = part.getString("root-name");
+          processorContext.putProperty(
+              XmlEventProcessorContext.ROOT_NAME_PROPERTY,
+              rootName.substring(rootName.indexOf(':') + 1));
+        }
+      }
+
+      var subscription = provider.getSubscription(processorContext);
+      XmlPathMachine machine = null;
+      if (!subscription.isAll()) {
+        try {
+          machine =
+              this.pathMachines.computeIfAbsent(
+                  subscription.getPaths(), paths -> new XmlPathMachine(paths, SymbolTable.shared()));
+        } catch (IllegalArgumentException e) {
+          LOGGER.error(
+              "Provider '{}' has an invalid subscription: {}", provider.getName(), e.getMessage());
+          processorContext.cleanup();
+          continue;
+        }
+      }
+
+      var processor = provider.provideStreamProcessor(processorContext);
+      if (processor.isPresent()) {
+        jobContexts.add(processorContext);
+        processors.add(processor.get());
+        providerNames.add(provider.getName());
+        subscriptions.add(subscription);
+        machines.add(machine);
+        if (!this.fanOut) {
+          break;
+        }
+      } else {
+        // The next provider that handles the document type is asked in its place.
+        LOGGER.error(
+            "Provider '{}' did not provide a processor for job {}.", provider.getName(), jobId);
+        processorContext.cleanup();
+      }
+    }
+
+    if (processors.isEmpty()) {
+      LOGGER.error("No content handler provider handles doc type '{}' (job = {}).", docType, jobId);
+      return Optional.empty();
+    }
+
+    if (checkpoint != null && !checkpoint.getProviders().equals(providerNames)) {
+      LOGGER.info(
+          "Job {} will not resume from its checkpoint, which was taken by other providers.", jobId);
+      checkpoint = null;
+    }
+    int replayedElements = 0;
+    if (checkpoint != null) {
+      for (int i = 0; i < jobContexts.size(); i++) {
+        jobContexts.get(i).setRestoredState(checkpoint.getProcessorStates().get(i));
+      }
+      replayedElements = checkpoint.getOpenElements().size();
+      this.resumePoints.put(jobId, checkpoint);
+    }
+
+    for (int i = 0; i < processors.size(); i++) {
+      processors.set(
+          i,
+          this.filter(
+              processors.get(i), subscriptions.get(i), machines.get(i), part, replayedElements));
+    }
+
+    this.processorContexts.put(jobId, jobContexts);
+    this.unfinishedProcessors.put(jobId, processors.size());
+    this.jobProviders.put(jobId, providerNames);
+    this.metrics.jobStarted(jobId);
+
+    if (processors.size() == 1) {
+      return Optional.of(processors.get(0));
+    }
+
+    LOGGER.debug("Fanning job {} out to {} processors.", jobId, processors.size());
+    return Optional.of(new FanOutProcessor(jobId, processors, jobContexts, this));
+  }
+
+  /**
+   * Wraps a processor in the filters its job needs: one that hides a part's synthetic root element
+   * or the elements a resumed job replays and, outside it so that paths still see those elements,
+   * one that applies the provider's subscription. A replay filter also observes every event from
+   * outside the subscription filter, which withholds some of the replayed elements.
+   */
+  private XmlStreamProcessor filter(
+      XmlStreamProcessor processor,
+      XmlSubscription subscription,
+      XmlPathMachine machine,
+      JsonObject part,
+      int replayedElements) {
+    if (part != null) {
+      processor =
+          new SyntheticRootFilter(
+              processor, part.getLong("start") > 0, part.getLong("end") < part.getLong("size"));
+    }
+    ReplayedStackFilter replay = null;
+    if (replayedElements > 0) {
+      replay = new ReplayedStackFilter(processor, replayedElements);
+      processor = replay;
+    }
+
+    if (machine != null) {
+      processor = new SubscriptionFilter(processor, subscription, machine);
+    }
+    return replay != null ? replay.observing(processor) : processor;
+  }
+
+  /**
+   * Resubmits a job as the jobs that replace it, such as the parts of a split document, and
+   * announces the replacement on <code>JOB_ENDED_ADDRESS</code>. Each successor is tagged with the
+   * job's origin. A successor the scheduler does not accept is announced as failed, so that the
+   * origin still counts every successor it was promised.
+   *
+   * @param request The replaced job's <code>xml.shred</code> request.
+   * @param successors The successors' requests, each with its own <code>job-id</code>.
+   */
+  protected void submitSuccessors(JsonObject request, List<JsonObject> successors) {
+    var jobId = request.getInteger("job-id");
+    int originJobId = request.getInteger(ORIGIN_JOB_ID, jobId);
+
+    // Announce the successors before any of them can end.
+    this.publishJobEnded(jobId, successors.size(), null);
+    for (JsonObject successor : successors) {
+      var successorId = successor.getInteger("job-id");
+      getVertx()
+          .eventBus()
+          .request(
+              JobSchedulerVerticle.SUBMIT_ADDRESS,
+              successor.put(ORIGIN_JOB_ID, originJobId).put(SUCCESSOR, true),
+              reply -> {
+                if (reply.failed()) {
+                  LOGGER.error(
+                      "Unable to submit job {} (origin = {}).",
+                      successorId,
+                      originJobId,
+                      reply.cause());
+                  this.jobOrigins.put(successorId, originJobId);
+                  this.publishJobEnded(
+                      successorId, 0, "Unable to submit job: " + reply.cause().getMessage());
+                }
+              });
+    }
+  }
+
+  /**
+   * Starts decompressing a job's input on a dedicated thread.
+   *
+   * @param jobId The job identifier.
+   * @param opener Opens the decompressed stream; called on the pipe's thread.
+   * @return The running pipe.
+   */
+  protected DecompressionPipe decompress(Integer jobId, Callable<InputStream> opener) {
+    return new DecompressionPipe(
+            opener, this.decompressChunkSize, this.decompressChunkCount, "xml-inflater-" + jobId)
+        .start();
+  }
+
+  /**
+   * Resubmits a zip archive with more than one file entry as one job per entry, each naming its
+   * entry with <code>zip-entry</code>. Archives with a single entry are shredded as they are. Only
+   * the archive's first bytes and central directory are read, on a worker thread so that an event
+   * loop shredder is not blocked.
+   *
+   * @param request The <code>xml.shred</code> request.
+   * @param handler Called on this verticle's context with <code>true</code> if the job was
+   *     expanded and must not be shredded itself.
+   */
+  private void tryExpandArchive(JsonObject request, Handler<Boolean> handler) {
+    var pathToFile = request.getString("path-to-file");
+    if (pathToFile == null || request.containsKey("zip-entry") || request.containsKey("part")) {
+      handler.handle(false);
+      return;
+    }
+
+    getVertx()
+        .<List<String>>executeBlocking(
+            promise -> {
+              try {
+                var path = Path.of(pathToFile);
+                promise.complete(
+                    Compression.detect(path) == Compression.ZIP
+                        ? Compression.listEntries(path)
+                        : List.of());
+              } catch (IOException e) {
+                // The shredder reports the failure when it opens the document.
+                LOGGER.debug(
+                    "Unable to inspect '{}' for archive entries: {}", pathToFile, e.getMessage());
+                promise.complete(List.of());
+              }
+            },
+            false,
+            listed -> {
+              if (listed.failed() || listed.result().size() < 2) {
+                handler.handle(false);
+              } else {
+                this.expandArchive(request, listed.result());
+                handler.handle(true);
+              }
+            });
+  }
+
+  private void expandArchive(JsonObject request, List<String> entries) {
+    var pathToFile = request.getString("path-to-file");
+    LOGGER.info(
+        "Expanding archive '{}' (job = {}) into {} job(s).",
+        pathToFile,
+        request.getInteger("job-id"),
+        entries.size());
+    var successors = new ArrayList<JsonObject>(entries.size());
+    for (String entry : entries) {
+      int entryJobId = JobIds.next();
+      LOGGER.info("Archive entry '{}' is job {}.", entry, entryJobId);
+      successors.add(request.copy().put("job-id", entryJobId).put("zip-entry", entry));
+    }
+    this.submitSuccessors(request, successors);
+  }
+
+  /**
+   * Answers a job from the result cache if every provider that would handle its document has
+   * published a result for the same content and settings before. Each cached result is published
+   * on its binding's address, as the provider's processor would have, and the job ends without the
+   * document being opened. On a miss, the job's results are recorded as they are published. Only
+   * whole documents named by path are cached. The document is fingerprinted, and the cache
+   * consulted, on a worker thread, since either may read files.
+   *
+   * @param request The <code>xml.shred</code> request.
+   * @param handler Called on this verticle's context with <code>true</code> if the job was
+   *     answered and must not be shredded.
+   */
+  private void tryCachedResult(JsonObject request, Handler<Boolean> handler) {
+    var pathToFile = request.getString("path-to-file");
+    if (this.resultCache == null
+        || pathToFile == null
+        || request.containsKey("part")
+        || request.containsKey("zip-entry")) {
+      handler.handle(false);
+      return;
+    }
+
+    var jobId = request.getInteger("job-id");
+    var docType = request.getString("doc-type");
+    var bindings = new ArrayList<Map.Entry<String, XmlResultBinding>>();
+    for (XmlEventProcessorProviderSPI provider : this.providers) {
+      var processorContext = this.createProcessorContext(jobId, bindings.size());
+      try {
+        if (!provider.handlesDocType(docType, processorContext)) {
+          continue;
+        }
+
+        var binding = provider.getResultBinding(processorContext);
+        if (binding.isEmpty()) {
+          LOGGER.debug("Provider '{}' does not cache its results.", provider.getName());
+          handler.handle(false);
+          return;
+        }
+        bindings.add(Map.entry(provider.getName(), binding.get()));
+      } finally {
+        processorContext.cleanup();
+      }
+
+      if (!this.fanOut) {
+        break;
+      }
+    }
+
+    if (bindings.isEmpty()) {
+      handler.handle(false);
+      return;
+    }
+
+    var pending = new LinkedHashMap<String, PendingResult>();
+    getVertx()
+        .<List<Object>>executeBlocking(
+            promise -> {
+              String fingerprint;
+              try {
+                fingerprint = this.resultCache.fingerprint(Path.of(pathToFile));
+              } catch (IOException e) {
+                // The shredder reports the failure when it opens the document.
+                LOGGER.debug("Unable to fingerprint '{}': {}", pathToFile, e.getMessage());
+                promise.complete(null);
+                return;
+              }
+
+              bindings.forEach(
+                  binding ->
+                      pending.put(
+                          binding.getValue().getAddress(),
+                          new PendingResult(
+                              binding.getValue(),
+                              this.resultCache.keyFor(
+                                  binding.getKey(), binding.getValue(), fingerprint))));
+              var cached = new ArrayList<Object>(pending.size());
+              for (PendingResult result : pending.values()) {
+                var found = this.resultCache.get(result.key);
+                if (found.isEmpty()) {
+                  break;
+                }
+                cached.add(result.binding.decode(found.get()));
+              }
+              promise.complete(cached);
+            },
+            false,
+            looked -> {
+              if (looked.failed() || looked.result() == null) {
+                handler.handle(false);
+              } else if (looked.result().size() < pending.size()) {
+                pending.keySet().forEach(this::listenForResults);
+                this.pendingResults.put(jobId, pending);
+                handler.handle(false);
+              } else {
+                this.publishCachedResults(jobId, pending, looked.result());
+                handler.handle(true);
+              }
+            });
+  }
+
+  private void publishCachedResults(
+      Integer jobId, Map<String, PendingResult> pending, List<Object> cached) {
+    int i = 0;
+    for (PendingResult result : pending.values()) {
+      LOGGER.info("Job {} was answered from the result cache. Result: {}", jobId, cached.get(i));
+      getVertx()
+          .eventBus()
+          .publish(
+              result.binding.getAddress(),
+              cached.get(i++),
+              new DeliveryOptions()
+                  .addHeader(TagNameProcessorVerticle.JOB_ID_HEADER, String.valueOf(jobId)));
+    }
+    this.publishJobEnded(jobId, 0, null);
+    this.jobEnded(jobId, null);
+  }
+
+  private void listenForResults(String address) {
+    if (this.resultAddresses.putIfAbsent(address, Boolean.TRUE) == null) {
+      getVertx().eventBus().consumer(address, this::recordResult);
+    }
+  }
+
+  /**
+   * Gets the result bindings of a running job's providers. A job whose providers declare no binding
+   * ends without publishing a result.
+   *
+   * @param jobId The job identifier.
+   * @return The bindings, in the order of the job's processors; empty if the job is not running.
+   */
+  protected List<XmlResultBinding> getResultBindings(Integer jobId) {
+    var providerNames = this.jobProviders.get(jobId);
+    var jobContexts = this.processorContexts.get(jobId);
+    if (providerNames == null || jobContexts == null) {
+      return List.of();
+    }
+
+    var bindings = new ArrayList<XmlResultBinding>(providerNames.size());
+    for (int i = 0; i < providerNames.size(); i++) {
+      for (XmlEventProcessorProviderSPI provider : this.providers) {
+        if (provider.getName().equals(providerNames.get(i))) {
+          provider.getResultBinding(jobContexts.get(i)).ifPresent(bindings::add);
+          break;
+        }
+      }
+    }
+    return bindings;
+  }
+
+  /**
+   * Gets the checkpoint from which a job resumes.
+   *
+   * @param jobId The job identifier.
+   * @return The checkpoint, or an empty optional if the job starts from the beginning.
+   */
+  protected Optional<Checkpoint> getResumePoint(Integer jobId) {
+    return Optional.ofNullable(this.resumePoints.get(jobId));
+  }
+
+  /**
+   * Determines if a job's progress may be checkpointed: checkpoints must be enabled, the job must
+   * hold the claim on its document's checkpoint, and every one of the job's processors must be able
+   * to save its state.
+   *
+   * @param jobId The job identifier.
+   * @return <code>true</code> if <code>saveCheckpoint</code> may be called for the job.
+   */
+  protected boolean isCheckpointable(Integer jobId) {
+    var jobContexts = this.processorContexts.get(jobId);
+    return this.checkpointStore != null
+        && this.checkpointKeys.containsKey(jobId)
+        && jobContexts != null
+        && jobContexts.stream().allMatch(XmlEventProcessorContext::isCheckpointable);
+  }
+
+  /**
+   * Saves a job's progress through a document. The processors' states are captured first, so the
+   * shredder must not deliver further events until <code>done</code> runs, whether or not the
+   * checkpoint could be saved.
+   *
+   * @param jobId The job identifier.
+   * @param document The document.
+   * @param offset The offset just past the last end tag read.
+   * @param openElements The start tags of the elements open at <code>offset</code>, from the root.
+   * @param done Called on this verticle's context once the checkpoint is saved or abandoned.
+   */
+  protected void saveCheckpoint(
+      Integer jobId,
+      Path document,
+      long offset,
+      List<Checkpoint.OpenElement> openElements,
+      Runnable done) {
+    var key = this.checkpointKeys.get(jobId);
+    var jobContexts = this.processorContexts.get(jobId);
+    var states = new ArrayList<Future<JsonObject>>(jobContexts.size());
+    jobContexts.forEach(processorContext -> states.add(processorContext.checkpoint()));
+
+    // CompositeFuture takes a list of raw futures; an unmodifiable view widens this one to it.
+    CompositeFuture.all(Collections.unmodifiableList(states))
+        .compose(
+            captured -> {
+              Promise<Void> saved = Promise.promise();
+              getVertx()
+                  .executeBlocking(
+                      promise -> {
+                        try {
+                          this.checkpointStore.save(
+                              key,
+                              new Checkpoint(
+                                  Files.size(document),
+                                  Files.getLastModifiedTime(document).toMillis(),
+                                  offset,
+                                  openElements,
+                                  this.jobProviders.get(jobId),
+                                  captured.list()));
+                          promise.complete();
+                        } catch (IOException e) {
+                          promise.fail(e);
+                        }
+                      },
+                      false,
+                      saved);
+              return saved.future();
+            })
+        .setHandler(
+            result -> {
+              if (result.succeeded()) {
+                LOGGER.debug("Checkpointed job {} at offset {}.", jobId, offset);
+                if (this.processorContexts.containsKey(jobId)) {
+                  this.checkpointedJobs.add(jobId);
+                }
+              } else {
+                LOGGER.warn(
+                    "Unable to checkpoint job {} at offset {}: {}",
+                    jobId,
+                    offset,
+                    result.cause().getMessage());
+              }
+              done.run();
+            });
+  }
+
+  /**
+   * Claims the checkpoint of the whole, uncompressed document a request names, and loads it if it
+   * exists. A job that cannot claim the checkpoint, because another job with the same processor
+   * properties is shredding the document, starts from the beginning and is not checkpointed.
+   */
+  private Checkpoint findCheckpoint(JsonObject request) {
+    var pathToFile = request.getString("path-to-file");
+    if (this.checkpointStore == null
+        || pathToFile == null
+        || request.containsKey("part")
+        || request.containsKey("zip-entry")) {
+      return null;
+    }
+
+    var jobId = request.getInteger("job-id");
+    var document = Path.of(pathToFile);
+    var key = this.checkpointStore.claim(document, this.getEffectiveProperties(jobId));
+    if (key.isEmpty()) {
+      LOGGER.info(
+          "Job {} will not be checkpointed; another job is shredding '{}' with its properties.",
+          jobId,
+          pathToFile);
+      return null;
+    }
+    this.checkpointKeys.put(jobId, key.get());
+
+    var checkpoint = this.checkpointStore.load(document, key.get());
+    checkpoint.ifPresent(
+        found ->
+            LOGGER.info(
+                "Job {} will resume '{}' from its checkpoint at offset {}.",
+                jobId,
+                pathToFile,
+                found.getOffset()));
+    return checkpoint.orElse(null);
+  }
+
+  private void releaseCheckpoint(Integer jobId) {
+    var key = this.checkpointKeys.remove(jobId);
+    if (key != null) {
+      this.checkpointStore.release(key);
+    }
+  }
+
+  private void forgetJob(Integer jobId) {
+    var jobContexts = this.processorContexts.remove(jobId);
+    if (jobContexts != null) {
+      jobContexts.forEach(XmlEventProcessorContext::cleanup);
+    }
+    this.unfinishedProcessors.remove(jobId);
+    this.jobProviders.remove(jobId);
+    this.resumePoints.remove(jobId);
+  }
+
+  protected XmlEventProcessorContext createProcessorContext(Integer jobId, int index) {
+    var processorContext =
+        new XmlEventProcessorContext(
+            jobId,
+            this.getProcessorEventBus(jobId),
+            this.privateNextAddress,
+            this.privateEndAddress,
+            this.privateErrorAddress,
+            this.privateCreditAddress + "." + index);
+    this.getEffectiveProperties(jobId).forEach(processorContext::putProperty);
+
+    return processorContext;
+  }
+
+  /**
+   * Gets the processor properties a job's processors are given: the configured ones, overridden by
+   * the job's own.
+   *
+   * @param jobId The job identifier.
+   * @return A map of property name to value.
+   */
+  private Map<String, String> getEffectiveProperties(Integer jobId) {
+    var properties = new LinkedHashMap<String, String>();
+    this.processorProperties.forEach(
+        property -> properties.put(property.getKey(), String.valueOf(property.getValue())));
+    var overrides = this.jobProperties.get(jobId);
+    if (overrides != null) {
+      overrides.forEach(
+          property -> properties.put(property.getKey(), String.valueOf(property.getValue())));
+    }
+    return properties;
+  }
+
+  /**
+   * Sets the processor properties that override the configured ones for a job's processors. They
+   * are forgotten when the job ends.
+   *
+   * @param jobId The job identifier.
+   * @param properties The overriding properties, or <code>null</code> to forget them.
+   */
+  protected void setJobProperties(Integer jobId, JsonObject properties) {
+    if (properties != null && !properties.isEmpty()) {
+      this.jobProperties.put(jobId, properties);
+    } else {
+      this.jobProperties.remove(jobId);
+    }
+  }
+
+  /**
+   * Announces the end of a job on <code>JOB_ENDED_ADDRESS</code>, and forgets the job's origin and
+   * property overrides.
+   *
+   * @param jobId The job identifier.
+   * @param successors The number of jobs that replace it, or zero if it was shredded.
+   * @param error The reason the job failed, or <code>null</code>.
+   */
+  private void publishJobEnded(Integer jobId, int successors, String error) {
+    this.jobProperties.remove(jobId);
+    var origin = this.jobOrigins.remove(jobId);
+    var event =
+        new JsonObject()
+            .put("job-id", jobId)
+            .put(ORIGIN_JOB_ID, origin != null ? origin : jobId)
+            .put("successors", successors);
+    if (error != null) {
+      event.put("error", error);
+    }
+
+    getVertx().eventBus().publish(JOB_ENDED_ADDRESS, event);
+  }
+
+  /** Tells the scheduler a job has left this shredder, freeing a slot for the next one. */
+  private void releaseSlot(Integer jobId) {
+    if (!this.acceptsScheduledJobs()) {
+      return;
+    }
+
+    getVertx()
+        .eventBus()
+        .send(
+            JobSchedulerVerticle.READY_ADDRESS,
+            new JsonObject().put("address", this.privateJobAddress).put("job-id", jobId));
+  }
+
+  protected void sendNext(Integer jobId) {
+    getVertx().eventBus().send(this.privateNextAddress, ShredEvent.next(jobId));
+  }
+
+  protected void sendError(Integer jobId, String errorMessage) {
+    getVertx().eventBus().send(this.privateErrorAddress, ShredEvent.error(jobId, errorMessage));
+  }
+
+  // Subclass responsibilities
+
+  /**
+   * Gets the event bus given to a job's processors. Shredders that run processors off this
+   * verticle's context override this to bring the handlers processors register back to the job.
+   *
+   * @param jobId The job identifier.
+   * @return This verticle's event bus, by default.
+   */
+  protected EventBus getProcessorEventBus(Integer jobId) {
+    return getVertx().eventBus();
+  }
+
+  /**
+   * Grants credits to one of a job's processors. By default, the grant is applied at once, on this
+   * verticle's context.
+   *
+   * @param jobId The job identifier.
+   * @param context The processor's context.
+   * @param credits The number of credits granted.
+   */
+  protected void deliverCredits(Integer jobId, XmlEventProcessorContext context, long credits) {
+    context.grantCredits(credits);
+  }
+
+  /**
+   * Tells whether this shredder registers with the job scheduler. Shredders that create their own
+   * jobs, such as the HTTP ingestion server, return <code>false</code>.
+   *
+   * @return <code>true</code> by default.
+   */
+  protected boolean acceptsScheduledJobs() {
+    return true;
+  }
+
+  /**
+   * Called after a job has finished or failed and its context has been cleaned up. Does nothing by
+   * default.
+   *
+   * @param jobId The job identifier.
+   * @param error The error message if the job failed, or <code>null</code>.
+   */
+  protected void jobEnded(Integer jobId, String error) {}
+
+  /**
+   * Tells whether this shredder can take checkpoints and resume jobs from them. Shredders that do
+   * call <code>saveCheckpoint</code> as they read, and open a job at <code>getResumePoint</code>.
+   *
+   * @return <code>false</code> by default.
+   */
+  protected boolean supportsCheckpoints() {
+    return false;
+  }
+
+  /**
+   * Gives the shredder a chance to cut a large document into parts that are shredded in parallel.
+   * A shredder that splits a job resubmits each part to the scheduler with a <code>part</code>
+   * descriptor. By default, documents are never split.
+   *
+   * @param request The <code>xml.shred</code> request.
+   * @return <code>true</code> if the job was split and must not be shredded as a whole.
+   */
+  protected boolean trySplit(JsonObject request) {
+    return false;
+  }
+
+  /**
+   * Opens the document described by a shredding request and begins delivering its events to the
+   * processor. If the document cannot be opened, implementations must report the failure with
+   * <code>sendError</code> so the job's slot is released.
+   *
+   * @param request The <code>xml.shred</code> request.
+   * @param processor The job's processor.
+   */
+  protected abstract void beginShredding(JsonObject request, XmlStreamProcessor processor);
+
+  /**
+   * Resumes delivering events for a job after its processor, or the shredder's own event pump,
+   * yielded.
+   *
+   * @param jobId The job identifier.
+   */
+  protected abstract void continueShredding(Integer jobId);
+
+  /**
+   * Releases the resources held for a job once it has finished or failed.
+   *
+   * @param jobId The job identifier.
+   */
+  protected abstract void cleanupContext(Integer jobId);
+}
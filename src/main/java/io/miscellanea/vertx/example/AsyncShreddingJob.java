@@ -0,0 +1,195 @@
+package io.miscellanea.vertx.example;
+
+import com.fasterxml.aalto.AsyncByteBufferFeeder;
+import com.fasterxml.aalto.AsyncXMLStreamReader;
+import com.fasterxml.aalto.stax.InputFactoryImpl;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.ReadStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLStreamException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Shreds a document whose bytes arrive on a Vert.x <code>ReadStream</code>, feeding them into a
+ * non-blocking (push) XML tokenizer. Parsing never blocks: when the tokenizer runs out of input the
+ * job resumes the stream, and when the processor applies backpressure, or the event pump exhausts its
+ * budget, the job pauses the stream until <code>resume</code> is called.
+ *
+ * <p>Instances are confined to the event loop of the verticle that created them.
+ *
+ * @author Jason Hallford
+ */
+public class AsyncShreddingJob {
+  // Fields
+  private static final Logger LOGGER = LoggerFactory.getLogger(AsyncShreddingJob.class);
+  private static final InputFactoryImpl INPUT_FACTORY = new InputFactoryImpl();
+
+  private final Integer jobId;
+  private final ReadStream<Buffer> source;
+  private final XmlStreamProcessor processor;
+  private final AbstractXmlShredderVerticle shredder;
+  private final AsyncXMLStreamReader<AsyncByteBufferFeeder> reader;
+  private final XmlCursor cursor;
+  private final Deque<Buffer> pendingInput = new ArrayDeque<>();
+
+  private boolean stalled = false;
+  private boolean inputEnded = false;
+  private boolean endOfInputSignalled = false;
+  private boolean failed = false;
+
+  // Constructors
+  public AsyncShreddingJob(
+      Integer jobId,
+      ReadStream<Buffer> source,
+      XmlStreamProcessor processor,
+      AbstractXmlShredderVerticle shredder) {
+    assert jobId != null : "jobId must not be null.";
+    this.jobId = jobId;
+
+    assert source != null : "source must not be null.";
+    this.source = source;
+
+    assert processor != null : "processor must not be null.";
+    this.processor = processor;
+
+    assert shredder != null : "shredder must not be null.";
+    this.shredder = shredder;
+
+    this.reader = INPUT_FACTORY.createAsyncForByteBuffer();
+    this.cursor = new XmlCursor(this.reader, SymbolTable.shared());
+  }
+
+  // Properties
+  public Integer getJobId() {
+    return jobId;
+  }
+
+  // Methods
+
+  /** Begins consuming the source stream. */
+  public void start() {
+    this.source.exceptionHandler(this::fail);
+    this.source.endHandler(
+        v -> {
+          this.inputEnded = true;
+          if (!this.stalled) {
+            this.drain();
+          }
+        });
+    this.source.handler(
+        buffer -> {
+          this.shredder.metrics.bytesRead(buffer.length());
+          this.pendingInput.add(buffer);
+          if (!this.stalled) {
+            this.drain();
+          }
+        });
+  }
+
+  /** Resumes delivering events after the processor or the event pump yielded. */
+  public void resume() {
+    this.stalled = false;
+    this.drain();
+  }
+
+  /** Releases the tokenizer. The source stream is owned, and closed, by the caller. */
+  public void close() {
+    try {
+      this.reader.close();
+    } catch (XMLStreamException e) {
+      LOGGER.error(
+          "Received an exception closing the XML stream reader for job "
+              + this.jobId
+              + "; cleanup will continue.",
+          e);
+    }
+  }
+
+  // Helper methods
+  private void drain() {
+    if (this.failed) {
+      return;
+    }
+
+    long deadline = System.nanoTime() + this.shredder.batchTimeBudgetNanos;
+    int processed = 0;
+
+    try {
+      while (this.cursor.hasNext()) {
+        if (this.cursor.advance() == AsyncXMLStreamReader.EVENT_INCOMPLETE) {
+          if (!this.feed()) {
+            return;
+          }
+          continue;
+        }
+
+        if (!this.processor.process(this.cursor)) {
+          // The processor will resume the job (or has finished it).
+          this.stall();
+          return;
+        }
+        if (this.cursor.isStartElement() && this.processor.skipsSubtree()) {
+          this.cursor.skipElement();
+        }
+
+        processed++;
+        if (processed >= this.shredder.batchSize
+            || (processed % AbstractXmlShredderVerticle.CLOCK_CHECK_INTERVAL == 0
+                && System.nanoTime() >= deadline)) {
+          LOGGER.debug("Batch budget exhausted for job {}; yielding to the event bus.", jobId);
+          this.stall();
+          this.shredder.sendNext(this.jobId);
+          return;
+        }
+      }
+    } catch (XMLStreamException e) {
+      LOGGER.error("XML stream processing raised an exception.", e);
+      this.fail(e);
+    } finally {
+      this.shredder.metrics.eventsParsed(processed);
+    }
+  }
+
+  /**
+   * Gives the tokenizer more input after it reported an incomplete event.
+   *
+   * @return <code>true</code> if input was supplied and tokenizing may continue; <code>false</code>
+   *     if the job must wait for the source to deliver more bytes.
+   */
+  private boolean feed() throws XMLStreamException {
+    var buffer = this.pendingInput.poll();
+    if (buffer != null) {
+      this.reader.getInputFeeder().feedInput(buffer.getByteBuf().nioBuffer());
+      return true;
+    }
+
+    if (this.inputEnded) {
+      if (this.endOfInputSignalled) {
+        throw new XMLStreamException("Unexpected end of input; the document is incomplete.");
+      }
+
+      this.endOfInputSignalled = true;
+      this.reader.getInputFeeder().endOfInput();
+      return true;
+    }
+
+    this.source.resume();
+    return false;
+  }
+
+  private void stall() {
+    this.stalled = true;
+    this.source.pause();
+  }
+
+  private void fail(Throwable t) {
+    if (!this.failed) {
+      this.failed = true;
+      this.source.pause();
+      this.shredder.sendError(this.jobId, t.getMessage());
+    }
+  }
+}
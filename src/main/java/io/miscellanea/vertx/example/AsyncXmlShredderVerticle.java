@@ -0,0 +1,152 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.streams.ReadStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A standard (event loop) verticle that "shreds" XML documents without blocking. Files are read
+ * through Vert.x <code>AsyncFile</code>s and parsed by an <code>AsyncShreddingJob</code>, so a
+ * single event loop may keep many jobs in flight without a worker thread per open file. Only
+ * compressed documents get a thread of their own, which decompresses them.
+ *
+ * @author Jason Hallford
+ */
+public class AsyncXmlShredderVerticle extends AbstractXmlShredderVerticle {
+  // Fields
+  private static final Logger LOGGER = LoggerFactory.getLogger(AsyncXmlShredderVerticle.class);
+
+  private static final int DEFAULT_READ_BUFFER_SIZE = 64 * 1024;
+
+  private Map<Integer, AsyncShreddingJob> jobs = new HashMap<>();
+  private Map<Integer, AsyncFile> files = new HashMap<>();
+  private Map<Integer, DecompressionPipe> pipes = new HashMap<>();
+
+  // Constructors
+  public AsyncXmlShredderVerticle() {}
+
+  // AbstractXmlShredderVerticle
+  @Override
+  protected void beginShredding(JsonObject request, XmlStreamProcessor processor) {
+    var jobId = request.getInteger("job-id");
+    var pathToFile = request.getString("path-to-file");
+    int readBufferSize = config().getInteger("async-read-buffer-size", DEFAULT_READ_BUFFER_SIZE);
+
+    getVertx()
+        .fileSystem()
+        .open(
+            pathToFile,
+            new OpenOptions().setRead(true).setWrite(false).setCreate(false),
+            result -> {
+              if (result.failed()) {
+                LOGGER.error("Unable to open document '" + pathToFile + "'.", result.cause());
+                this.sendError(jobId, "Unable to open document: " + result.cause().getMessage());
+                return;
+              }
+
+              var file = result.result().setReadBufferSize(readBufferSize);
+              this.files.put(jobId, file);
+              file.read(
+                  Buffer.buffer(Compression.HEADER_LENGTH),
+                  0,
+                  0L,
+                  Compression.HEADER_LENGTH,
+                  header -> {
+                    if (header.failed()) {
+                      LOGGER.error("Unable to read document '" + pathToFile + "'.", header.cause());
+                      this.sendError(
+                          jobId, "Unable to read document: " + header.cause().getMessage());
+                      return;
+                    }
+
+                    var bytes = header.result().getBytes();
+                    var compression = Compression.detect(bytes, bytes.length);
+                    if (compression == Compression.NONE) {
+                      this.startJob(jobId, file, processor);
+                    } else {
+                      this.startCompressedJob(jobId, request, compression, processor);
+                    }
+                    LOGGER.info(
+                        "Begin shredding for XML document '{}' (job = {})", pathToFile, jobId);
+                  });
+            });
+  }
+
+  /**
+   * Begins shredding a document whose bytes arrive on a stream. The stream is paused whenever the
+   * job cannot accept more input.
+   *
+   * @param jobId The job identifier.
+   * @param source The document's bytes.
+   * @param processor The job's processor.
+   */
+  protected void startJob(Integer jobId, ReadStream<Buffer> source, XmlStreamProcessor processor) {
+    var job = new AsyncShreddingJob(jobId, source, processor, this);
+    this.jobs.put(jobId, job);
+    job.start();
+  }
+
+  /**
+   * Begins shredding a compressed document, which is decompressed on its own thread. The thread
+   * reads the file with blocking I/O, so the event loop never does.
+   */
+  private void startCompressedJob(
+      Integer jobId, JsonObject request, Compression compression, XmlStreamProcessor processor) {
+    var path = Path.of(request.getString("path-to-file"));
+    var entry = request.getString("zip-entry");
+
+    // The pipe reads the file itself.
+    var file = this.files.remove(jobId);
+    if (file != null) {
+      file.close();
+    }
+
+    var pipe =
+        this.decompress(
+            jobId,
+            () ->
+                compression == Compression.ZIP
+                    ? Compression.openEntry(path, entry)
+                    : compression.decompress(Files.newInputStream(path)));
+    this.pipes.put(jobId, pipe);
+    this.startJob(jobId, pipe.readStream(this.context), processor);
+  }
+
+  @Override
+  protected void continueShredding(Integer jobId) {
+    var job = this.jobs.get(jobId);
+
+    if (job != null) {
+      job.resume();
+    } else {
+      LOGGER.warn("Received nextElement() for unknown job {}.", jobId);
+    }
+  }
+
+  @Override
+  protected void cleanupContext(Integer jobId) {
+    var job = this.jobs.remove(jobId);
+    if (job != null) {
+      job.close();
+    }
+
+    var file = this.files.remove(jobId);
+    if (file != null) {
+      file.close();
+    }
+
+    var pipe = this.pipes.remove(jobId);
+    if (pipe != null) {
+      pipe.close();
+    }
+  }
+}
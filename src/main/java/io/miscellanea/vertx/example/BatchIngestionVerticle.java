@@ -0,0 +1,378 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Promise;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A worker verticle that shreds a batch of files: every file in a directory, every file matching a
+ * glob, or every file listed in a manifest. Files are submitted to the job scheduler in order of
+ * their estimated work, largest first, so that the biggest documents start early and the batch does
+ * not end with one shredder working through a giant file while the others sit idle. At most <code>
+ * batch-max-outstanding</code> files are in the scheduler at once, which keeps the order in the
+ * batch verticle, where files discovered later can still overtake smaller ones.
+ *
+ * <p>Batch files are submitted in the <code>batch-priority</code> class, <code>bulk</code> by
+ * default, so that documents submitted interactively are not held up behind the batch.
+ *
+ * <p>With <code>batch-watch</code>, the source is rescanned periodically and new files join the
+ * backlog once their size has stopped changing. Whenever the batch runs dry, it reports its
+ * aggregate throughput.
+ *
+ * @author Jason Hallford
+ */
+public class BatchIngestionVerticle extends AbstractVerticle {
+  private static class BatchFile {
+    private final Path path;
+    private final long size;
+    private final long work;
+    private final long sequence;
+    private int remainingJobs = 1;
+    private String error;
+
+    public BatchFile(Path path, long size, long work, long sequence) {
+      this.path = path;
+      this.size = size;
+      this.work = work;
+      this.sequence = sequence;
+    }
+  }
+
+  // Fields
+  private static final Logger LOGGER = LoggerFactory.getLogger(BatchIngestionVerticle.class);
+
+  private static final String ORDER_LARGEST_FIRST = "largest-first";
+  private static final String ORDER_ESTIMATED_WORK = "estimated-work";
+  private static final String ORDER_DISCOVERY = "discovery";
+
+  private static final long DEFAULT_WATCH_INTERVAL_MS = 5000L;
+  private static final long RETRY_DELAY_MS = 250L;
+  private static final int DEFAULT_COMPRESSION_RATIO = 8;
+  private static final String DEFAULT_PRIORITY = "bulk";
+
+  private final Set<Path> seen = new HashSet<>();
+  private final Map<Path, Long> unsettled = new HashMap<>();
+  private final Map<Integer, BatchFile> outstanding = new HashMap<>();
+  private PriorityQueue<BatchFile> backlog;
+
+  private String source;
+  private Path manifest;
+  private boolean watch;
+  private String order;
+  private String priority;
+  private int compressionRatio;
+  private int maxOutstanding;
+  private long sequence = 0;
+  private boolean retryScheduled = false;
+
+  private long startNanos;
+  private int filesShredded;
+  private int filesFailed;
+  private long bytesShredded;
+
+  // Constructors
+  public BatchIngestionVerticle() {}
+
+  // Vert.x lifecycle methods
+  @Override
+  public void start(Promise<Void> startPromise) {
+    this.source = config().getString("batch-source", "");
+    var manifestPath = config().getString("batch-manifest", "");
+    this.manifest = manifestPath.isBlank() ? null : Path.of(manifestPath);
+    this.watch = config().getBoolean("batch-watch", false);
+    this.order = config().getString("batch-order", ORDER_LARGEST_FIRST);
+    this.priority = config().getString("batch-priority", DEFAULT_PRIORITY);
+    this.compressionRatio =
+        config().getInteger("batch-compression-ratio", DEFAULT_COMPRESSION_RATIO);
+
+    // By default, keep every shredder slot busy with one more job queued behind it.
+    int slots =
+        config().getInteger("shred-verticle-count", 1)
+            * config().getInteger("shred-max-active-jobs", 4);
+    this.maxOutstanding = config().getInteger("batch-max-outstanding", 0);
+    if (this.maxOutstanding <= 0) {
+      this.maxOutstanding = 2 * slots;
+    }
+
+    if (this.source.isBlank() && this.manifest == null) {
+      startPromise.fail("Set batch-source or batch-manifest to run a batch.");
+      return;
+    }
+
+    switch (this.order) {
+      case ORDER_LARGEST_FIRST:
+      case ORDER_ESTIMATED_WORK:
+        this.backlog =
+            new PriorityQueue<>(
+                Comparator.comparingLong((BatchFile file) -> -file.work)
+                    .thenComparingLong(file -> file.sequence));
+        break;
+      case ORDER_DISCOVERY:
+        this.backlog = new PriorityQueue<>(Comparator.comparingLong(file -> file.sequence));
+        break;
+      default:
+        startPromise.fail("Unknown batch-order '" + this.order + "'.");
+        return;
+    }
+
+    getVertx().eventBus().consumer(AbstractXmlShredderVerticle.JOB_ENDED_ADDRESS, this::jobEnded);
+
+    this.scan();
+    if (this.watch) {
+      long interval = config().getLong("batch-watch-interval-ms", DEFAULT_WATCH_INTERVAL_MS);
+      getVertx().setPeriodic(interval, id -> this.scan());
+      LOGGER.info("Watching for new files every {} ms.", interval);
+    }
+
+    this.submit();
+    startPromise.complete();
+  }
+
+  // Vert.x handlers
+  private void jobEnded(Message<JsonObject> message) {
+    var event = message.body();
+    var file = this.outstanding.get(event.getInteger(AbstractXmlShredderVerticle.ORIGIN_JOB_ID));
+    if (file == null) {
+      // Not one of this batch's jobs.
+      return;
+    }
+
+    file.remainingJobs += event.getInteger("successors") - 1;
+    if (event.containsKey("error") && file.error == null) {
+      file.error = event.getString("error");
+    }
+    if (file.remainingJobs > 0) {
+      return;
+    }
+
+    this.outstanding.remove(event.getInteger(AbstractXmlShredderVerticle.ORIGIN_JOB_ID));
+    if (file.error == null) {
+      this.filesShredded++;
+      this.bytesShredded += file.size;
+      LOGGER.debug("Shredded '{}'.", file.path);
+    } else {
+      this.filesFailed++;
+      LOGGER.warn("Unable to shred '{}': {}", file.path, file.error);
+    }
+
+    this.submit();
+  }
+
+  // Helper methods
+
+  /** Adds files that have appeared in the source since the last scan to the backlog. */
+  private void scan() {
+    List<Path> paths;
+    try {
+      paths = this.listSource();
+    } catch (IOException e) {
+      LOGGER.error("Unable to list the batch's files.", e);
+      return;
+    }
+
+    // A watched batch's clock restarts when new files end a quiet spell.
+    boolean idle = this.outstanding.isEmpty() && this.backlog.isEmpty();
+    int added = 0;
+    for (Path path : paths) {
+      if (this.seen.contains(path)) {
+        continue;
+      }
+
+      try {
+        long size = Files.size(path);
+
+        // A watched file joins the backlog once its size is the same on two consecutive scans.
+        if (this.watch && !Long.valueOf(size).equals(this.unsettled.put(path, size))) {
+          continue;
+        }
+        this.unsettled.remove(path);
+        this.seen.add(path);
+        this.backlog.add(new BatchFile(path, size, this.estimateWork(path, size), this.sequence++));
+        added++;
+      } catch (IOException e) {
+        LOGGER.warn("Unable to inspect '{}'; it will be retried: {}", path, e.getMessage());
+      }
+    }
+
+    if (added > 0) {
+      if (idle) {
+        this.startNanos = System.nanoTime();
+      }
+      LOGGER.info("Added {} file(s) to the batch; {} waiting.", added, this.backlog.size());
+      this.submit();
+    }
+  }
+
+  private List<Path> listSource() throws IOException {
+    var paths = new ArrayList<Path>();
+
+    if (this.manifest != null) {
+      var base = this.manifest.toAbsolutePath().getParent();
+      for (String line : Files.readAllLines(this.manifest)) {
+        line = line.strip();
+        if (!line.isEmpty() && !line.startsWith("#")) {
+          paths.add(base.resolve(line).normalize());
+        }
+      }
+    }
+
+    if (!this.source.isBlank()) {
+      var directory = Path.of(this.source);
+      if (Files.isDirectory(directory)) {
+        try (Stream<Path> files = Files.list(directory)) {
+          paths.addAll(files.filter(Files::isRegularFile).collect(Collectors.toList()));
+        }
+      } else {
+        paths.addAll(this.glob(this.source));
+      }
+    }
+
+    return paths;
+  }
+
+  /**
+   * Lists the files matching a glob. The walk starts at the pattern's longest prefix without
+   * wildcards and descends only as deep as the pattern can match, unless it contains <code>**
+   * </code>.
+   */
+  private List<Path> glob(String pattern) throws IOException {
+    var absolute = Path.of(pattern).toAbsolutePath().toString();
+    int wildcard = indexOfWildcard(absolute);
+    if (wildcard < 0) {
+      var file = Path.of(absolute);
+      return Files.isRegularFile(file) ? List.of(file) : List.of();
+    }
+
+    var root = Path.of(absolute.substring(0, absolute.lastIndexOf('/', wildcard) + 1));
+    int depth =
+        absolute.contains("**")
+            ? Integer.MAX_VALUE
+            : root.relativize(Path.of(absolute.replaceAll("[*?\\[\\]{}]", "_"))).getNameCount();
+    var matcher = FileSystems.getDefault().getPathMatcher("glob:" + absolute);
+
+    try (Stream<Path> files = Files.walk(root, depth)) {
+      return files
+          .filter(path -> Files.isRegularFile(path) && matcher.matches(path))
+          .collect(Collectors.toList());
+    }
+  }
+
+  private static int indexOfWildcard(String pattern) {
+    for (int i = 0; i < pattern.length(); i++) {
+      if ("*?[{".indexOf(pattern.charAt(i)) >= 0) {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+  /** Estimates a file's work from its size; compressed files expand to several times their size. */
+  private long estimateWork(Path path, long size) throws IOException {
+    if (ORDER_ESTIMATED_WORK.equals(this.order)
+        && Compression.detect(path) != Compression.NONE) {
+      return size * this.compressionRatio;
+    }
+
+    return size;
+  }
+
+  /** Submits files from the backlog until the batch has its maximum outstanding. */
+  private void submit() {
+    while (this.outstanding.size() < this.maxOutstanding && !this.backlog.isEmpty()) {
+      var file = this.backlog.poll();
+      int jobId = JobIds.next();
+      this.outstanding.put(jobId, file);
+
+      getVertx()
+          .eventBus()
+          .<JsonObject>request(
+              JobSchedulerVerticle.SUBMIT_ADDRESS,
+              new JsonObject()
+                  .put("doc-type", "xml")
+                  .put("path-to-file", file.path.toString())
+                  .put("job-id", jobId)
+                  .put(AbstractXmlShredderVerticle.PRIORITY, this.priority),
+              reply -> {
+                if (reply.succeeded()) {
+                  return;
+                }
+
+                this.outstanding.remove(jobId);
+                if (reply.cause() instanceof ReplyException
+                    && ((ReplyException) reply.cause()).failureCode()
+                        == JobSchedulerVerticle.QUEUE_FULL) {
+                  // The scheduler is shared with other submitters; try again shortly.
+                  this.backlog.add(file);
+                  this.retryLater();
+                } else {
+                  this.filesFailed++;
+                  LOGGER.warn(
+                      "Unable to submit '{}': {}", file.path, reply.cause().getMessage());
+                  this.submit();
+                }
+              });
+    }
+
+    if (this.outstanding.isEmpty() && this.backlog.isEmpty()) {
+      this.report();
+    }
+  }
+
+  private void retryLater() {
+    if (!this.retryScheduled) {
+      this.retryScheduled = true;
+      getVertx()
+          .setTimer(
+              RETRY_DELAY_MS,
+              id -> {
+                this.retryScheduled = false;
+                this.submit();
+              });
+    }
+  }
+
+  /** Logs the batch's aggregate throughput, once for every time the batch runs dry. */
+  private void report() {
+    if (this.filesShredded + this.filesFailed == 0) {
+      return;
+    }
+
+    double seconds = (System.nanoTime() - this.startNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+    double megabytes = this.bytesShredded / (1024.0 * 1024.0);
+    LOGGER.info(
+        String.format(
+            "Batch finished: %d file(s) shredded, %d failed, %.1f MB in %.2f s "
+                + "(%.1f files/s, %.1f MB/s).",
+            this.filesShredded,
+            this.filesFailed,
+            megabytes,
+            seconds,
+            this.filesShredded / seconds,
+            megabytes / seconds));
+
+    this.filesShredded = 0;
+    this.filesFailed = 0;
+    this.bytesShredded = 0;
+  }
+}
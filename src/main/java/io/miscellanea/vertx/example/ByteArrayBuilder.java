@@ -0,0 +1,128 @@
+package io.miscellanea.vertx.example;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A growable byte array that row sinks encode into. Text is encoded to UTF-8 directly from a <code>
+ * CharSequence</code>, so encoding a value allocates nothing once the array has grown to fit.
+ *
+ * <p>Instances are not thread-safe.
+ *
+ * @author Jason Hallford
+ */
+public final class ByteArrayBuilder {
+  // Fields
+  private byte[] bytes;
+  private int size = 0;
+
+  // Constructors
+  public ByteArrayBuilder(int initialCapacity) {
+    assert initialCapacity > 0 : "initialCapacity must be positive.";
+    this.bytes = new byte[initialCapacity];
+  }
+
+  // Properties
+  public int size() {
+    return size;
+  }
+
+  // Methods
+  public ByteArrayBuilder reset() {
+    this.size = 0;
+    return this;
+  }
+
+  public ByteArrayBuilder append(int b) {
+    this.ensureCapacity(this.size + 1);
+    this.bytes[this.size++] = (byte) b;
+    return this;
+  }
+
+  public ByteArrayBuilder append(ByteArrayBuilder other) {
+    this.ensureCapacity(this.size + other.size);
+    System.arraycopy(other.bytes, 0, this.bytes, this.size, other.size);
+    this.size += other.size;
+    return this;
+  }
+
+  /** Appends an integer as four big-endian bytes. */
+  public ByteArrayBuilder appendInt(int value) {
+    this.ensureCapacity(this.size + 4);
+    this.bytes[this.size++] = (byte) (value >>> 24);
+    this.bytes[this.size++] = (byte) (value >>> 16);
+    this.bytes[this.size++] = (byte) (value >>> 8);
+    this.bytes[this.size++] = (byte) value;
+    return this;
+  }
+
+  /** Appends a non-negative integer in as few bytes as it needs, seven bits at a time. */
+  public ByteArrayBuilder appendVarInt(int value) {
+    assert value >= 0 : "value must not be negative.";
+    while ((value & ~0x7f) != 0) {
+      this.append((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    return this.append(value);
+  }
+
+  /**
+   * Appends text encoded as UTF-8. An unpaired surrogate is encoded as <code>?</code>.
+   *
+   * @param text The text.
+   * @return This builder.
+   */
+  public ByteArrayBuilder appendUtf8(CharSequence text) {
+    int length = text.length();
+    this.ensureCapacity(this.size + length * 3);
+
+    var local = this.bytes;
+    int position = this.size;
+    for (int i = 0; i < length; i++) {
+      char c = text.charAt(i);
+      if (c < 0x80) {
+        local[position++] = (byte) c;
+      } else if (c < 0x800) {
+        local[position++] = (byte) (0xc0 | (c >> 6));
+        local[position++] = (byte) (0x80 | (c & 0x3f));
+      } else if (Character.isHighSurrogate(c)
+          && i + 1 < length
+          && Character.isLowSurrogate(text.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, text.charAt(++i));
+        local[position++] = (byte) (0xf0 | (codePoint >> 18));
+        local[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+        local[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+        local[position++] = (byte) (0x80 | (codePoint & 0x3f));
+      } else if (Character.isSurrogate(c)) {
+        local[position++] = '?';
+      } else {
+        local[position++] = (byte) (0xe0 | (c >> 12));
+        local[position++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+        local[position++] = (byte) (0x80 | (c & 0x3f));
+      }
+    }
+    this.size = position;
+
+    return this;
+  }
+
+  /**
+   * Copies the builder's bytes into a buffer.
+   *
+   * @param buffer The buffer, which must have room for <code>size()</code> bytes.
+   */
+  public void copyTo(ByteBuffer buffer) {
+    buffer.put(this.bytes, 0, this.size);
+  }
+
+  public byte[] toByteArray() {
+    return Arrays.copyOf(this.bytes, this.size);
+  }
+
+  // Helper methods
+  private void ensureCapacity(int capacity) {
+    if (capacity > this.bytes.length) {
+      this.bytes = Arrays.copyOf(this.bytes, Math.max(capacity, this.bytes.length * 2));
+    }
+  }
+}
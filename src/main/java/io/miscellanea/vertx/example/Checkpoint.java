@@ -0,0 +1,171 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A job's progress through an uncompressed document, recorded at an element boundary so the job
+ * can resume there. A checkpoint holds the byte offset just past an end tag; the byte ranges of the
+ * start tags of the elements still open at that offset, from the root down, which carry the
+ * namespace declarations in scope; and the state of each of the job's processors, in provider
+ * order. The document's size and modification time identify the version it was taken from.
+ *
+ * <p>Instances are immutable.
+ *
+ * @author Jason Hallford
+ */
+public final class Checkpoint {
+  /** The start tag of an element that was open at the checkpoint. */
+  public static final class OpenElement {
+    private final String name;
+    private final long start;
+    private final long end;
+
+    public OpenElement(String name, long start, long end) {
+      this.name = name;
+      this.start = start;
+      this.end = end;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * Gets the offset of the start tag's first byte.
+     *
+     * @return The offset.
+     */
+    public long getStart() {
+      return start;
+    }
+
+    /**
+     * Gets the offset just past the start tag's last byte.
+     *
+     * @return The offset.
+     */
+    public long getEnd() {
+      return end;
+    }
+  }
+
+  // Fields
+  private final long documentSize;
+  private final long documentModified;
+  private final long offset;
+  private final List<OpenElement> openElements;
+  private final List<String> providers;
+  private final List<JsonObject> processorStates;
+
+  // Constructors
+  public Checkpoint(
+      long documentSize,
+      long documentModified,
+      long offset,
+      List<OpenElement> openElements,
+      List<String> providers,
+      List<JsonObject> processorStates) {
+    assert offset >= 0 && offset <= documentSize : "offset must be within the document.";
+    assert openElements != null && !openElements.isEmpty() : "openElements must not be empty.";
+    assert providers.size() == processorStates.size()
+        : "Every provider must have a processor state.";
+    this.documentSize = documentSize;
+    this.documentModified = documentModified;
+    this.offset = offset;
+    this.openElements = Collections.unmodifiableList(new ArrayList<>(openElements));
+    this.providers = Collections.unmodifiableList(new ArrayList<>(providers));
+    this.processorStates = Collections.unmodifiableList(new ArrayList<>(processorStates));
+  }
+
+  // Factory methods
+  public static Checkpoint fromJson(JsonObject json) {
+    var openElements = new ArrayList<OpenElement>();
+    for (Object element : json.getJsonArray("open-elements")) {
+      var tag = (JsonObject) element;
+      openElements.add(
+          new OpenElement(tag.getString("name"), tag.getLong("start"), tag.getLong("end")));
+    }
+
+    var providers = new ArrayList<String>();
+    var processorStates = new ArrayList<JsonObject>();
+    for (Object processor : json.getJsonArray("processors")) {
+      providers.add(((JsonObject) processor).getString("provider"));
+      processorStates.add(((JsonObject) processor).getJsonObject("state"));
+    }
+
+    return new Checkpoint(
+        json.getLong("document-size"),
+        json.getLong("document-modified"),
+        json.getLong("offset"),
+        openElements,
+        providers,
+        processorStates);
+  }
+
+  // Properties
+  public long getDocumentSize() {
+    return documentSize;
+  }
+
+  public long getDocumentModified() {
+    return documentModified;
+  }
+
+  /**
+   * Gets the offset at which the job resumes, just past the last end tag it read.
+   *
+   * @return The offset.
+   */
+  public long getOffset() {
+    return offset;
+  }
+
+  public List<OpenElement> getOpenElements() {
+    return openElements;
+  }
+
+  /**
+   * Gets the names of the providers whose processors the job ran, in the order of their states.
+   *
+   * @return The provider names.
+   */
+  public List<String> getProviders() {
+    return providers;
+  }
+
+  public List<JsonObject> getProcessorStates() {
+    return processorStates;
+  }
+
+  // Methods
+  public JsonObject toJson() {
+    var openElements = new JsonArray();
+    for (OpenElement element : this.openElements) {
+      openElements.add(
+          new JsonObject()
+              .put("name", element.name)
+              .put("start", element.start)
+              .put("end", element.end));
+    }
+
+    var processors = new JsonArray();
+    for (int i = 0; i < this.providers.size(); i++) {
+      processors.add(
+          new JsonObject()
+              .put("provider", this.providers.get(i))
+              .put("state", this.processorStates.get(i)));
+    }
+
+    return new JsonObject()
+        .put("document-size", this.documentSize)
+        .put("document-modified", this.documentModified)
+        .put("offset", this.offset)
+        .put("open-elements", openElements)
+        .put("processors", processors);
+  }
+}
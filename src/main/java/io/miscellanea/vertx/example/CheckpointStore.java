@@ -0,0 +1,166 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps one checkpoint per document and set of processor properties in a local directory, so that
+ * progress survives both a failed job and a restart of the JVM. A checkpoint file is named for a
+ * digest of the document's absolute path and the properties, so jobs that count differently never
+ * resume from each other's progress, and is replaced atomically, so a crash mid-write leaves the
+ * previous checkpoint intact. A checkpoint taken from a different version of the document, judged
+ * by its size and modification time, is ignored.
+ *
+ * <p>A job must claim a checkpoint before using it. Claims are held across the JVM, so while one
+ * job is shredding a document, another job with the same properties can neither resume from its
+ * checkpoint nor replace or delete it.
+ *
+ * <p>Methods other than <code>claim</code> and <code>release</code> block on file I/O.
+ *
+ * @author Jason Hallford
+ */
+public class CheckpointStore {
+  // Fields
+  private static final Logger LOGGER = LoggerFactory.getLogger(CheckpointStore.class);
+
+  private static final Set<Path> CLAIMED = ConcurrentHashMap.newKeySet();
+
+  private final Path directory;
+
+  // Constructors
+  public CheckpointStore(Path directory) {
+    assert directory != null : "directory must not be null.";
+    this.directory = directory;
+  }
+
+  // Methods
+
+  /**
+   * Claims the checkpoint of a document shredded with the given processor properties for one job,
+   * until the job releases it.
+   *
+   * @param document The document.
+   * @param properties The job's effective processor properties.
+   * @return The checkpoint's key, or an empty optional if another job holds the claim.
+   */
+  public Optional<String> claim(Path document, Map<String, String> properties) {
+    var key = keyFor(document, properties);
+    return CLAIMED.add(this.claimFor(key)) ? Optional.of(key) : Optional.empty();
+  }
+
+  /**
+   * Releases a claimed checkpoint.
+   *
+   * @param key The checkpoint's key.
+   */
+  public void release(String key) {
+    CLAIMED.remove(this.claimFor(key));
+  }
+
+  /**
+   * Loads a document's checkpoint.
+   *
+   * @param document The document.
+   * @param key The checkpoint's key.
+   * @return The checkpoint, or an empty optional if the document has no usable checkpoint.
+   */
+  public Optional<Checkpoint> load(Path document, String key) {
+    var file = this.directory.resolve(key);
+    if (!Files.exists(file)) {
+      return Optional.empty();
+    }
+
+    try {
+      var checkpoint =
+          Checkpoint.fromJson(new JsonObject(Files.readString(file, StandardCharsets.UTF_8)));
+      if (checkpoint.getDocumentSize() != Files.size(document)
+          || checkpoint.getDocumentModified()
+              != Files.getLastModifiedTime(document).toMillis()) {
+        LOGGER.info("Discarding the checkpoint for '{}', which has changed since.", document);
+        Files.deleteIfExists(file);
+        return Optional.empty();
+      }
+
+      return Optional.of(checkpoint);
+    } catch (IOException | DecodeException | ClassCastException | NullPointerException e) {
+      LOGGER.warn("Unable to read the checkpoint for '{}': {}", document, e.getMessage());
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Replaces a document's checkpoint.
+   *
+   * @param key The checkpoint's key.
+   * @param checkpoint The checkpoint.
+   * @throws IOException if the checkpoint cannot be written.
+   */
+  public void save(String key, Checkpoint checkpoint) throws IOException {
+    var file = this.directory.resolve(key);
+    Files.createDirectories(this.directory);
+
+    var temp = Files.createTempFile(this.directory, file.getFileName().toString(), ".tmp");
+    try {
+      Files.writeString(temp, checkpoint.toJson().encode(), StandardCharsets.UTF_8);
+      Files.move(
+          temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /**
+   * Deletes a document's checkpoint, once the document has been shredded completely.
+   *
+   * @param key The checkpoint's key.
+   */
+  public void delete(String key) {
+    try {
+      Files.deleteIfExists(this.directory.resolve(key));
+    } catch (IOException e) {
+      LOGGER.warn("Unable to delete checkpoint '{}': {}", key, e.getMessage());
+    }
+  }
+
+  // Helper methods
+  private Path claimFor(String key) {
+    return this.directory.resolve(key).toAbsolutePath().normalize();
+  }
+
+  private static String keyFor(Path document, Map<String, String> properties) {
+    // Sorting the properties makes the key independent of the order in which they were set.
+    var identity =
+        new JsonObject()
+            .put("document", document.toAbsolutePath().normalize().toString())
+            .put("properties", new JsonObject(new TreeMap<String, Object>(properties)));
+    try {
+      var digest =
+          MessageDigest.getInstance("SHA-256")
+              .digest(identity.encode().getBytes(StandardCharsets.UTF_8));
+
+      var name = new StringBuilder(digest.length * 2 + 5);
+      for (byte b : digest) {
+        name.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+      }
+      return name.append(".json").toString();
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform is required to support SHA-256.
+      throw new IllegalStateException(e);
+    }
+  }
+}
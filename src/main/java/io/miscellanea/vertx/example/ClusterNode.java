@@ -0,0 +1,135 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.shareddata.AsyncMap;
+import io.vertx.core.spi.cluster.ClusterManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Identifies this JVM among the nodes of a clustered deployment. Each node claims the lowest free
+ * number, from one to <code>MAX_NUMBER</code>, in a cluster-wide map from numbers to the cluster
+ * manager's node identifiers when it joins. A number is free if no node has claimed it or the node
+ * that did has left the cluster, so no two live nodes share one, and a node cannot join while
+ * <code>MAX_NUMBER</code> others are live. A JVM that is not clustered is node zero. The number qualifies the private event bus addresses of the node's verticles, which
+ * are otherwise derived from identity hash codes that are only unique within a JVM, and the
+ * identifiers of the jobs the node creates.
+ *
+ * @author Jason Hallford
+ */
+public final class ClusterNode {
+  // Fields
+  private static final Logger LOGGER = LoggerFactory.getLogger(ClusterNode.class);
+
+  private static final String NODE_NUMBERS = "xml.shred.node-numbers";
+
+  /** The highest node number; job identifiers reserve seven bits for it. */
+  public static final int MAX_NUMBER = 127;
+
+  private static volatile int number = 0;
+
+  // Constructors
+  private ClusterNode() {}
+
+  // Properties
+  public static int getNumber() {
+    return number;
+  }
+
+  // Methods
+
+  /**
+   * Claims this JVM's node number from the cluster. Must be called once, before any verticle is
+   * deployed, on a clustered Vert.x instance.
+   *
+   * @param vertx The clustered Vert.x instance.
+   * @param clusterManager The Vert.x instance's cluster manager.
+   * @param handler Called with the node number, or with a failure if the numbers are unavailable
+   *     or all taken.
+   */
+  public static void join(
+      Vertx vertx, ClusterManager clusterManager, Handler<AsyncResult<Integer>> handler) {
+    assert vertx != null : "vertx must not be null.";
+    assert clusterManager != null : "clusterManager must not be null.";
+
+    vertx
+        .sharedData()
+        .<Integer, String>getClusterWideMap(
+            NODE_NUMBERS,
+            numbers -> {
+              if (numbers.failed()) {
+                handler.handle(Future.failedFuture(numbers.cause()));
+              } else {
+                claim(numbers.result(), clusterManager, 1, handler);
+              }
+            });
+  }
+
+  /**
+   * Builds the suffix of a verticle's private event bus addresses, which must be unique across the
+   * cluster.
+   *
+   * @param verticle The verticle.
+   * @return The verticle's identity hash code, qualified by the node number when clustered.
+   */
+  public static String qualify(Object verticle) {
+    int hash = System.identityHashCode(verticle);
+    return number == 0 ? String.valueOf(hash) : number + "." + hash;
+  }
+
+  // Helper methods
+  private static void claim(
+      AsyncMap<Integer, String> numbers,
+      ClusterManager clusterManager,
+      int candidate,
+      Handler<AsyncResult<Integer>> handler) {
+    if (candidate > MAX_NUMBER) {
+      handler.handle(
+          Future.failedFuture(
+              new IllegalStateException("All " + MAX_NUMBER + " node numbers are taken.")));
+      return;
+    }
+
+    var self = clusterManager.getNodeID();
+    numbers.putIfAbsent(
+        candidate,
+        self,
+        put -> {
+          if (put.failed()) {
+            handler.handle(Future.failedFuture(put.cause()));
+            return;
+          }
+
+          var owner = put.result();
+          if (owner == null || owner.equals(self)) {
+            claimed(candidate, handler);
+          } else if (clusterManager.getNodes().contains(owner)) {
+            claim(numbers, clusterManager, candidate + 1, handler);
+          } else {
+            // The owner has left the cluster; only one joining node can take its number over.
+            numbers.replaceIfPresent(
+                candidate,
+                owner,
+                self,
+                replaced -> {
+                  if (replaced.failed()) {
+                    handler.handle(Future.failedFuture(replaced.cause()));
+                  } else if (replaced.result()) {
+                    claimed(candidate, handler);
+                  } else {
+                    claim(numbers, clusterManager, candidate + 1, handler);
+                  }
+                });
+          }
+        });
+  }
+
+  private static void claimed(int candidate, Handler<AsyncResult<Integer>> handler) {
+    number = candidate;
+    LOGGER.info("Joined the cluster as node {}.", number);
+    handler.handle(Future.succeededFuture(number));
+  }
+}
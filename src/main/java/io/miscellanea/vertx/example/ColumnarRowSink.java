@@ -0,0 +1,126 @@
+package io.miscellanea.vertx.example;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Writes rows in a simple binary columnar format. Rows are gathered into blocks, and within a
+ * block each column's values are stored together, so a reader can load one column without
+ * decoding the others. A file is laid out as follows; integers are big-endian, and a varint is an
+ * unsigned integer stored seven bits per byte, least significant group first, with the high bit
+ * set on every byte but the last.
+ *
+ * <pre>
+ * file   := "XCOL" version:u8(1) columns:varint name* block*
+ * name   := length:varint utf8-bytes
+ * block  := rows:i32 column*
+ * column := lengths-size:i32 data-size:i32 length:varint* utf8-bytes
+ * </pre>
+ *
+ * A column has one length per row: 0 for a missing value, and otherwise the value's length in
+ * bytes plus 1. Its data is the values' UTF-8 bytes, concatenated. A block is closed once it fills
+ * most of a buffer, so it is nearly always written whole, and a file holds only whole blocks.
+ *
+ * @author Jason Hallford
+ */
+public class ColumnarRowSink extends RowSink {
+  // Fields
+  private static final byte[] MAGIC = "XCOL".getBytes(StandardCharsets.US_ASCII);
+  private static final int VERSION = 1;
+
+  private final ByteArrayBuilder[] lengths;
+  private final ByteArrayBuilder[] data;
+  private final ByteArrayBuilder block = new ByteArrayBuilder(4096);
+  private final int blockTarget;
+  private int rows = 0;
+  private int blockSize;
+
+  // Constructors
+  public ColumnarRowSink(RowWriter writer, int columnCount) {
+    super(writer);
+
+    assert columnCount > 0 : "columnCount must be positive.";
+    this.lengths = new ByteArrayBuilder[columnCount];
+    this.data = new ByteArrayBuilder[columnCount];
+    for (int i = 0; i < columnCount; i++) {
+      this.lengths[i] = new ByteArrayBuilder(1024);
+      this.data[i] = new ByteArrayBuilder(4096);
+    }
+
+    // Leave room for the row that takes the block past its target.
+    this.blockTarget = writer.getBufferSize() - writer.getBufferSize() / 8;
+    this.blockSize = this.emptyBlockSize();
+  }
+
+  // RowSink
+  @Override
+  protected String getExtension() {
+    return "xcol";
+  }
+
+  @Override
+  protected byte[] header(List<String> columns) {
+    var header = new ByteArrayBuilder(64);
+    for (byte b : MAGIC) {
+      header.append(b);
+    }
+    header.append(VERSION).appendVarInt(columns.size());
+
+    var name = new ByteArrayBuilder(32);
+    for (String column : columns) {
+      name.reset().appendUtf8(column);
+      header.appendVarInt(name.size()).append(name);
+    }
+    return header.toByteArray();
+  }
+
+  @Override
+  public boolean append(CharSequence[] values) {
+    assert values.length == this.lengths.length : "Every column must have a value.";
+
+    for (int i = 0; i < values.length; i++) {
+      int lengthsBefore = this.lengths[i].size();
+      int dataBefore = this.data[i].size();
+      if (values[i] == null) {
+        this.lengths[i].appendVarInt(0);
+      } else {
+        this.data[i].appendUtf8(values[i]);
+        this.lengths[i].appendVarInt(this.data[i].size() - dataBefore + 1);
+      }
+      this.blockSize += this.lengths[i].size() - lengthsBefore + this.data[i].size() - dataBefore;
+    }
+    this.rows++;
+
+    return this.blockSize >= this.blockTarget && this.writeBlock();
+  }
+
+  @Override
+  public void flush() {
+    if (this.rows > 0) {
+      this.writeBlock();
+    }
+    this.close();
+  }
+
+  // Helper methods
+  private boolean writeBlock() {
+    this.block.reset().appendInt(this.rows);
+    for (int i = 0; i < this.lengths.length; i++) {
+      this.block
+          .appendInt(this.lengths[i].size())
+          .appendInt(this.data[i].size())
+          .append(this.lengths[i])
+          .append(this.data[i]);
+      this.lengths[i].reset();
+      this.data[i].reset();
+    }
+    this.rows = 0;
+    this.blockSize = this.emptyBlockSize();
+
+    return this.write(this.block);
+  }
+
+  private int emptyBlockSize() {
+    return 4 + this.lengths.length * 8;
+  }
+}
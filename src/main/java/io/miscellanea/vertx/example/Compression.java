@@ -0,0 +1,172 @@
+package io.miscellanea.vertx.example;
+
+import com.github.luben.zstd.ZstdInputStream;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The compression formats a shred input may arrive in, recognized by their leading magic bytes
+ * rather than by file name.
+ *
+ * @author Jason Hallford
+ */
+public enum Compression {
+  NONE,
+  GZIP,
+  ZIP,
+  ZSTD;
+
+  // Fields
+  /** The number of leading bytes needed to recognize every format. */
+  public static final int HEADER_LENGTH = 4;
+
+  private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+  // Methods
+
+  /**
+   * Detects a file's compression format from its first bytes.
+   *
+   * @param path The file.
+   * @return The file's compression, which is <code>NONE</code> if the file is not compressed.
+   * @throws IOException if the file cannot be read.
+   */
+  public static Compression detect(Path path) throws IOException {
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      var header = ByteBuffer.allocate(HEADER_LENGTH);
+      while (header.hasRemaining() && channel.read(header) >= 0) {
+        // Keep reading until the header is full or the file ends.
+      }
+
+      return detect(header.array(), header.position());
+    }
+  }
+
+  /**
+   * Detects a compression format from a document's first bytes.
+   *
+   * @param header The document's first bytes.
+   * @param length The number of valid bytes in <code>header</code>.
+   * @return The compression, which is <code>NONE</code> if the bytes match no known format.
+   */
+  public static Compression detect(byte[] header, int length) {
+    if (length >= 2 && (header[0] & 0xff) == 0x1f && (header[1] & 0xff) == 0x8b) {
+      return GZIP;
+    }
+    if (length >= 4
+        && header[0] == 'P'
+        && header[1] == 'K'
+        && header[2] == 0x03
+        && header[3] == 0x04) {
+      return ZIP;
+    }
+    if (length >= 4
+        && (header[0] & 0xff) == 0x28
+        && (header[1] & 0xff) == 0xb5
+        && (header[2] & 0xff) == 0x2f
+        && (header[3] & 0xff) == 0xfd) {
+      return ZSTD;
+    }
+
+    return NONE;
+  }
+
+  /**
+   * Lists the names of a zip archive's file entries, in archive order.
+   *
+   * @param path The archive.
+   * @return The entry names.
+   * @throws IOException if the archive cannot be read.
+   */
+  public static List<String> listEntries(Path path) throws IOException {
+    try (var zip = new ZipFile(path.toFile())) {
+      var names = new ArrayList<String>();
+      for (ZipEntry entry : Collections.list(zip.entries())) {
+        if (!entry.isDirectory()) {
+          names.add(entry.getName());
+        }
+      }
+
+      return names;
+    }
+  }
+
+  /**
+   * Opens one entry of a zip archive. Closing the stream closes the archive.
+   *
+   * @param path The archive.
+   * @param entryName The entry's name, or <code>null</code> for the first file entry.
+   * @return The entry's decompressed bytes.
+   * @throws IOException if the archive cannot be read or has no such entry.
+   */
+  public static InputStream openEntry(Path path, String entryName) throws IOException {
+    var zip = new ZipFile(path.toFile());
+    try {
+      ZipEntry entry =
+          entryName != null
+              ? zip.getEntry(entryName)
+              : Collections.list(zip.entries()).stream()
+                  .filter(e -> !e.isDirectory())
+                  .findFirst()
+                  .orElse(null);
+      if (entry == null) {
+        throw new IOException(
+            entryName != null
+                ? "Archive has no entry named '" + entryName + "'."
+                : "Archive has no file entries.");
+      }
+
+      return new FilterInputStream(zip.getInputStream(entry)) {
+        @Override
+        public void close() throws IOException {
+          try {
+            super.close();
+          } finally {
+            zip.close();
+          }
+        }
+      };
+    } catch (IOException e) {
+      zip.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Wraps a compressed stream in its decompressor. Zip archives are opened by entry, with <code>
+   * openEntry</code>. If the decompressor cannot be created, <code>compressed</code> is closed.
+   *
+   * @param compressed The compressed bytes.
+   * @return The decompressed bytes.
+   * @throws IOException if the stream's header is invalid.
+   */
+  public InputStream decompress(InputStream compressed) throws IOException {
+    try {
+      switch (this) {
+        case NONE:
+          return compressed;
+        case GZIP:
+          return new GZIPInputStream(compressed, GZIP_BUFFER_SIZE);
+        case ZSTD:
+          return new ZstdInputStream(compressed);
+        default:
+          throw new IllegalStateException(this + " inputs must be opened by entry.");
+      }
+    } catch (IOException | RuntimeException e) {
+      compressed.close();
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,208 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.eventbus.DeliveryContext;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.MessageCodec;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.eventbus.MessageProducer;
+
+import java.util.concurrent.Executor;
+
+/**
+ * An event bus that runs the handlers registered through it on an executor of the caller's
+ * choosing, rather than on a Vert.x context. A shredder that runs a job's processors on a thread
+ * of its own hands them this bus, so that reply handlers, and the handlers of consumers registered
+ * with one, run on the job's thread like the rest of the processor. Everything else is delegated
+ * as it is; a handler set later on a returned consumer or producer runs on a Vert.x context.
+ *
+ * @author Jason Hallford
+ */
+public class ConfinedEventBus implements EventBus {
+  // Fields
+  private final EventBus delegate;
+  private final Executor executor;
+
+  // Constructors
+  public ConfinedEventBus(EventBus delegate, Executor executor) {
+    assert delegate != null : "delegate must not be null.";
+    this.delegate = delegate;
+
+    assert executor != null : "executor must not be null.";
+    this.executor = executor;
+  }
+
+  // EventBus
+  @Override
+  public EventBus send(String address, Object message) {
+    this.delegate.send(address, message);
+    return this;
+  }
+
+  @Override
+  @Deprecated
+  public <T> EventBus send(
+      String address, Object message, Handler<AsyncResult<Message<T>>> replyHandler) {
+    this.delegate.send(address, message, this.confine(replyHandler));
+    return this;
+  }
+
+  @Override
+  public EventBus send(String address, Object message, DeliveryOptions options) {
+    this.delegate.send(address, message, options);
+    return this;
+  }
+
+  @Override
+  @Deprecated
+  public <T> EventBus send(
+      String address,
+      Object message,
+      DeliveryOptions options,
+      Handler<AsyncResult<Message<T>>> replyHandler) {
+    this.delegate.send(address, message, options, this.confine(replyHandler));
+    return this;
+  }
+
+  @Override
+  public <T> EventBus request(
+      String address, Object message, Handler<AsyncResult<Message<T>>> replyHandler) {
+    this.delegate.request(address, message, this.confine(replyHandler));
+    return this;
+  }
+
+  @Override
+  public <T> EventBus request(
+      String address,
+      Object message,
+      DeliveryOptions options,
+      Handler<AsyncResult<Message<T>>> replyHandler) {
+    this.delegate.request(address, message, options, this.confine(replyHandler));
+    return this;
+  }
+
+  @Override
+  public EventBus publish(String address, Object message) {
+    this.delegate.publish(address, message);
+    return this;
+  }
+
+  @Override
+  public EventBus publish(String address, Object message, DeliveryOptions options) {
+    this.delegate.publish(address, message, options);
+    return this;
+  }
+
+  @Override
+  public <T> MessageConsumer<T> consumer(String address) {
+    return this.delegate.consumer(address);
+  }
+
+  @Override
+  public <T> MessageConsumer<T> consumer(String address, Handler<Message<T>> handler) {
+    return this.delegate.consumer(address, this.confine(handler));
+  }
+
+  @Override
+  public <T> MessageConsumer<T> localConsumer(String address) {
+    return this.delegate.localConsumer(address);
+  }
+
+  @Override
+  public <T> MessageConsumer<T> localConsumer(String address, Handler<Message<T>> handler) {
+    return this.delegate.localConsumer(address, this.confine(handler));
+  }
+
+  @Override
+  public <T> MessageProducer<T> sender(String address) {
+    return this.delegate.sender(address);
+  }
+
+  @Override
+  public <T> MessageProducer<T> sender(String address, DeliveryOptions options) {
+    return this.delegate.sender(address, options);
+  }
+
+  @Override
+  public <T> MessageProducer<T> publisher(String address) {
+    return this.delegate.publisher(address);
+  }
+
+  @Override
+  public <T> MessageProducer<T> publisher(String address, DeliveryOptions options) {
+    return this.delegate.publisher(address, options);
+  }
+
+  @Override
+  @SuppressWarnings("rawtypes")
+  public EventBus registerCodec(MessageCodec codec) {
+    this.delegate.registerCodec(codec);
+    return this;
+  }
+
+  @Override
+  public EventBus unregisterCodec(String name) {
+    this.delegate.unregisterCodec(name);
+    return this;
+  }
+
+  @Override
+  public <T> EventBus registerDefaultCodec(Class<T> clazz, MessageCodec<T, ?> codec) {
+    this.delegate.registerDefaultCodec(clazz, codec);
+    return this;
+  }
+
+  @Override
+  @SuppressWarnings("rawtypes")
+  public EventBus unregisterDefaultCodec(Class clazz) {
+    this.delegate.unregisterDefaultCodec(clazz);
+    return this;
+  }
+
+  @Override
+  public void start(Handler<AsyncResult<Void>> completionHandler) {
+    this.delegate.start(completionHandler);
+  }
+
+  @Override
+  public void close(Handler<AsyncResult<Void>> completionHandler) {
+    this.delegate.close(completionHandler);
+  }
+
+  @Override
+  public <T> EventBus addOutboundInterceptor(Handler<DeliveryContext<T>> interceptor) {
+    this.delegate.addOutboundInterceptor(interceptor);
+    return this;
+  }
+
+  @Override
+  public <T> EventBus removeOutboundInterceptor(Handler<DeliveryContext<T>> interceptor) {
+    this.delegate.removeOutboundInterceptor(interceptor);
+    return this;
+  }
+
+  @Override
+  public <T> EventBus addInboundInterceptor(Handler<DeliveryContext<T>> interceptor) {
+    this.delegate.addInboundInterceptor(interceptor);
+    return this;
+  }
+
+  @Override
+  public <T> EventBus removeInboundInterceptor(Handler<DeliveryContext<T>> interceptor) {
+    this.delegate.removeInboundInterceptor(interceptor);
+    return this;
+  }
+
+  @Override
+  public boolean isMetricsEnabled() {
+    return this.delegate.isMetricsEnabled();
+  }
+
+  // Helper methods
+  private <E> Handler<E> confine(Handler<E> handler) {
+    return handler != null ? event -> this.executor.execute(() -> handler.handle(event)) : null;
+  }
+}
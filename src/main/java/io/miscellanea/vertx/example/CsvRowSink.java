@@ -0,0 +1,86 @@
+package io.miscellanea.vertx.example;
+
+import java.util.List;
+
+/**
+ * Writes rows as comma-separated text, encoded as UTF-8, one row per line. Every file begins with
+ * a line of column names. A value containing a comma, quote or line break is enclosed in quotes,
+ * with its quotes doubled, as described by RFC 4180; a missing value is an empty field.
+ *
+ * @author Jason Hallford
+ */
+public class CsvRowSink extends RowSink {
+  // Fields
+  private final int columnCount;
+  private final ByteArrayBuilder record = new ByteArrayBuilder(256);
+  private final StringBuilder quoted = new StringBuilder();
+
+  // Constructors
+  public CsvRowSink(RowWriter writer, int columnCount) {
+    super(writer);
+
+    assert columnCount > 0 : "columnCount must be positive.";
+    this.columnCount = columnCount;
+  }
+
+  // RowSink
+  @Override
+  protected String getExtension() {
+    return "csv";
+  }
+
+  @Override
+  protected byte[] header(List<String> columns) {
+    return this.encode(columns.toArray(new CharSequence[0])).toByteArray();
+  }
+
+  @Override
+  public boolean append(CharSequence[] values) {
+    assert values.length == this.columnCount : "Every column must have a value.";
+    return this.write(this.encode(values));
+  }
+
+  @Override
+  public void flush() {
+    this.close();
+  }
+
+  // Helper methods
+  private ByteArrayBuilder encode(CharSequence[] values) {
+    this.record.reset();
+    for (int i = 0; i < values.length; i++) {
+      if (i > 0) {
+        this.record.append(',');
+      }
+
+      var value = values[i];
+      if (value != null) {
+        this.record.appendUtf8(needsQuotes(value) ? this.quote(value) : value);
+      }
+    }
+    return this.record.append('\n');
+  }
+
+  private CharSequence quote(CharSequence value) {
+    this.quoted.setLength(0);
+    this.quoted.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"') {
+        this.quoted.append('"');
+      }
+      this.quoted.append(c);
+    }
+    return this.quoted.append('"');
+  }
+
+  private static boolean needsQuotes(CharSequence value) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,284 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.ReadStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+
+/**
+ * Decompresses a document on a dedicated thread, so that inflation overlaps with parsing rather than
+ * running in series with it. The thread fills a fixed ring of reusable chunks and hands them to the
+ * shredder through a bounded queue; when the shredder falls behind, the thread blocks on an empty
+ * ring, so no more than <code>chunkCount</code> chunks are ever buffered.
+ *
+ * <p>The shredder consumes the pipe either as a blocking <code>InputStream</code> or, from an event
+ * loop, as a Vert.x <code>ReadStream</code>.
+ *
+ * @author Jason Hallford
+ */
+public final class DecompressionPipe implements AutoCloseable {
+  private static final class Chunk {
+    private final byte[] data;
+    private int length;
+
+    private Chunk(int size) {
+      this.data = new byte[size];
+    }
+  }
+
+  /** A blocking view of the pipe, for the worker shredder. */
+  private final class PipeInputStream extends InputStream {
+    private Chunk chunk;
+    private int offset;
+
+    @Override
+    public int read() throws IOException {
+      var single = new byte[1];
+      return this.read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+
+      if (this.chunk == null || this.offset == this.chunk.length) {
+        if (this.chunk == END) {
+          return -1;
+        }
+        DecompressionPipe.this.recycle(this.chunk);
+        this.chunk = DecompressionPipe.this.take();
+        this.offset = 0;
+        if (this.chunk == END) {
+          return -1;
+        }
+      }
+
+      int count = Math.min(len, this.chunk.length - this.offset);
+      System.arraycopy(this.chunk.data, this.offset, buffer, off, count);
+      this.offset += count;
+      return count;
+    }
+
+    @Override
+    public void close() {
+      DecompressionPipe.this.close();
+    }
+  }
+
+  /** A non-blocking view of the pipe, confined to one Vert.x context. */
+  private final class PipeReadStream implements ReadStream<Buffer> {
+    private final Context context;
+    private Handler<Buffer> handler;
+    private Handler<Void> endHandler;
+    private Handler<Throwable> exceptionHandler;
+    private long demand = Long.MAX_VALUE;
+    private boolean ended = false;
+
+    private PipeReadStream(Context context) {
+      this.context = context;
+      DecompressionPipe.this.readyHandler = () -> context.runOnContext(v -> this.deliver());
+    }
+
+    @Override
+    public ReadStream<Buffer> exceptionHandler(Handler<Throwable> handler) {
+      this.exceptionHandler = handler;
+      return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> handler(Handler<Buffer> handler) {
+      this.handler = handler;
+      this.context.runOnContext(v -> this.deliver());
+      return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> pause() {
+      this.demand = 0;
+      return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> resume() {
+      return this.fetch(Long.MAX_VALUE);
+    }
+
+    @Override
+    public ReadStream<Buffer> fetch(long amount) {
+      this.demand = Math.max(0, Math.min(Long.MAX_VALUE - amount, this.demand)) + amount;
+      this.context.runOnContext(v -> this.deliver());
+      return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> endHandler(Handler<Void> endHandler) {
+      this.endHandler = endHandler;
+      return this;
+    }
+
+    private void deliver() {
+      while (!this.ended && this.handler != null && this.demand > 0) {
+        var chunk = DecompressionPipe.this.filled.poll();
+        if (chunk == null) {
+          return;
+        }
+
+        if (chunk == END) {
+          this.ended = true;
+          var error = DecompressionPipe.this.error;
+          if (error != null) {
+            if (this.exceptionHandler != null) {
+              this.exceptionHandler.handle(error);
+            }
+          } else if (this.endHandler != null) {
+            this.endHandler.handle(null);
+          }
+          return;
+        }
+
+        var buffer = Buffer.buffer(chunk.length).appendBytes(chunk.data, 0, chunk.length);
+        DecompressionPipe.this.recycle(chunk);
+        if (this.demand != Long.MAX_VALUE) {
+          this.demand--;
+        }
+        this.handler.handle(buffer);
+      }
+    }
+  }
+
+  // Fields
+  private static final Logger LOGGER = LoggerFactory.getLogger(DecompressionPipe.class);
+  private static final Chunk END = new Chunk(0);
+
+  private final Callable<InputStream> opener;
+  private final BlockingQueue<Chunk> free;
+  private final BlockingQueue<Chunk> filled;
+  private final Thread thread;
+  private volatile IOException error;
+  private volatile Runnable readyHandler = () -> {};
+  private volatile boolean closed = false;
+
+  // Constructors
+
+  /**
+   * Creates a pipe. Nothing is read until <code>start</code> is called.
+   *
+   * @param opener Opens the decompressed stream; called on the pipe's thread.
+   * @param chunkSize The size of each chunk, in bytes.
+   * @param chunkCount The number of chunks in the ring.
+   * @param name The name of the pipe's thread.
+   */
+  public DecompressionPipe(
+      Callable<InputStream> opener, int chunkSize, int chunkCount, String name) {
+    assert opener != null : "opener must not be null.";
+    assert chunkSize > 0 : "chunkSize must be positive.";
+    assert chunkCount > 0 : "chunkCount must be positive.";
+    this.opener = opener;
+
+    this.free = new ArrayBlockingQueue<>(chunkCount);
+    for (int i = 0; i < chunkCount; i++) {
+      this.free.add(new Chunk(chunkSize));
+    }
+    // Room for every chunk, plus the end marker.
+    this.filled = new ArrayBlockingQueue<>(chunkCount + 1);
+
+    this.thread = new Thread(this::inflate, name);
+    this.thread.setDaemon(true);
+  }
+
+  // Methods
+  public DecompressionPipe start() {
+    this.thread.start();
+    return this;
+  }
+
+  public InputStream inputStream() {
+    return new PipeInputStream();
+  }
+
+  /**
+   * Gets a stream that delivers the decompressed bytes on a Vert.x context.
+   *
+   * @param context The context on which handlers are called.
+   * @return The stream.
+   */
+  public ReadStream<Buffer> readStream(Context context) {
+    assert context != null : "context must not be null.";
+    return new PipeReadStream(context);
+  }
+
+  /** Stops the pipe's thread and discards anything it has not yet handed over. */
+  @Override
+  public void close() {
+    if (!this.closed) {
+      this.closed = true;
+      this.thread.interrupt();
+    }
+  }
+
+  // Helper methods
+  private void inflate() {
+    try (var input = this.opener.call()) {
+      while (!this.closed) {
+        var chunk = this.free.take();
+        chunk.length = input.readNBytes(chunk.data, 0, chunk.data.length);
+        if (chunk.length == 0) {
+          break;
+        }
+
+        this.filled.put(chunk);
+        this.readyHandler.run();
+        if (chunk.length < chunk.data.length) {
+          // readNBytes only returns a short chunk at the end of the input.
+          break;
+        }
+      }
+    } catch (InterruptedException e) {
+      // The pipe was closed.
+      return;
+    } catch (Exception e) {
+      if (!this.closed) {
+        LOGGER.warn(
+            "Decompression failed on thread '{}': {}", this.thread.getName(), e.getMessage());
+        this.error = e instanceof IOException ? (IOException) e : new IOException(e);
+      }
+    }
+
+    this.filled.add(END);
+    this.readyHandler.run();
+  }
+
+  private Chunk take() throws IOException {
+    try {
+      var chunk = this.filled.take();
+      if (chunk == END) {
+        // Leave the marker for any later read.
+        this.filled.add(END);
+        if (this.error != null) {
+          throw this.error;
+        }
+      }
+
+      return chunk;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for decompressed input.", e);
+    }
+  }
+
+  private void recycle(Chunk chunk) {
+    if (chunk != null && chunk != END) {
+      this.free.add(chunk);
+    }
+  }
+}
@@ -0,0 +1,97 @@
+package io.miscellanea.vertx.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32C;
+
+/**
+ * Computes a fingerprint of a document's content, cheap enough to take before every job. By
+ * default, the fingerprint combines the file's size and modification time with a CRC-32C of a few
+ * sampled blocks: the first, the last, and others evenly spaced between them. Sampling reads a few
+ * tens of kilobytes however large the document, but cannot tell apart two versions that differ
+ * only between the samples and share a size and modification time. A full hash reads the whole
+ * file with SHA-256 and can; since it covers every byte, it is combined with the size alone, so a
+ * copy of a document, or one touched without being changed, keeps its fingerprint.
+ *
+ * @author Jason Hallford
+ */
+public final class DocumentFingerprint {
+  // Fields
+  private static final int BLOCK_SIZE = 4096;
+  private static final int FULL_HASH_BUFFER_SIZE = 1024 * 1024;
+
+  // Constructors
+  private DocumentFingerprint() {}
+
+  // Methods
+
+  /**
+   * Fingerprints a document.
+   *
+   * @param document The document.
+   * @param sampleBlocks The number of blocks to sample, at least two.
+   * @param fullHash <code>true</code> to hash the whole file instead of sampling it.
+   * @return The fingerprint.
+   * @throws IOException if the document cannot be read.
+   */
+  public static String compute(Path document, int sampleBlocks, boolean fullHash)
+      throws IOException {
+    long size = Files.size(document);
+    int blocks = Math.max(2, sampleBlocks);
+
+    try (var channel = FileChannel.open(document, StandardOpenOption.READ)) {
+      if (fullHash) {
+        return size + ":sha256:" + hashAll(channel);
+      }
+
+      long modified = Files.getLastModifiedTime(document).toMillis();
+      return size + ":" + modified + ":s" + blocks + ":" + sample(channel, size, blocks);
+    }
+  }
+
+  // Helper methods
+  private static String sample(FileChannel channel, long size, int sampleBlocks)
+      throws IOException {
+    var crc = new CRC32C();
+    var block = ByteBuffer.allocate(BLOCK_SIZE);
+    long lastBlock = Math.max(0L, size - BLOCK_SIZE);
+    for (int i = 0; i < sampleBlocks; i++) {
+      long position = lastBlock * i / (sampleBlocks - 1);
+      block.clear();
+      int read;
+      do {
+        read = channel.read(block, position + block.position());
+      } while (read > 0 && block.hasRemaining());
+
+      crc.update(block.flip());
+    }
+
+    return Long.toHexString(crc.getValue());
+  }
+
+  private static String hashAll(FileChannel channel) throws IOException {
+    try {
+      var digest = MessageDigest.getInstance("SHA-256");
+      var buffer = ByteBuffer.allocateDirect(FULL_HASH_BUFFER_SIZE);
+      while (channel.read(buffer) > 0) {
+        digest.update(buffer.flip());
+        buffer.clear();
+      }
+
+      var hex = new StringBuilder(64);
+      for (byte b : digest.digest()) {
+        hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+      }
+      return hex.toString();
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform is required to support SHA-256.
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package io.miscellanea.vertx.example;
+
+/**
+ * A fixed-capacity, columnar batch of element observations for a single job. Element local names
+ * are recorded as symbols from <code>SymbolTable.shared()</code> in a primitive array, so that a
+ * processor may apply thousands of observations with a single event bus message. A <i>named</i>
+ * batch records the names themselves instead, for jobs whose names are too many to intern. The
+ * final batch of a document is marked as <i>last</i>.
+ *
+ * <p>A batch is mutable only until it is sent; the producer must start a new batch afterwards.
+ *
+ * @author Jason Hallford
+ */
+public final class ElementBatch {
+  // Fields
+  private final int jobId;
+  private final int[] symbols;
+  private final String[] names;
+  private int size = 0;
+  private boolean last = false;
+
+  // Constructors
+  public ElementBatch(int jobId, int capacity) {
+    this(jobId, capacity, false);
+  }
+
+  /**
+   * Creates an empty batch.
+   *
+   * @param jobId The job identifier.
+   * @param capacity The number of observations the batch holds.
+   * @param named <code>true</code> to record names rather than symbols.
+   */
+  public ElementBatch(int jobId, int capacity, boolean named) {
+    assert capacity > 0 : "capacity must be positive.";
+
+    this.jobId = jobId;
+    this.symbols = named ? null : new int[capacity];
+    this.names = named ? new String[capacity] : null;
+  }
+
+  // Properties
+  public int getJobId() {
+    return jobId;
+  }
+
+  /**
+   * Gets the batch's symbol array. Only the first <code>size()</code> entries are valid.
+   *
+   * @return The symbols, or <code>null</code> if the batch is named.
+   */
+  public int[] getSymbols() {
+    return symbols;
+  }
+
+  /**
+   * Gets the batch's name array. Only the first <code>size()</code> entries are valid.
+   *
+   * @return The names, or <code>null</code> if the batch records symbols.
+   */
+  public String[] getNames() {
+    return names;
+  }
+
+  public boolean isNamed() {
+    return names != null;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isFull() {
+    return size == (names != null ? names.length : symbols.length);
+  }
+
+  public boolean isLast() {
+    return last;
+  }
+
+  public void setLast(boolean last) {
+    this.last = last;
+  }
+
+  // Methods
+
+  /**
+   * Appends an element observation.
+   *
+   * @param symbol The element's local name symbol.
+   */
+  public void add(int symbol) {
+    assert !this.isFull() : "batch is full.";
+    this.symbols[this.size++] = symbol;
+  }
+
+  /**
+   * Appends an element observation to a named batch.
+   *
+   * @param name The element's local name.
+   */
+  public void add(String name) {
+    assert !this.isFull() : "batch is full.";
+    this.names[this.size++] = name;
+  }
+}
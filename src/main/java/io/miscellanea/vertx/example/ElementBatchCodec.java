@@ -0,0 +1,121 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageCodec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+/**
+ * Event bus codec for <code>ElementBatch</code>. Local delivery passes the batch through untouched.
+ * Because symbols are only meaningful within a JVM, the wire format carries a dictionary of the
+ * batch's distinct names followed by one dictionary index per observation. A named batch is decoded
+ * back to names, which are not interned:
+ *
+ * <pre>
+ *   job-id      : int
+ *   flags       : byte (1 = last, 2 = named)
+ *   name-count  : int
+ *   names       : name-count x (length : int, UTF-8 bytes)
+ *   size        : int
+ *   indices     : size x int
+ * </pre>
+ *
+ * @author Jason Hallford
+ */
+public class ElementBatchCodec implements MessageCodec<ElementBatch, ElementBatch> {
+  // Fields
+  public static final String NAME = "element-batch";
+
+  private static final byte LAST = 1;
+  private static final byte NAMED = 2;
+
+  // Constructors
+  public ElementBatchCodec() {}
+
+  // MessageCodec
+  @Override
+  public void encodeToWire(Buffer buffer, ElementBatch batch) {
+    var symbols = SymbolTable.shared();
+    var dictionary = new HashMap<Object, Integer>();
+    var indices = new int[batch.size()];
+    var names = Buffer.buffer();
+
+    for (int i = 0; i < batch.size(); i++) {
+      Object key = batch.isNamed() ? batch.getNames()[i] : Integer.valueOf(batch.getSymbols()[i]);
+      Integer index = dictionary.get(key);
+      if (index == null) {
+        index = dictionary.size();
+        dictionary.put(key, index);
+
+        var name = batch.isNamed() ? (String) key : symbols.nameOf((Integer) key);
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        names.appendInt(bytes.length).appendBytes(bytes);
+      }
+      indices[i] = index;
+    }
+
+    buffer
+        .appendInt(batch.getJobId())
+        .appendByte((byte) ((batch.isLast() ? LAST : 0) | (batch.isNamed() ? NAMED : 0)))
+        .appendInt(dictionary.size())
+        .appendBuffer(names)
+        .appendInt(batch.size());
+    for (int index : indices) {
+      buffer.appendInt(index);
+    }
+  }
+
+  @Override
+  public ElementBatch decodeFromWire(int pos, Buffer buffer) {
+    var symbols = SymbolTable.shared();
+
+    int jobId = buffer.getInt(pos);
+    byte flags = buffer.getByte(pos + 4);
+    boolean named = (flags & NAMED) != 0;
+    int nameCount = buffer.getInt(pos + 5);
+    pos += 9;
+
+    var dictionary = new String[nameCount];
+    var symbolDictionary = named ? null : new int[nameCount];
+    for (int i = 0; i < nameCount; i++) {
+      int length = buffer.getInt(pos);
+      dictionary[i] = buffer.getString(pos + 4, pos + 4 + length, "UTF-8");
+      if (!named) {
+        symbolDictionary[i] = symbols.intern(dictionary[i]);
+      }
+      pos += 4 + length;
+    }
+
+    int size = buffer.getInt(pos);
+    pos += 4;
+
+    var batch = new ElementBatch(jobId, Math.max(1, size), named);
+    for (int i = 0; i < size; i++, pos += 4) {
+      int index = buffer.getInt(pos);
+      if (named) {
+        batch.add(dictionary[index]);
+      } else {
+        batch.add(symbolDictionary[index]);
+      }
+    }
+    batch.setLast((flags & LAST) != 0);
+
+    return batch;
+  }
+
+  @Override
+  public ElementBatch transform(ElementBatch batch) {
+    return batch;
+  }
+
+  @Override
+  public String name() {
+    return NAME;
+  }
+
+  @Override
+  public byte systemCodecID() {
+    return -1;
+  }
+}
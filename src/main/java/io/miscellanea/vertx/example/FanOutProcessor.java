@@ -0,0 +1,106 @@
+package io.miscellanea.vertx.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * Drives several processors from a single parse. Every event is delivered to each processor that
+ * has not finished, and each processor keeps its own context, so credits and backpressure stay
+ * independent. When any processor suspends its job the pump stops, and it resumes only once every
+ * suspended processor has been resumed by its context.
+ *
+ * <p>Processors must suspend and resume through their context; the shredder ends the job only
+ * after every processor has reported finished.
+ *
+ * @author Jason Hallford
+ */
+public class FanOutProcessor implements XmlStreamProcessor {
+  // Fields
+  private static final Logger LOGGER = LoggerFactory.getLogger(FanOutProcessor.class);
+
+  private final Integer jobId;
+  private final List<XmlStreamProcessor> processors;
+  private final List<XmlEventProcessorContext> contexts;
+  private final AbstractXmlShredderVerticle shredder;
+  private final boolean[] finished;
+  private final boolean[] suspended;
+  private int suspendedCount = 0;
+
+  // Constructors
+  public FanOutProcessor(
+      Integer jobId,
+      List<XmlStreamProcessor> processors,
+      List<XmlEventProcessorContext> contexts,
+      AbstractXmlShredderVerticle shredder) {
+    assert jobId != null : "jobId must not be null.";
+    this.jobId = jobId;
+
+    assert processors != null && !processors.isEmpty() : "processors must not be empty.";
+    assert contexts != null && contexts.size() == processors.size()
+        : "contexts must match processors.";
+    this.processors = processors;
+    this.contexts = contexts;
+
+    assert shredder != null : "shredder must not be null.";
+    this.shredder = shredder;
+
+    this.finished = new boolean[processors.size()];
+    this.suspended = new boolean[processors.size()];
+    for (int i = 0; i < contexts.size(); i++) {
+      int index = i;
+      contexts.get(i).setResumeHandler(() -> this.resumed(index));
+    }
+  }
+
+  // XmlStreamProcessor
+  @Override
+  public boolean process(XmlCursor cursor) {
+    boolean running = false;
+
+    for (int i = 0; i < this.processors.size(); i++) {
+      if (this.finished[i]) {
+        continue;
+      }
+
+      if (this.processors.get(i).process(cursor)) {
+        running = true;
+      } else if (this.contexts.get(i).isSuspended()) {
+        this.suspended[i] = true;
+        this.suspendedCount++;
+      } else {
+        this.finished[i] = true;
+      }
+    }
+
+    // Continue only if no processor is waiting and at least one still wants events.
+    return this.suspendedCount == 0 && running;
+  }
+
+  @Override
+  public boolean skipsSubtree() {
+    // A subtree is skipped only if no processor that is still reading wants it.
+    for (int i = 0; i < this.processors.size(); i++) {
+      if (!this.finished[i] && !this.processors.get(i).skipsSubtree()) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  // Helper methods
+  private void resumed(int index) {
+    if (!this.suspended[index]) {
+      return;
+    }
+
+    this.suspended[index] = false;
+    this.suspendedCount--;
+    if (this.suspendedCount == 0) {
+      LOGGER.debug("All processors resumed for job {}.", this.jobId);
+      this.shredder.sendNext(this.jobId);
+    }
+  }
+}
@@ -0,0 +1,178 @@
+package io.miscellanea.vertx.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An <code>InputStream</code> over a <code>FileChannel</code> that hands the XML parser raw bytes, so
+ * the parser detects the document's encoding from its BOM or XML declaration. Files at or above a
+ * threshold are read through memory-mapped regions; smaller files are read through a single reusable
+ * direct buffer. Either way, bytes are copied once, into the parser's own buffer.
+ *
+ * @author Jason Hallford
+ */
+public class FileChannelInputStream extends InputStream {
+  // Fields
+  private final FileChannel channel;
+  private final long start;
+  private final long end;
+  private final boolean mapped;
+  private final int regionSize;
+  private long position;
+  private ByteBuffer window;
+
+  // Constructors
+  private FileChannelInputStream(
+      FileChannel channel, long start, long end, boolean mapped, int regionSize) {
+    this.channel = channel;
+    this.start = start;
+    this.end = end;
+    this.mapped = mapped;
+    this.regionSize = regionSize;
+    this.position = start;
+
+    if (mapped) {
+      this.window = ByteBuffer.allocate(0);
+    } else {
+      this.window = ByteBuffer.allocateDirect(regionSize).flip();
+    }
+  }
+
+  // Factory methods
+
+  /**
+   * Opens a file for reading.
+   *
+   * @param path The file's path.
+   * @param bufferSize The size of the direct buffer used for files below the mapping threshold.
+   * @param mmapThreshold The file size, in bytes, at or above which the file is memory-mapped.
+   * @param mapRegionSize The size of each mapped region.
+   * @return The stream.
+   * @throws IOException If the file cannot be opened.
+   */
+  public static FileChannelInputStream open(
+      Path path, int bufferSize, long mmapThreshold, int mapRegionSize) throws IOException {
+    return open(path, 0L, Long.MAX_VALUE, bufferSize, mmapThreshold, mapRegionSize);
+  }
+
+  /**
+   * Opens a byte range of a file for reading.
+   *
+   * @param path The file's path.
+   * @param start The offset of the range's first byte.
+   * @param end The offset just past the range's last byte; clamped to the file's size.
+   * @param bufferSize The size of the direct buffer used for ranges below the mapping threshold.
+   * @param mmapThreshold The range size, in bytes, at or above which the range is memory-mapped.
+   * @param mapRegionSize The size of each mapped region.
+   * @return The stream.
+   * @throws IOException If the file cannot be opened.
+   */
+  public static FileChannelInputStream open(
+      Path path, long start, long end, int bufferSize, long mmapThreshold, int mapRegionSize)
+      throws IOException {
+    assert path != null : "path must not be null.";
+    assert start >= 0 && start <= end : "start must be within [0, end].";
+    assert bufferSize > 0 : "bufferSize must be positive.";
+    assert mapRegionSize > 0 : "mapRegionSize must be positive.";
+
+    var channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      long clampedEnd = Math.min(end, channel.size());
+      long clampedStart = Math.min(start, clampedEnd);
+      boolean mapped = clampedEnd - clampedStart >= mmapThreshold;
+      return new FileChannelInputStream(
+          channel, clampedStart, clampedEnd, mapped, mapped ? mapRegionSize : bufferSize);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  // Properties
+  public boolean isMapped() {
+    return mapped;
+  }
+
+  /**
+   * Gets the file offset of the next byte the stream will return.
+   *
+   * @return The offset.
+   */
+  public long getPosition() {
+    return this.position - this.window.remaining();
+  }
+
+  /**
+   * Gets the number of bytes the stream has returned so far.
+   *
+   * @return The byte count.
+   */
+  public long getBytesRead() {
+    return this.getPosition() - this.start;
+  }
+
+  // InputStream
+  @Override
+  public int read() throws IOException {
+    if (!this.window.hasRemaining() && !this.fill()) {
+      return -1;
+    }
+
+    return this.window.get() & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (!this.window.hasRemaining() && !this.fill()) {
+      return -1;
+    }
+
+    int count = Math.min(len, this.window.remaining());
+    this.window.get(b, off, count);
+    return count;
+  }
+
+  @Override
+  public int available() {
+    return this.window.remaining();
+  }
+
+  @Override
+  public void close() throws IOException {
+    // Mapped regions are released when they are garbage collected.
+    this.channel.close();
+  }
+
+  // Helper methods
+  private boolean fill() throws IOException {
+    if (this.position >= this.end) {
+      return false;
+    }
+
+    if (this.mapped) {
+      long size = Math.min(this.regionSize, this.end - this.position);
+      this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, this.position, size);
+      this.position += size;
+    } else {
+      this.window.clear();
+      if (this.end - this.position < this.window.capacity()) {
+        this.window.limit((int) (this.end - this.position));
+      }
+      int count = this.channel.read(this.window, this.position);
+      this.window.flip();
+      if (count <= 0) {
+        return false;
+      }
+      this.position += count;
+    }
+
+    return true;
+  }
+}
@@ -0,0 +1,285 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.Promise;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An HTTP server that shreds uploaded documents while their bytes arrive. The request body is fed
+ * straight into an <code>AsyncShreddingJob</code>, never buffered or spooled to disk, and the job
+ * pauses the request whenever it cannot accept more input, which pushes backpressure back to the
+ * client's TCP connection.
+ *
+ * <ul>
+ *   <li><code>POST /jobs</code> shreds the request body. By default the response carries the job's
+ *       results once every provider that publishes one has done so, or only its status if none
+ *       does. With <code>?wait=false</code>, the server answers <code>202 Accepted</code> with the
+ *       job's identifier as soon as the body has been shredded. An optional <code>doc-type</code>
+ *       parameter selects the provider; it defaults to <code>xml</code>. An optional <code>mode
+ *       </code> parameter sets the job's <code>tag-name.mode</code>, such as <code>approximate
+ *       </code>.
+ *   <li><code>GET /jobs/:id</code> returns a finished job's results, or <code>202</code> while the
+ *       job is still running.
+ * </ul>
+ *
+ * Uploads do not pass through the job scheduler; each instance admits at most <code>
+ * http-max-active-jobs</code> of them and rejects the rest with <code>503</code>.
+ *
+ * @author Jason Hallford
+ */
+public class HttpIngestionVerticle extends AsyncXmlShredderVerticle {
+  private static class Upload {
+    private final HttpServerRequest request;
+    private final boolean wait;
+
+    public Upload(HttpServerRequest request, boolean wait) {
+      this.request = request;
+      this.wait = wait;
+    }
+  }
+
+  /** The results a job's providers have yet to publish, and those they already have. */
+  private static class PendingResults {
+    private final Map<String, XmlResultBinding> bindings = new HashMap<>();
+    private final JsonObject received = new JsonObject();
+  }
+
+  // Fields
+  private static final Logger LOGGER = LoggerFactory.getLogger(HttpIngestionVerticle.class);
+
+  private static final int DEFAULT_MAX_ACTIVE_JOBS = 16;
+  private static final int DEFAULT_RESULT_RETENTION = 1000;
+
+  private final Map<Integer, Upload> uploads = new HashMap<>();
+  private final Map<Integer, HttpServerResponse> waiting = new HashMap<>();
+  private final Map<Integer, PendingResults> pendingResults = new HashMap<>();
+  private final Set<String> resultAddresses = new HashSet<>();
+  private final Set<Integer> running = new HashSet<>();
+  private Map<Integer, JsonObject> results;
+  private int maxActiveJobs;
+
+  // Constructors
+  public HttpIngestionVerticle() {}
+
+  // Vert.x lifecycle methods
+  @Override
+  public void start(Promise<Void> startPromise) {
+    this.maxActiveJobs = config().getInteger("http-max-active-jobs", DEFAULT_MAX_ACTIVE_JOBS);
+    int retention = config().getInteger("http-result-retention", DEFAULT_RESULT_RETENTION);
+    this.results =
+        new LinkedHashMap<>() {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Integer, JsonObject> eldest) {
+            return size() > retention;
+          }
+        };
+
+    Promise<Void> shredderStarted = Promise.promise();
+    super.start(shredderStarted);
+    shredderStarted
+        .future()
+        .setHandler(
+            started -> {
+              if (started.failed()) {
+                startPromise.fail(started.cause());
+              } else {
+                this.listen(startPromise);
+              }
+            });
+  }
+
+  // Initialization
+  private void listen(Promise<Void> startPromise) {
+    int port = config().getInteger("http-port");
+
+    var router = Router.router(getVertx());
+    router.post("/jobs").handler(this::submitJob);
+    router.get("/jobs/:id").handler(this::getJob);
+
+    getVertx()
+        .createHttpServer(new HttpServerOptions().setHandle100ContinueAutomatically(true))
+        .requestHandler(router)
+        .listen(
+            port,
+            result -> {
+              if (result.succeeded()) {
+                LOGGER.info("Accepting XML uploads at http://localhost:{}/jobs.", port);
+                startPromise.complete();
+              } else {
+                startPromise.fail(result.cause());
+              }
+            });
+  }
+
+  // Vert.x handlers
+  private void submitJob(RoutingContext routingContext) {
+    var request = routingContext.request();
+    if (this.uploads.size() >= this.maxActiveJobs) {
+      respond(
+          routingContext.response(),
+          JobSchedulerVerticle.QUEUE_FULL,
+          new JsonObject().put("error", "Too many uploads in progress."));
+      request.connection().close();
+      return;
+    }
+
+    int jobId = JobIds.next();
+    var docType = request.getParam("doc-type") != null ? request.getParam("doc-type") : "xml";
+    if (request.getParam("mode") != null) {
+      this.setJobProperties(
+          jobId,
+          new JsonObject().put(TagNameProcessorVerticle.MODE_PROPERTY, request.getParam("mode")));
+    }
+    var processor = this.createProcessor(jobId, docType, null);
+    if (processor.isEmpty()) {
+      this.setJobProperties(jobId, null);
+      respond(
+          routingContext.response(),
+          415,
+          new JsonObject().put("error", "Unsupported document type '" + docType + "'."));
+      request.connection().close();
+      return;
+    }
+
+    this.uploads.put(jobId, new Upload(request, !"false".equals(request.getParam("wait"))));
+    this.running.add(jobId);
+    this.expectResults(jobId);
+    this.startJob(jobId, request, processor.get());
+    LOGGER.info("Begin shredding uploaded document (job = {}).", jobId);
+  }
+
+  private void getJob(RoutingContext routingContext) {
+    int jobId;
+    try {
+      jobId = Integer.parseInt(routingContext.pathParam("id"));
+    } catch (NumberFormatException e) {
+      respond(routingContext.response(), 400, new JsonObject().put("error", "Invalid job id."));
+      return;
+    }
+
+    var result = this.results.get(jobId);
+    if (result != null) {
+      respond(routingContext.response(), 200, result);
+    } else if (this.running.contains(jobId)) {
+      respond(
+          routingContext.response(),
+          202,
+          new JsonObject().put("job-id", jobId).put("status", "running"));
+    } else {
+      respond(routingContext.response(), 404, new JsonObject().put("error", "Unknown job."));
+    }
+  }
+
+  private void recordResult(Message<Object> message) {
+    var header = message.headers().get(TagNameProcessorVerticle.JOB_ID_HEADER);
+    var jobId = header != null ? Integer.valueOf(header) : null;
+    var pending = jobId != null ? this.pendingResults.get(jobId) : null;
+    var binding = pending != null ? pending.bindings.remove(message.address()) : null;
+    if (binding == null) {
+      // Another shredder's job.
+      return;
+    }
+
+    pending.received.mergeIn(binding.encode(message.body()));
+    if (pending.bindings.isEmpty() && !this.uploads.containsKey(jobId)) {
+      this.finish(jobId);
+    }
+  }
+
+  // AbstractXmlShredderVerticle
+  @Override
+  protected boolean acceptsScheduledJobs() {
+    return false;
+  }
+
+  @Override
+  protected void jobEnded(Integer jobId, String error) {
+    var upload = this.uploads.remove(jobId);
+    if (upload == null) {
+      return;
+    }
+
+    var response = upload.request.response();
+    if (error != null) {
+      this.running.remove(jobId);
+      this.pendingResults.remove(jobId);
+      this.results.put(
+          jobId, new JsonObject().put("job-id", jobId).put("status", "failed").put("error", error));
+      respond(response, 400, new JsonObject().put("job-id", jobId).put("error", error));
+
+      // The rest of the body will never be read.
+      if (!upload.request.isEnded()) {
+        upload.request.connection().close();
+      }
+    } else {
+      if (upload.wait) {
+        this.waiting.put(jobId, response);
+      } else {
+        respond(response, 202, new JsonObject().put("job-id", jobId).put("status", "running"));
+      }
+
+      // The processors may have published their results before the shredder saw the job end.
+      var pending = this.pendingResults.get(jobId);
+      if (pending == null || pending.bindings.isEmpty()) {
+        this.finish(jobId);
+      }
+    }
+  }
+
+  // Helper methods
+
+  /**
+   * Notes the results a new job's providers will publish, so that its upload is answered only once
+   * they all have been. Providers without a result binding publish nothing to wait for.
+   */
+  private void expectResults(Integer jobId) {
+    var bindings = this.getResultBindings(jobId);
+    if (bindings.isEmpty()) {
+      return;
+    }
+
+    var pending = new PendingResults();
+    for (XmlResultBinding binding : bindings) {
+      pending.bindings.put(binding.getAddress(), binding);
+      if (this.resultAddresses.add(binding.getAddress())) {
+        getVertx().eventBus().consumer(binding.getAddress(), this::recordResult);
+      }
+    }
+    this.pendingResults.put(jobId, pending);
+  }
+
+  private void finish(Integer jobId) {
+    var pending = this.pendingResults.remove(jobId);
+    var result = pending != null ? pending.received : new JsonObject();
+    result.put("job-id", jobId).put("status", "finished");
+
+    this.running.remove(jobId);
+    this.results.put(jobId, result);
+    var response = this.waiting.remove(jobId);
+    if (response != null) {
+      respond(response, 200, result);
+    }
+  }
+
+  private static void respond(HttpServerResponse response, int statusCode, JsonObject body) {
+    if (!response.closed() && !response.ended()) {
+      response
+          .setStatusCode(statusCode)
+          .putHeader("Content-Type", "application/json")
+          .end(body.encode());
+    }
+  }
+}
@@ -0,0 +1,35 @@
+package io.miscellanea.vertx.example;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Issues identifiers for jobs created inside the process, such as the parts of a split document and
+ * uploaded documents. Submitted jobs carry positive identifiers chosen by their submitter, so
+ * generated identifiers are negative and the two can never collide.
+ *
+ * <p>In a clustered deployment, the node's number occupies the identifier's high bits, so that jobs
+ * created on different nodes never share an identifier; each node issues 2<sup>24</sup> before its
+ * identifiers repeat.
+ *
+ * @author Jason Hallford
+ */
+public final class JobIds {
+  // Fields
+  private static final int NODE_SHIFT = 24;
+  private static final int SEQUENCE_MASK = (1 << NODE_SHIFT) - 1;
+
+  private static final AtomicInteger LAST_ID = new AtomicInteger();
+
+  // Constructors
+  private JobIds() {}
+
+  // Methods
+  public static int next() {
+    int node = ClusterNode.getNumber();
+    if (node == 0) {
+      return LAST_ID.decrementAndGet();
+    }
+
+    return -((node << NODE_SHIFT) | (LAST_ID.incrementAndGet() & SEQUENCE_MASK));
+  }
+}
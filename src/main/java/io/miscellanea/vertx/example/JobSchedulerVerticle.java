@@ -0,0 +1,200 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A verticle that sits between job submitters and shredders. Jobs submitted to <code>xml.shred
+ * </code> are admitted into a bounded pending queue, or rejected when it is full. Shredders pull
+ * work: each registers the number of jobs it may run at once and announces a free slot whenever a
+ * job finishes, and the scheduler dispatches each pending job to the least-loaded shredder that has
+ * a free slot. Open files and parser buffers are therefore bounded by the shredders' capacity, not
+ * by the size of the backlog.
+ *
+ * <p>Pending jobs wait in their <code>priority</code> class, and classes are dispatched by weighted
+ * round-robin, so interactive documents overtake a backlog of bulk ones without starving it.
+ *
+ * <p>Shredders acknowledge each job they are dispatched. A job that is not acknowledged, whether
+ * its shredder no longer exists, did not answer in time or refused it, is requeued ahead of the
+ * others and the shredder is forgotten.
+ *
+ * <p>Only one instance of this verticle should be deployed, on one node of a cluster.
+ *
+ * @author Jason Hallford
+ */
+public class JobSchedulerVerticle extends AbstractVerticle {
+  private static class Worker {
+    private final String address;
+    private int active = 0;
+    private int slots;
+
+    public Worker(String address, int slots) {
+      this.address = address;
+      this.slots = slots;
+    }
+  }
+
+  // Fields
+  private static final Logger LOGGER = LoggerFactory.getLogger(JobSchedulerVerticle.class);
+
+  public static final String SUBMIT_ADDRESS = "xml.shred";
+  public static final String REGISTER_ADDRESS = "xml.shred.scheduler.register";
+  public static final String UNREGISTER_ADDRESS = "xml.shred.scheduler.unregister";
+  public static final String READY_ADDRESS = "xml.shred.scheduler.ready";
+
+  /** The failure code sent to submitters whose job is rejected because the queue is full. */
+  public static final int QUEUE_FULL = 503;
+
+  private static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
+  private WeightedRoundRobinQueue<JsonObject> pending;
+  private final Map<String, Worker> workers = new HashMap<>();
+  private int queueCapacity;
+
+  // Published for the metrics registry, which reads them from its scrape thread.
+  private volatile int pendingJobs = 0;
+  private volatile int activeJobs = 0;
+
+  // Constructors
+  public JobSchedulerVerticle() {}
+
+  // Vert.x lifecycle methods
+  @Override
+  public void start() {
+    this.queueCapacity = config().getInteger("scheduler-queue-capacity", DEFAULT_QUEUE_CAPACITY);
+    this.pending = WeightedRoundRobinQueue.forJobs(config());
+
+    getVertx().eventBus().consumer(SUBMIT_ADDRESS, this::submit);
+    getVertx().eventBus().consumer(REGISTER_ADDRESS, this::register);
+    getVertx().eventBus().consumer(UNREGISTER_ADDRESS, this::unregister);
+    getVertx().eventBus().consumer(READY_ADDRESS, this::ready);
+
+    var registry = ShredMetrics.registry();
+    registry.gauge("shred.scheduler.jobs.pending", this, verticle -> verticle.pendingJobs);
+    registry.gauge("shred.scheduler.jobs.active", this, verticle -> verticle.activeJobs);
+
+    LOGGER.info("Job scheduler started. Pending queue capacity = {}.", this.queueCapacity);
+  }
+
+  // Vert.x handlers
+  private void submit(Message<JsonObject> message) {
+    var job = message.body();
+    var jobId = job.getInteger("job-id");
+    var priority = job.getString(AbstractXmlShredderVerticle.PRIORITY);
+
+    if (job.getBoolean(AbstractXmlShredderVerticle.SUCCESSOR, false)) {
+      // Successors of an admitted job, such as its parts or archive entries, were already counted
+      // against the queue; run them first.
+      this.pending.addFirst(priority, job);
+    } else if (this.pending.size() >= this.queueCapacity) {
+      LOGGER.warn("Rejecting job {}; the pending queue is full.", jobId);
+      message.fail(QUEUE_FULL, "The pending job queue is full.");
+      return;
+    } else {
+      this.pending.addLast(priority, job);
+    }
+
+    LOGGER.debug("Admitted job {}; {} job(s) pending.", jobId, this.pending.size());
+    message.reply(
+        new JsonObject()
+            .put("job-id", jobId)
+            .put("accepted", true)
+            .put("pending", this.pending.size()));
+    this.dispatch();
+  }
+
+  private void register(Message<JsonObject> message) {
+    var address = message.body().getString("address");
+    int capacity = message.body().getInteger("capacity");
+
+    this.workers.put(address, new Worker(address, capacity));
+    LOGGER.info("Registered shredder '{}' with capacity {}.", address, capacity);
+
+    message.reply(new JsonObject().put("registered", true));
+    this.dispatch();
+  }
+
+  private void unregister(Message<JsonObject> message) {
+    var address = message.body().getString("address");
+    this.workers.remove(address);
+    this.publishCounts();
+    LOGGER.info("Unregistered shredder '{}'.", address);
+  }
+
+  private void ready(Message<JsonObject> message) {
+    var worker = this.workers.get(message.body().getString("address"));
+    if (worker == null) {
+      LOGGER.warn("Received ready from unknown shredder '{}'.", message.body().getString("address"));
+      return;
+    }
+
+    worker.active = Math.max(0, worker.active - 1);
+    worker.slots++;
+    LOGGER.debug(
+        "Shredder '{}' finished job {}; {} active.",
+        worker.address,
+        message.body().getInteger("job-id"),
+        worker.active);
+    this.dispatch();
+  }
+
+  // Helper methods
+  private void dispatch() {
+    while (!this.pending.isEmpty()) {
+      Worker target = null;
+      for (Worker worker : this.workers.values()) {
+        if (worker.slots > 0 && (target == null || worker.active < target.active)) {
+          target = worker;
+        }
+      }
+
+      if (target == null) {
+        break;
+      }
+
+      var job = this.pending.poll();
+      var worker = target;
+      worker.slots--;
+      worker.active++;
+      LOGGER.debug("Dispatching job {} to '{}'.", job.getInteger("job-id"), worker.address);
+      getVertx()
+          .eventBus()
+          .request(
+              worker.address,
+              job,
+              accepted -> {
+                if (accepted.failed()) {
+                  this.dispatchFailed(worker, job, accepted.cause());
+                }
+              });
+    }
+
+    this.publishCounts();
+  }
+
+  private void publishCounts() {
+    this.pendingJobs = this.pending.size();
+    this.activeJobs = this.workers.values().stream().mapToInt(worker -> worker.active).sum();
+  }
+
+  private void dispatchFailed(Worker worker, JsonObject job, Throwable cause) {
+    // The shredder is gone, as when its node left the cluster or died before the cluster noticed,
+    // or it cannot run jobs; forget it, so that neither its slot nor the job is lost to it.
+    var jobId = job.getInteger("job-id");
+    LOGGER.warn(
+        "Shredder '{}' did not acknowledge job {}; forgetting it and requeueing the job: {}",
+        worker.address,
+        jobId,
+        cause.getMessage());
+    this.workers.remove(worker.address, worker);
+    this.pending.addFirst(job.getString(AbstractXmlShredderVerticle.PRIORITY), job);
+    this.dispatch();
+  }
+
+}
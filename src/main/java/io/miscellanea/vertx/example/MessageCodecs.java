@@ -0,0 +1,36 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.eventbus.EventBus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registers the message codecs used for shredder-to-processor traffic.
+ *
+ * @author Jason Hallford
+ */
+public final class MessageCodecs {
+  // Fields
+  private static final Logger LOGGER = LoggerFactory.getLogger(MessageCodecs.class);
+
+  // Constructors
+  private MessageCodecs() {}
+
+  // Methods
+
+  /**
+   * Registers this example's codecs as the default codecs for their types. Must be called once per
+   * Vert.x instance before any verticle is deployed.
+   *
+   * @param eventBus The event bus on which to register the codecs.
+   */
+  public static void registerDefaults(EventBus eventBus) {
+    assert eventBus != null : "eventBus must not be null.";
+
+    LOGGER.debug("Registering default message codecs.");
+    eventBus.registerDefaultCodec(ShredEvent.class, new ShredEventCodec());
+    eventBus.registerDefaultCodec(ElementBatch.class, new ElementBatchCodec());
+    eventBus.registerDefaultCodec(TagStats.class, new TagStatsCodec());
+    eventBus.registerDefaultCodec(TagSketch.class, new TagSketchCodec());
+  }
+}
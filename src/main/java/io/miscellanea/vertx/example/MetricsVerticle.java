@@ -0,0 +1,50 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Promise;
+import io.vertx.ext.web.Router;
+import io.vertx.micrometer.PrometheusScrapingHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serves the default Micrometer registry in the Prometheus text format at <code>/metrics</code>, on
+ * the port given by the <code>metrics-port</code> configuration property.
+ *
+ * @author Jason Hallford
+ */
+public class MetricsVerticle extends AbstractVerticle {
+  // Fields
+  private static final Logger LOGGER = LoggerFactory.getLogger(MetricsVerticle.class);
+
+  public static final int DEFAULT_PORT = 9090;
+
+  // Constructors
+  public MetricsVerticle() {}
+
+  // Vert.x lifecycle methods
+  @Override
+  public void start(Promise<Void> startPromise) {
+    int port = config().getInteger("metrics-port", DEFAULT_PORT);
+
+    // The shared symbol table is never pruned, so its growth is worth watching.
+    ShredMetrics.registry().gauge("symbol-table.names", SymbolTable.shared(), SymbolTable::size);
+
+    var router = Router.router(getVertx());
+    router.get("/metrics").handler(PrometheusScrapingHandler.create());
+
+    getVertx()
+        .createHttpServer()
+        .requestHandler(router)
+        .listen(
+            port,
+            result -> {
+              if (result.succeeded()) {
+                LOGGER.info("Serving metrics at http://localhost:{}/metrics.", port);
+                startPromise.complete();
+              } else {
+                startPromise.fail(result.cause());
+              }
+            });
+  }
+}
@@ -0,0 +1,351 @@
+package io.miscellanea.vertx.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Finds byte offsets at which a large document may be cut into independently parseable parts. The
+ * scanner reads the document's prolog up to the end of the root element's start tag, then, for each
+ * desired cut, seeks to an evenly spaced offset and scans forward to the next start tag of a record
+ * element. Only a few kilobytes around each cut, and usually of the prolog, are read.
+ *
+ * <p>The scanner works on raw bytes and therefore assumes an ASCII-compatible encoding such as UTF-8
+ * or ISO-8859-1; documents with a UTF-16 or UTF-32 byte order are not split. Record elements are
+ * assumed to be children of the root element, not to nest, and not to appear within comments or
+ * CDATA sections.
+ *
+ * @author Jason Hallford
+ */
+public final class RecordBoundaryScanner {
+  /** The result of a successful scan. */
+  public static final class Split {
+    private final long prologEnd;
+    private final String rootName;
+    private final List<Long> boundaries;
+    private final long fileSize;
+
+    private Split(long prologEnd, String rootName, List<Long> boundaries, long fileSize) {
+      this.prologEnd = prologEnd;
+      this.rootName = rootName;
+      this.boundaries = Collections.unmodifiableList(boundaries);
+      this.fileSize = fileSize;
+    }
+
+    /**
+     * Gets the offset just past the root element's start tag. The bytes before it carry the XML
+     * declaration and the root's namespace declarations.
+     *
+     * @return The offset.
+     */
+    public long getPrologEnd() {
+      return prologEnd;
+    }
+
+    public String getRootName() {
+      return rootName;
+    }
+
+    /**
+     * Gets the offsets at which each part, after the first, begins. Each offset addresses the
+     * <code>&lt;</code> of a record element's start tag.
+     *
+     * @return The boundaries, in ascending order.
+     */
+    public List<Long> getBoundaries() {
+      return boundaries;
+    }
+
+    public long getFileSize() {
+      return fileSize;
+    }
+
+    public int getPartCount() {
+      return boundaries.size() + 1;
+    }
+  }
+
+  private static final class Prolog {
+    private final long end;
+    private final String rootName;
+
+    private Prolog(long end, String rootName) {
+      this.end = end;
+      this.rootName = rootName;
+    }
+  }
+
+  // Fields
+  private static final int CHUNK_SIZE = 64 * 1024;
+  private static final int MAX_PROLOG_SIZE = 16 * 1024 * 1024;
+  private static final Prolog INCOMPLETE = new Prolog(-1L, null);
+
+  // Constructors
+  private RecordBoundaryScanner() {}
+
+  // Methods
+
+  /**
+   * Scans a document for boundaries that cut it into, at most, <code>partCount</code> parts.
+   *
+   * @param path The document's path.
+   * @param recordNames The qualified or local names of the record elements.
+   * @param partCount The desired number of parts.
+   * @return The split, or an empty optional if the document cannot be cut into two or more parts.
+   * @throws IOException If the document cannot be read.
+   */
+  public static Optional<Split> scan(Path path, Set<String> recordNames, int partCount)
+      throws IOException {
+    assert path != null : "path must not be null.";
+    assert recordNames != null && !recordNames.isEmpty() : "recordNames must have a value.";
+
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long fileSize = channel.size();
+      var prolog = readPrologRoot(channel, (int) Math.min(fileSize, MAX_PROLOG_SIZE));
+      if (prolog == null) {
+        return Optional.empty();
+      }
+
+      long prologEnd = prolog.end;
+      var names = encodeNames(recordNames);
+
+      var boundaries = new ArrayList<Long>();
+      long partSize = (fileSize - prologEnd) / Math.max(1, partCount);
+      for (int i = 1; i < partCount && partSize > 0; i++) {
+        long from = Math.max(prologEnd + i * partSize, lastOf(boundaries) + 1);
+        long boundary = findRecordStart(channel, from, fileSize, names);
+        if (boundary < 0) {
+          break;
+        }
+        boundaries.add(boundary);
+      }
+
+      return boundaries.isEmpty()
+          ? Optional.empty()
+          : Optional.of(new Split(prologEnd, prolog.rootName, boundaries, fileSize));
+    }
+  }
+
+  // Helper methods
+  private static long lastOf(List<Long> boundaries) {
+    return boundaries.isEmpty() ? -1L : boundaries.get(boundaries.size() - 1);
+  }
+
+  private static byte[][] encodeNames(Set<String> recordNames) {
+    var names = new byte[recordNames.size()][];
+    int i = 0;
+    for (String name : recordNames) {
+      names[i++] = name.getBytes(StandardCharsets.UTF_8);
+    }
+    return names;
+  }
+
+  /**
+   * Reads the prolog and the root element's start tag. The prolog is read in a window of <code>
+   * CHUNK_SIZE</code> bytes, which is doubled, up to <code>limit</code>, only while the root
+   * element's start tag runs past it, as after a large internal DTD subset.
+   *
+   * @return The prolog, or <code>null</code> if the document cannot be split.
+   */
+  private static Prolog readPrologRoot(FileChannel channel, int limit) throws IOException {
+    int window = Math.min(CHUNK_SIZE, limit);
+    while (true) {
+      var buffer = ByteBuffer.allocate(window);
+      while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0) {
+        // Keep reading until the window is full or the file ends.
+      }
+
+      var prolog = parsePrologRoot(buffer.array(), buffer.position());
+      if (prolog != INCOMPLETE) {
+        return prolog;
+      }
+      if (buffer.hasRemaining() || window == limit) {
+        return null;
+      }
+      window = (int) Math.min((long) window * 2, limit);
+    }
+  }
+
+  /**
+   * Parses the prolog and the root element's start tag from the first bytes of a document.
+   *
+   * @return The prolog, <code>null</code> if the document cannot be split, or <code>INCOMPLETE
+   *     </code> if the root element's start tag does not end within <code>length</code> bytes.
+   */
+  private static Prolog parsePrologRoot(byte[] bytes, int length) {
+    // Multi-byte encodings are not ASCII-compatible; a NUL in the first bytes reveals them.
+    if (length >= 2
+        && ((bytes[0] == (byte) 0xFE && bytes[1] == (byte) 0xFF)
+            || (bytes[0] == (byte) 0xFF && bytes[1] == (byte) 0xFE)
+            || bytes[0] == 0
+            || bytes[1] == 0)) {
+      return null;
+    }
+
+    int i = 0;
+    while (i < length) {
+      int lt = indexOf(bytes, i, length, "<");
+      if (lt < 0 || lt + 1 >= length) {
+        return INCOMPLETE;
+      }
+
+      if (startsWith(bytes, lt, length, "<?")) {
+        i = endOf(bytes, lt, length, "?>");
+      } else if (startsWith(bytes, lt, length, "<!--")) {
+        i = endOf(bytes, lt, length, "-->");
+      } else if (startsWith(bytes, lt, length, "<!")) {
+        int gt = indexOf(bytes, lt, length, ">");
+        int subset = indexOf(bytes, lt, length, "[");
+        i = subset >= 0 && gt >= 0 && subset < gt ? endOf(bytes, subset, length, "]>") : gt + 1;
+      } else {
+        // The root element's start tag.
+        int nameEnd = lt + 1;
+        while (nameEnd < length && !isNameTerminator(bytes[nameEnd])) {
+          nameEnd++;
+        }
+
+        int tagEnd = endOfTag(bytes, nameEnd, length);
+        if (tagEnd < 0) {
+          return INCOMPLETE;
+        }
+        if (bytes[tagEnd - 2] == '/') {
+          return null;
+        }
+
+        return new Prolog(
+            tagEnd, new String(bytes, lt + 1, nameEnd - lt - 1, StandardCharsets.UTF_8));
+      }
+
+      if (i <= 0) {
+        return INCOMPLETE;
+      }
+    }
+
+    return INCOMPLETE;
+  }
+
+  private static long findRecordStart(FileChannel channel, long from, long end, byte[][] names)
+      throws IOException {
+    int maxName = 0;
+    for (byte[] name : names) {
+      maxName = Math.max(maxName, name.length);
+    }
+    int overlap = maxName + 2;
+
+    var buffer = ByteBuffer.allocate(CHUNK_SIZE);
+    long position = from;
+    while (position < end) {
+      buffer.clear();
+      int count = channel.read(buffer, position);
+      if (count <= 0) {
+        return -1L;
+      }
+
+      byte[] bytes = buffer.array();
+      boolean last = position + count >= end;
+      int scanLimit = last ? count : count - overlap;
+      for (int i = 0; i < scanLimit; i++) {
+        if (bytes[i] == '<' && matchesRecordName(bytes, i + 1, count, names)) {
+          return position + i;
+        }
+      }
+
+      if (last) {
+        return -1L;
+      }
+      position += scanLimit;
+    }
+
+    return -1L;
+  }
+
+  private static boolean matchesRecordName(byte[] bytes, int start, int length, byte[][] names) {
+    // Compare against the qualified name and, if the tag is prefixed, its local part.
+    int nameEnd = start;
+    int localStart = start;
+    while (nameEnd < length && !isNameTerminator(bytes[nameEnd])) {
+      if (bytes[nameEnd] == ':') {
+        localStart = nameEnd + 1;
+      }
+      nameEnd++;
+    }
+    if (nameEnd >= length || nameEnd == start) {
+      return false;
+    }
+
+    for (byte[] name : names) {
+      if (regionEquals(bytes, start, nameEnd, name)
+          || regionEquals(bytes, localStart, nameEnd, name)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean regionEquals(byte[] bytes, int start, int end, byte[] name) {
+    if (end - start != name.length) {
+      return false;
+    }
+    for (int i = 0; i < name.length; i++) {
+      if (bytes[start + i] != name[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isNameTerminator(byte b) {
+    return b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == '>' || b == '/';
+  }
+
+  private static int endOfTag(byte[] bytes, int from, int length) {
+    byte quote = 0;
+    for (int i = from; i < length; i++) {
+      byte b = bytes[i];
+      if (quote != 0) {
+        if (b == quote) {
+          quote = 0;
+        }
+      } else if (b == '"' || b == '\'') {
+        quote = b;
+      } else if (b == '>') {
+        return i + 1;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean startsWith(byte[] bytes, int from, int length, String token) {
+    if (from + token.length() > length) {
+      return false;
+    }
+    for (int i = 0; i < token.length(); i++) {
+      if (bytes[from + i] != token.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int indexOf(byte[] bytes, int from, int length, String token) {
+    for (int i = from; i <= length - token.length(); i++) {
+      if (startsWith(bytes, i, length, token)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static int endOf(byte[] bytes, int from, int length, String token) {
+    int index = indexOf(bytes, from, length, token);
+    return index < 0 ? -1 : index + token.length();
+  }
+}
@@ -0,0 +1,352 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A declarative mapping from element paths to relational tables, read from a JSON document such
+ * as:
+ *
+ * <pre>
+ * {
+ *   "doc-types": ["xml"],
+ *   "tables": [
+ *     {
+ *       "name": "record",
+ *       "row": "/feed/record",
+ *       "columns": [
+ *         {"name": "row", "row-number": true},
+ *         {"name": "id", "path": "@id"},
+ *         {"name": "title", "path": "title"}
+ *       ]
+ *     },
+ *     {
+ *       "name": "author",
+ *       "row": "/feed/record/author",
+ *       "columns": [
+ *         {"name": "record", "parent": "record"},
+ *         {"name": "name", "path": "."}
+ *       ]
+ *     }
+ *   ]
+ * }
+ * </pre>
+ *
+ * Each element selected by a table's <code>row</code> path, written as for <code>XmlSubscription
+ * </code>, produces one row. A column's <code>path</code> is relative to the row element: <code>.
+ * </code> is the row element itself, <code>title</code> and <code>a/b</code> are descendants, and
+ * a final <code>@name</code> step selects an attribute. An element column holds all the text in
+ * the element, and the first matching element in a row wins. A <code>row-number</code> column
+ * numbers the table's rows from 1, and a <code>parent</code> column holds the row number of the
+ * enclosing row of another table. Names are matched by local name. A table may set its own <code>
+ * format</code>, overriding the processor's.
+ *
+ * <p>Instances are immutable.
+ *
+ * @author Jason Hallford
+ */
+public final class RelationalMapping {
+  /** How a column's value is found. */
+  public enum ColumnKind {
+    ELEMENT,
+    ATTRIBUTE,
+    ROW_NUMBER,
+    PARENT
+  }
+
+  /** A column of a table. */
+  public static final class Column {
+    private final String name;
+    private final ColumnKind kind;
+    private final int[] steps;
+    private final String attribute;
+    private final int parentTable;
+
+    private Column(String name, ColumnKind kind, int[] steps, String attribute, int parentTable) {
+      this.name = name;
+      this.kind = kind;
+      this.steps = steps;
+      this.attribute = attribute;
+      this.parentTable = parentTable;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public ColumnKind getKind() {
+      return kind;
+    }
+
+    /**
+     * Gets the local name symbols of the element steps below the row element; empty for the row
+     * element itself.
+     *
+     * @return The symbols, which callers must not modify.
+     */
+    public int[] getSteps() {
+      return steps;
+    }
+
+    /**
+     * Gets the local name of an attribute column's attribute.
+     *
+     * @return The name, or <code>null</code> for other kinds of column.
+     */
+    public String getAttribute() {
+      return attribute;
+    }
+
+    /**
+     * Gets the index of a parent column's table.
+     *
+     * @return The index, or -1 for other kinds of column.
+     */
+    public int getParentTable() {
+      return parentTable;
+    }
+  }
+
+  /** A table: the path of its row elements and its columns. */
+  public static final class Table {
+    private final String name;
+    private final String rowPath;
+    private final String format;
+    private final List<Column> columns;
+
+    private Table(String name, String rowPath, String format, List<Column> columns) {
+      this.name = name;
+      this.rowPath = rowPath;
+      this.format = format;
+      this.columns = Collections.unmodifiableList(columns);
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public String getRowPath() {
+      return rowPath;
+    }
+
+    /**
+     * Gets the table's output format.
+     *
+     * @return The format, or <code>null</code> to use the processor's.
+     */
+    public String getFormat() {
+      return format;
+    }
+
+    public List<Column> getColumns() {
+      return columns;
+    }
+
+    public List<String> getColumnNames() {
+      var names = new ArrayList<String>(this.columns.size());
+      for (Column column : this.columns) {
+        names.add(column.name);
+      }
+      return names;
+    }
+  }
+
+  // Fields
+  private final Set<String> docTypes;
+  private final List<Table> tables;
+
+  // Constructors
+  private RelationalMapping(Set<String> docTypes, List<Table> tables) {
+    this.docTypes = Collections.unmodifiableSet(docTypes);
+    this.tables = Collections.unmodifiableList(tables);
+  }
+
+  // Factory methods
+
+  /**
+   * Loads a mapping from a file or, if there is no such file, from the class path.
+   *
+   * @param location The file's path or the resource's name.
+   * @param symbols The table in which to intern element names.
+   * @return The mapping.
+   * @throws IOException if the mapping cannot be read.
+   * @throws IllegalArgumentException if the mapping is not valid.
+   */
+  public static RelationalMapping load(String location, SymbolTable symbols) throws IOException {
+    assert location != null && !location.isBlank() : "location must have a value.";
+
+    String json;
+    var file = Path.of(location);
+    if (Files.isRegularFile(file)) {
+      json = Files.readString(file, StandardCharsets.UTF_8);
+    } else {
+      var loader = RelationalMapping.class.getClassLoader();
+      try (InputStream in = loader.getResourceAsStream(location)) {
+        if (in == null) {
+          throw new IOException("No mapping found at '" + location + "'.");
+        }
+        json = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+      }
+    }
+
+    try {
+      return fromJson(new JsonObject(json), symbols);
+    } catch (DecodeException | ClassCastException e) {
+      throw new IllegalArgumentException(
+          "Mapping '" + location + "' is not valid: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Builds a mapping from its JSON form.
+   *
+   * @param json The mapping.
+   * @param symbols The table in which to intern element names.
+   * @return The mapping.
+   * @throws IllegalArgumentException if the mapping is not valid.
+   */
+  public static RelationalMapping fromJson(JsonObject json, SymbolTable symbols) {
+    assert json != null : "json must not be null.";
+    assert symbols != null : "symbols must not be null.";
+
+    var docTypes = new HashSet<String>();
+    for (Object docType : json.getJsonArray("doc-types", new JsonArray().add("xml"))) {
+      docTypes.add((String) docType);
+    }
+
+    var tableJson = json.getJsonArray("tables");
+    if (tableJson == null || tableJson.isEmpty()) {
+      throw new IllegalArgumentException("A mapping must define at least one table.");
+    }
+
+    // Parent columns may refer to tables defined after them.
+    var tableIndexes = new HashMap<String, Integer>();
+    for (int i = 0; i < tableJson.size(); i++) {
+      var name = requireName(tableJson.getJsonObject(i), "Every table");
+      if (tableIndexes.put(name, i) != null) {
+        throw new IllegalArgumentException("Table '" + name + "' is defined twice.");
+      }
+    }
+
+    var tables = new ArrayList<Table>();
+    for (int i = 0; i < tableJson.size(); i++) {
+      tables.add(table(tableJson.getJsonObject(i), tableIndexes, symbols));
+    }
+
+    return new RelationalMapping(docTypes, tables);
+  }
+
+  // Properties
+  public Set<String> getDocTypes() {
+    return docTypes;
+  }
+
+  public List<Table> getTables() {
+    return tables;
+  }
+
+  // Helper methods
+  private static Table table(
+      JsonObject json, Map<String, Integer> tableIndexes, SymbolTable symbols) {
+    var name = json.getString("name");
+    var rowPath = json.getString("row");
+    if (rowPath == null || !rowPath.startsWith("/")) {
+      throw new IllegalArgumentException(
+          "Table '" + name + "' needs a 'row' path beginning with '/'.");
+    }
+
+    var columnJson = json.getJsonArray("columns");
+    if (columnJson == null || columnJson.isEmpty()) {
+      throw new IllegalArgumentException("Table '" + name + "' has no columns.");
+    }
+
+    var columns = new ArrayList<Column>();
+    var columnNames = new HashSet<String>();
+    for (int i = 0; i < columnJson.size(); i++) {
+      var column = column(name, columnJson.getJsonObject(i), tableIndexes, symbols);
+      if (!columnNames.add(column.name)) {
+        throw new IllegalArgumentException(
+            "Table '" + name + "' has two columns named '" + column.name + "'.");
+      }
+      columns.add(column);
+    }
+
+    return new Table(name, rowPath, json.getString("format"), columns);
+  }
+
+  private static Column column(
+      String table, JsonObject json, Map<String, Integer> tableIndexes, SymbolTable symbols) {
+    var name = requireName(json, "Every column of table '" + table + "'");
+
+    if (json.getBoolean("row-number", false)) {
+      return new Column(name, ColumnKind.ROW_NUMBER, new int[0], null, -1);
+    }
+
+    var parent = json.getString("parent");
+    if (parent != null) {
+      var parentTable = tableIndexes.get(parent);
+      if (parentTable == null || parent.equals(table)) {
+        throw new IllegalArgumentException(
+            String.format(
+                "Column '%s' of table '%s' refers to unknown table '%s'.", name, table, parent));
+      }
+      return new Column(name, ColumnKind.PARENT, new int[0], null, parentTable);
+    }
+
+    var path = json.getString("path");
+    if (path == null || path.isBlank() || path.startsWith("/")) {
+      throw new IllegalArgumentException(
+          "Column '" + name + "' of table '" + table + "' needs a relative 'path', a 'parent' or "
+              + "'row-number'.");
+    }
+
+    var steps = new ArrayList<Integer>();
+    String attribute = null;
+    var names = path.split("/", -1);
+    for (int i = 0; i < names.length; i++) {
+      var step = names[i];
+      if (step.startsWith("@") && i == names.length - 1 && step.length() > 1) {
+        var attributeName = step.substring(1);
+        attribute = attributeName.substring(attributeName.indexOf(':') + 1);
+      } else if (step.equals(".") && i == 0) {
+        continue;
+      } else if (step.isEmpty() || step.equals("*") || step.startsWith("@") || step.equals(".")) {
+        throw new IllegalArgumentException(
+            String.format(
+                "Column '%s' of table '%s' has an unsupported path step '%s'.", name, table, step));
+      } else {
+        // Steps match local names; a prefix is ignored.
+        steps.add(symbols.intern(step.substring(step.indexOf(':') + 1)));
+      }
+    }
+
+    return new Column(
+        name,
+        attribute != null ? ColumnKind.ATTRIBUTE : ColumnKind.ELEMENT,
+        steps.stream().mapToInt(Integer::intValue).toArray(),
+        attribute,
+        -1);
+  }
+
+  private static String requireName(JsonObject json, String what) {
+    var name = json.getString("name");
+    if (name == null || name.isBlank()) {
+      throw new IllegalArgumentException(what + " needs a 'name'.");
+    }
+    return name;
+  }
+}
@@ -0,0 +1,366 @@
+package io.miscellanea.vertx.example;
+
+import io.micrometer.core.instrument.Counter;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLStreamConstants;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Shreds a document into the rows of a <code>RelationalMapping</code>'s tables. Each table follows
+ * its row path with its own path machine; while a row is open, the processor captures the row's
+ * attributes and element text, and when the row element ends it appends the row to the table's
+ * sink. Sinks fill buffers from the job's <code>RowWriter</code>, which writes them on its own
+ * thread.
+ *
+ * <p>The job's credits count the writer's free buffers: each buffer a sink hands over spends one,
+ * and the writer grants one back as each is written, so the shredder pauses only when the disk
+ * falls a whole pool behind. Enough buffers are held back for every table to hand one over on the
+ * same event. The job finishes once the writer has closed its files.
+ *
+ * @author Jason Hallford
+ */
+public class RelationalXmlEventProcessor implements XmlStreamProcessor {
+  /** A table's path state and the row being captured for it. */
+  private static final class TableState {
+    private final RelationalMapping.Table table;
+    private final RelationalMapping.Column[] columns;
+    private final XmlPathMachine machine;
+    private final RowSink sink;
+    private final StringBuilder[] values;
+    private final CharSequence[] row;
+    private final int[] captureDepths;
+    private XmlPathMachine.State[] states = new XmlPathMachine.State[16];
+    private int[] relativePath = new int[8];
+    private int rowDepth = 0;
+    private long rowNumber = 0;
+    private int capturing = 0;
+
+    private TableState(RelationalMapping.Table table, XmlPathMachine machine, RowSink sink) {
+      this.table = table;
+      this.columns = table.getColumns().toArray(new RelationalMapping.Column[0]);
+      this.machine = machine;
+      this.sink = sink;
+      this.values = new StringBuilder[this.columns.length];
+      for (int i = 0; i < this.values.length; i++) {
+        this.values[i] = new StringBuilder();
+      }
+      this.row = new CharSequence[this.columns.length];
+      this.captureDepths = new int[this.columns.length];
+      this.states[0] = machine.getInitialState();
+    }
+
+    private boolean inRow() {
+      return this.rowDepth > 0;
+    }
+  }
+
+  // Fields
+  private static final Logger LOGGER = LoggerFactory.getLogger(RelationalXmlEventProcessor.class);
+
+  private final XmlEventProcessorContext context;
+  private final RelationalMapping mapping;
+  private final List<XmlPathMachine> machines;
+  private final RelationalXmlEventProcessorProvider.Settings settings;
+  private final Counter rowCounter;
+  private final Counter creditStalls;
+  private TableState[] tables;
+  private RowWriter writer;
+  private boolean skippable = false;
+
+  // Constructors
+  public RelationalXmlEventProcessor(
+      XmlEventProcessorContext context,
+      RelationalMapping mapping,
+      List<XmlPathMachine> machines,
+      RelationalXmlEventProcessorProvider.Settings settings) {
+    assert context != null : "context must not be null.";
+    this.context = context;
+
+    assert mapping != null : "mapping must not be null.";
+    this.mapping = mapping;
+
+    assert machines != null && machines.size() == mapping.getTables().size()
+        : "Every table must have a path machine.";
+    this.machines = machines;
+
+    assert settings != null : "settings must not be null.";
+    this.settings = settings;
+
+    this.rowCounter =
+        Counter.builder("processor.relational.rows")
+            .description("Rows appended to relational sinks")
+            .register(ShredMetrics.registry());
+    this.creditStalls =
+        Counter.builder("processor.relational.credit.stalls")
+            .description("Times a job paused until the row writer freed a buffer")
+            .register(ShredMetrics.registry());
+  }
+
+  // XmlStreamProcessor
+  @Override
+  public boolean process(XmlCursor cursor) {
+    assert cursor != null : "cursor must not be null.";
+
+    switch (cursor.getEventType()) {
+      case XMLStreamConstants.START_DOCUMENT:
+        return this.beginDocument();
+      case XMLStreamConstants.START_ELEMENT:
+        this.beginElement(cursor);
+        return true;
+      case XMLStreamConstants.CHARACTERS:
+      case XMLStreamConstants.CDATA:
+      case XMLStreamConstants.SPACE:
+        this.text(cursor);
+        return true;
+      case XMLStreamConstants.END_ELEMENT:
+        return this.endElement(cursor.getDepth());
+      case XMLStreamConstants.END_DOCUMENT:
+        return this.endDocument();
+      default:
+        return true;
+    }
+  }
+
+  @Override
+  public boolean skipsSubtree() {
+    return this.skippable;
+  }
+
+  // Event handlers
+  private boolean beginDocument() {
+    var tableList = this.mapping.getTables();
+    int bufferCount = Math.max(this.settings.getBufferCount(), tableList.size() * 2 + 1);
+    var jobId = this.context.getId();
+    this.writer =
+        new RowWriter(
+            "xml-row-writer-" + jobId,
+            this.settings.getBufferSize(),
+            bufferCount,
+            this::release,
+            e ->
+                this.context
+                    .getEventBus()
+                    .send(
+                        this.context.getErrorAddress(),
+                        ShredEvent.error(jobId, "Unable to write rows: " + e.getMessage())));
+    this.context.setCleanupHandler(this.writer::close);
+
+    this.tables = new TableState[tableList.size()];
+    for (int i = 0; i < this.tables.length; i++) {
+      var table = tableList.get(i);
+      var sink =
+          RowSink.create(
+              table.getFormat() != null ? table.getFormat() : this.settings.getFormat(),
+              this.writer,
+              Path.of(this.settings.getOutputDirectory()),
+              table.getName() + "-job" + jobId,
+              table.getColumnNames(),
+              this.settings.getMaxFileSize());
+      this.tables[i] = new TableState(table, this.machines.get(i), sink);
+    }
+
+    // A part of a split document never sees its root's start tag, but its paths must.
+    var rootName = this.context.getProperty(XmlEventProcessorContext.ROOT_NAME_PROPERTY);
+    if (rootName != null) {
+      int rootSymbol = SymbolTable.shared().intern(rootName);
+      for (TableState state : this.tables) {
+        state.states[1] = state.machine.next(state.states[0], rootSymbol);
+      }
+    }
+
+    LOGGER.debug(
+        "Shredding job {} into {} table(s) through {} buffer(s).",
+        jobId,
+        this.tables.length,
+        bufferCount);
+    this.writer.start();
+
+    // Each table's sink takes its first buffer unpaid; a buffer per table but one more is kept back
+    // so that every table can hand one over on the same event.
+    this.context.grantCredits(bufferCount - this.tables.length * 2 + 1);
+    return true;
+  }
+
+  private void beginElement(XmlCursor cursor) {
+    int depth = cursor.getDepth();
+    int symbol = cursor.getLocalNameSymbol();
+
+    boolean skippable = true;
+    for (TableState state : this.tables) {
+      if (state.inRow()) {
+        this.beginDescendant(state, cursor, depth, symbol);
+        skippable = false;
+        continue;
+      }
+
+      if (depth >= state.states.length) {
+        state.states = Arrays.copyOf(state.states, state.states.length * 2);
+      }
+      var next = state.machine.next(state.states[depth - 1], symbol);
+      state.states[depth] = next;
+      if (next.isSelected()) {
+        this.beginRow(state, cursor, depth);
+        skippable = false;
+      } else if (!next.isDead()) {
+        skippable = false;
+      }
+    }
+    this.skippable = skippable;
+  }
+
+  private void beginRow(TableState state, XmlCursor cursor, int depth) {
+    state.rowDepth = depth;
+    state.rowNumber++;
+    Arrays.fill(state.row, null);
+
+    for (int i = 0; i < state.columns.length; i++) {
+      var column = state.columns[i];
+      if (column.getSteps().length == 0) {
+        this.capture(state, i, cursor, depth);
+      }
+    }
+  }
+
+  private void beginDescendant(TableState state, XmlCursor cursor, int depth, int symbol) {
+    int relativeDepth = depth - state.rowDepth;
+    if (relativeDepth > state.relativePath.length) {
+      state.relativePath = Arrays.copyOf(state.relativePath, relativeDepth * 2);
+    }
+    state.relativePath[relativeDepth - 1] = symbol;
+
+    for (int i = 0; i < state.columns.length; i++) {
+      var steps = state.columns[i].getSteps();
+      if (steps.length == relativeDepth
+          && state.row[i] == null
+          && Arrays.equals(steps, 0, relativeDepth, state.relativePath, 0, relativeDepth)) {
+        this.capture(state, i, cursor, depth);
+      }
+    }
+  }
+
+  private void capture(TableState state, int column, XmlCursor cursor, int depth) {
+    var value = state.values[column];
+    switch (state.columns[column].getKind()) {
+      case ELEMENT:
+        value.setLength(0);
+        state.row[column] = value;
+        state.captureDepths[column] = depth;
+        state.capturing++;
+        break;
+      case ATTRIBUTE:
+        var attribute = state.columns[column].getAttribute();
+        for (int i = 0; i < cursor.getAttributeCount(); i++) {
+          if (attribute.equals(cursor.getAttributeLocalName(i))) {
+            value.setLength(0);
+            state.row[column] = value.append(cursor.getAttributeValue(i));
+            break;
+          }
+        }
+        break;
+      default:
+        break;
+    }
+  }
+
+  private void text(XmlCursor cursor) {
+    for (TableState state : this.tables) {
+      if (state.capturing == 0) {
+        continue;
+      }
+
+      for (int i = 0; i < state.columns.length; i++) {
+        if (state.captureDepths[i] > 0) {
+          state.values[i].append(
+              cursor.getTextCharacters(), cursor.getTextStart(), cursor.getTextLength());
+        }
+      }
+    }
+  }
+
+  private boolean endElement(int depth) {
+    boolean hasCredits = true;
+    for (TableState state : this.tables) {
+      if (!state.inRow()) {
+        continue;
+      }
+
+      if (state.capturing > 0) {
+        for (int i = 0; i < state.captureDepths.length; i++) {
+          if (state.captureDepths[i] == depth) {
+            state.captureDepths[i] = 0;
+            state.capturing--;
+          }
+        }
+      }
+
+      if (depth == state.rowDepth) {
+        hasCredits &= this.endRow(state);
+      }
+    }
+
+    if (!hasCredits) {
+      // Stop the pump until the writer frees a buffer.
+      LOGGER.debug("Row buffers exhausted; waiting for the writer.");
+      this.creditStalls.increment();
+    }
+    return hasCredits;
+  }
+
+  private boolean endRow(TableState state) {
+    for (int i = 0; i < state.columns.length; i++) {
+      var column = state.columns[i];
+      switch (column.getKind()) {
+        case ROW_NUMBER:
+          state.values[i].setLength(0);
+          state.row[i] = state.values[i].append(state.rowNumber);
+          break;
+        case PARENT:
+          var parent = this.tables[column.getParentTable()];
+          if (parent.inRow()) {
+            state.values[i].setLength(0);
+            state.row[i] = state.values[i].append(parent.rowNumber);
+          }
+          break;
+        default:
+          break;
+      }
+    }
+
+    state.rowDepth = 0;
+    return !state.sink.append(state.row) || this.context.spendCredits(1);
+  }
+
+  private boolean endDocument() {
+    LOGGER.debug("Received END_DOCUMENT event.");
+
+    for (TableState state : this.tables) {
+      state.sink.flush();
+      this.rowCounter.increment(state.rowNumber);
+      LOGGER.debug("Appended {} '{}' row(s).", state.rowNumber, state.table.getName());
+    }
+
+    // The job finishes once its rows are on disk.
+    var jobId = this.context.getId();
+    this.writer.finish(
+        () ->
+            this.context
+                .getEventBus()
+                .send(this.context.getFinishedAddress(), ShredEvent.finished(jobId)));
+    return false;
+  }
+
+  // Helper methods
+  private void release() {
+    // Called on the writer's thread; the grant reaches the job through its shredder.
+    this.context
+        .getEventBus()
+        .send(
+            this.context.getCreditAddress(),
+            new JsonObject().put("job-id", this.context.getId()).put("credits", 1));
+  }
+}
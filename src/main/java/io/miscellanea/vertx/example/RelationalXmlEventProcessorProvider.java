@@ -0,0 +1,190 @@
+package io.miscellanea.vertx.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Implementation of the provider SPI that shreds documents into relational rows, as described by
+ * the <code>RelationalMapping</code> named by the <code>relational.mapping</code> processor
+ * property. The provider handles a document only if a mapping is configured and lists the
+ * document's type, so it must be registered ahead of providers that handle every document.
+ *
+ * @author Jason Hallford
+ */
+public class RelationalXmlEventProcessorProvider implements XmlEventProcessorProviderSPI {
+  /** The processor properties that control a job's sinks and writer. */
+  public static final class Settings {
+    private final String format;
+    private final String outputDirectory;
+    private final int bufferSize;
+    private final int bufferCount;
+    private final long maxFileSize;
+
+    private Settings(XmlEventProcessorContext context) {
+      this.format = property(context, FORMAT_PROPERTY, RowSink.CSV_FORMAT);
+      this.outputDirectory = property(context, OUTPUT_DIR_PROPERTY, DEFAULT_OUTPUT_DIR);
+      this.bufferSize =
+          Math.max(
+              1024,
+              Integer.parseInt(
+                  property(context, BUFFER_SIZE_PROPERTY, String.valueOf(DEFAULT_BUFFER_SIZE))));
+      this.bufferCount =
+          Integer.parseInt(
+              property(context, BUFFER_COUNT_PROPERTY, String.valueOf(DEFAULT_BUFFER_COUNT)));
+      this.maxFileSize =
+          Long.parseLong(
+              property(context, MAX_FILE_SIZE_PROPERTY, String.valueOf(DEFAULT_MAX_FILE_SIZE)));
+    }
+
+    public String getFormat() {
+      return format;
+    }
+
+    public String getOutputDirectory() {
+      return outputDirectory;
+    }
+
+    public int getBufferSize() {
+      return bufferSize;
+    }
+
+    public int getBufferCount() {
+      return bufferCount;
+    }
+
+    public long getMaxFileSize() {
+      return maxFileSize;
+    }
+
+    private static String property(
+        XmlEventProcessorContext context, String name, String defaultValue) {
+      var value = context.getProperty(name);
+      return value != null && !value.isBlank() ? value.trim() : defaultValue;
+    }
+  }
+
+  // Fields
+  private static final Logger LOGGER =
+      LoggerFactory.getLogger(RelationalXmlEventProcessorProvider.class);
+  private static final String RELATIONAL_PROVIDER = "Relational Shredding Provider";
+
+  /** The processor property naming the mapping file or class path resource. */
+  public static final String MAPPING_PROPERTY = "relational.mapping";
+
+  /** The processor property naming the output format, <code>csv</code> or <code>columnar</code>. */
+  public static final String FORMAT_PROPERTY = "relational.format";
+
+  /** The processor property naming the directory in which output files are written. */
+  public static final String OUTPUT_DIR_PROPERTY = "relational.output-dir";
+
+  /** The processor property setting the size, in bytes, of each row buffer. */
+  public static final String BUFFER_SIZE_PROPERTY = "relational.buffer-size";
+
+  /** The processor property setting the number of row buffers each job may fill. */
+  public static final String BUFFER_COUNT_PROPERTY = "relational.buffer-count";
+
+  /** The processor property setting the size, in bytes, past which output rolls to a new file. */
+  public static final String MAX_FILE_SIZE_PROPERTY = "relational.max-file-size";
+
+  private static final String DEFAULT_OUTPUT_DIR = "output";
+  private static final int DEFAULT_BUFFER_SIZE = 1048576;
+  private static final int DEFAULT_BUFFER_COUNT = 8;
+  private static final long DEFAULT_MAX_FILE_SIZE = 268435456L;
+
+  private final Map<String, RelationalMapping> mappings = new HashMap<>();
+  private final Map<String, XmlPathMachine> machines = new HashMap<>();
+
+  // Constructors
+  public RelationalXmlEventProcessorProvider() {}
+
+  // XmlEventProcessorProviderSPI
+  @Override
+  public String getName() {
+    return RELATIONAL_PROVIDER;
+  }
+
+  @Override
+  public boolean handlesDocType(String docTypeIdentifier) {
+    // Only a configured mapping says which documents to shred.
+    return false;
+  }
+
+  @Override
+  public boolean handlesDocType(String docTypeIdentifier, XmlEventProcessorContext context) {
+    assert context != null : "context must not be null.";
+
+    var mapping = this.mapping(context);
+    return mapping.isPresent() && mapping.get().getDocTypes().contains(docTypeIdentifier);
+  }
+
+  @Override
+  public Optional<XmlEventProcessor> provide(XmlEventProcessorContext context) {
+    // Rows are only captured through the cursor.
+    return Optional.empty();
+  }
+
+  @Override
+  public Optional<XmlStreamProcessor> provideStreamProcessor(XmlEventProcessorContext context) {
+    assert context != null : "context must not be null.";
+
+    var mapping = this.mapping(context);
+    if (mapping.isEmpty()) {
+      return Optional.empty();
+    }
+
+    var settings = new Settings(context);
+    var machines = new ArrayList<XmlPathMachine>();
+    for (RelationalMapping.Table table : mapping.get().getTables()) {
+      var format = table.getFormat() != null ? table.getFormat() : settings.getFormat();
+      if (!format.equals(RowSink.CSV_FORMAT) && !format.equals(RowSink.COLUMNAR_FORMAT)) {
+        LOGGER.error("Table '{}' has unknown row format '{}'.", table.getName(), format);
+        return Optional.empty();
+      }
+
+      try {
+        machines.add(
+            this.machines.computeIfAbsent(
+                table.getRowPath(),
+                path -> new XmlPathMachine(List.of(path), SymbolTable.shared())));
+      } catch (IllegalArgumentException e) {
+        LOGGER.error("Table '{}' has an invalid row path: {}", table.getName(), e.getMessage());
+        return Optional.empty();
+      }
+    }
+
+    LOGGER.debug("Creating new relational processor for job {}.", context.getId());
+    return Optional.of(new RelationalXmlEventProcessor(context, mapping.get(), machines, settings));
+  }
+
+  // Helper methods
+  private Optional<RelationalMapping> mapping(XmlEventProcessorContext context) {
+    var location = context.getProperty(MAPPING_PROPERTY);
+    if (location == null || location.isBlank()) {
+      return Optional.empty();
+    }
+
+    var mapping = this.mappings.get(location);
+    if (mapping == null) {
+      try {
+        mapping = RelationalMapping.load(location, SymbolTable.shared());
+        this.mappings.put(location, mapping);
+        LOGGER.info(
+            "Loaded relational mapping '{}' with {} table(s).",
+            location,
+            mapping.getTables().size());
+      } catch (IOException | IllegalArgumentException e) {
+        LOGGER.error("Unable to load relational mapping '{}': {}", location, e.getMessage());
+        return Optional.empty();
+      }
+    }
+
+    return Optional.of(mapping);
+  }
+}
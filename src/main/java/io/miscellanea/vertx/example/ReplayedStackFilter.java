@@ -0,0 +1,88 @@
+package io.miscellanea.vertx.example;
+
+import javax.xml.stream.XMLStreamConstants;
+
+/**
+ * Hides the prefix a job re-reads when it resumes from a checkpoint. The resumed input begins with
+ * the document's prolog and the start tags of the elements that were open at the checkpoint, all
+ * of which the processor saw before; only <code>START_DOCUMENT</code>, which begins the job with
+ * the processor, passes until the start tag of the innermost of those elements has been read. The
+ * elements' end tags are read from the document in the usual way.
+ *
+ * <p>The filter sits inside any subscription filter, so paths still follow the replayed elements.
+ * Because a subscription filter withholds the elements it does not select, the end of the prefix is
+ * recognized by the processor that <code>observing</code> places outside it, from the cursor's
+ * depth.
+ *
+ * @author Jason Hallford
+ */
+public class ReplayedStackFilter implements XmlStreamProcessor {
+  /** Ends the replay once the innermost replayed start tag has passed the wrapped processors. */
+  private final class Observer implements XmlStreamProcessor {
+    private final XmlStreamProcessor delegate;
+
+    private Observer(XmlStreamProcessor delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public boolean process(XmlCursor cursor) {
+      boolean last =
+          replaying
+              && cursor.getEventType() == XMLStreamConstants.START_ELEMENT
+              && cursor.getDepth() == replayedElements;
+      boolean result = this.delegate.process(cursor);
+      if (last) {
+        replaying = false;
+      }
+      return result;
+    }
+
+    @Override
+    public boolean skipsSubtree() {
+      return this.delegate.skipsSubtree();
+    }
+  }
+
+  // Fields
+  private final XmlStreamProcessor delegate;
+  private final int replayedElements;
+  private boolean replaying = true;
+  private boolean hid = false;
+
+  // Constructors
+  public ReplayedStackFilter(XmlStreamProcessor delegate, int replayedElements) {
+    assert delegate != null : "delegate must not be null.";
+    this.delegate = delegate;
+
+    assert replayedElements > 0 : "replayedElements must be positive.";
+    this.replayedElements = replayedElements;
+  }
+
+  // Methods
+
+  /**
+   * Wraps the processor that will receive the shredder's events, and that delivers them, perhaps
+   * selectively, to this filter.
+   *
+   * @param outer The outermost processor, such as a subscription filter around this one.
+   * @return A processor that sees every event and tells this filter when the prefix has ended.
+   */
+  public XmlStreamProcessor observing(XmlStreamProcessor outer) {
+    assert outer != null : "outer must not be null.";
+    return new Observer(outer);
+  }
+
+  // XmlStreamProcessor
+  @Override
+  public boolean process(XmlCursor cursor) {
+    this.hid = this.replaying && cursor.getEventType() != XMLStreamConstants.START_DOCUMENT;
+    return this.hid || this.delegate.process(cursor);
+  }
+
+  @Override
+  public boolean skipsSubtree() {
+    // The delegate never saw a replayed element, so it cannot answer for one.
+    return !this.hid && this.delegate.skipsSubtree();
+  }
+}
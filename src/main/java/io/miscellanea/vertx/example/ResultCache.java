@@ -0,0 +1,265 @@
+package io.miscellanea.vertx.example;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Optional;
+
+/**
+ * Caches processors' results by a key naming the provider, the settings its result depends on and
+ * a fingerprint of the document, so that a document shredded before can be answered without
+ * parsing it again. Results are held encoded, in a memory tier bounded by the characters they
+ * occupy, from which the least recently used are evicted; with a directory configured, every
+ * result is also written to a disk tier that survives a restart of the JVM and is consulted when
+ * the memory tier misses. Disk entries are replaced atomically and never pruned.
+ *
+ * <p>One cache is shared by the JVM's shredders. Instances are thread safe, and methods block on
+ * file I/O when the disk tier is enabled.
+ *
+ * @author Jason Hallford
+ */
+public final class ResultCache {
+  // Fields
+  private static final Logger LOGGER = LoggerFactory.getLogger(ResultCache.class);
+
+  private static final int DEFAULT_SAMPLE_BLOCKS = 8;
+  private static final long ENTRY_OVERHEAD = 128L;
+
+  private static ResultCache shared;
+
+  private final long maxBytes;
+  private final Path directory;
+  private final int sampleBlocks;
+  private final boolean fullHash;
+  private final LinkedHashMap<String, String> entries = new LinkedHashMap<>(64, 0.75f, true);
+  private long bytes = 0L;
+  private final Counter hits;
+  private final Counter misses;
+
+  // Constructors
+
+  /**
+   * Creates an empty cache.
+   *
+   * @param maxBytes The most the memory tier may hold, estimated from its keys and encoded results.
+   * @param directory The disk tier's directory, or <code>null</code> for none.
+   * @param sampleBlocks The number of blocks a fingerprint samples.
+   * @param fullHash <code>true</code> to fingerprint the whole of each document.
+   * @param registry The registry that records the cache's hits and misses.
+   */
+  public ResultCache(
+      long maxBytes, Path directory, int sampleBlocks, boolean fullHash, MeterRegistry registry) {
+    assert registry != null : "registry must not be null.";
+
+    this.maxBytes = maxBytes;
+    this.directory = directory;
+    this.sampleBlocks = sampleBlocks;
+    this.fullHash = fullHash;
+    this.hits = lookupCounter(registry, "hit");
+    this.misses = lookupCounter(registry, "miss");
+    registry.gauge("result-cache.bytes", this, ResultCache::getBytes);
+  }
+
+  // Factory methods
+
+  /**
+   * Gets the JVM's cache, creating it from the first configuration that enables it: <code>
+   * result-cache-max-bytes</code> bounds the memory tier, <code>result-cache-dir</code> names the
+   * disk tier, and <code>result-cache-sample-blocks</code> and <code>result-cache-full-hash</code>
+   * choose how documents are fingerprinted.
+   *
+   * @param config The configuration.
+   * @return The cache, or an empty optional if <code>result-cache-max-bytes</code> is not positive.
+   */
+  public static synchronized Optional<ResultCache> shared(JsonObject config) {
+    long maxBytes = config.getLong("result-cache-max-bytes", 0L);
+    if (maxBytes <= 0) {
+      return Optional.empty();
+    }
+
+    if (shared == null) {
+      var directory = config.getString("result-cache-dir", "");
+      shared =
+          new ResultCache(
+              maxBytes,
+              directory.isBlank() ? null : Path.of(directory),
+              config.getInteger("result-cache-sample-blocks", DEFAULT_SAMPLE_BLOCKS),
+              config.getBoolean("result-cache-full-hash", false),
+              ShredMetrics.registry());
+    }
+
+    return Optional.of(shared);
+  }
+
+  // Properties
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  // Methods
+
+  /**
+   * Fingerprints a document as this cache's keys expect.
+   *
+   * @param document The document.
+   * @return The fingerprint.
+   * @throws IOException if the document cannot be read.
+   */
+  public String fingerprint(Path document) throws IOException {
+    return DocumentFingerprint.compute(document, this.sampleBlocks, this.fullHash);
+  }
+
+  /**
+   * Builds the key of a provider's result for a document.
+   *
+   * @param providerName The provider's name.
+   * @param binding The provider's result binding.
+   * @param fingerprint The document's fingerprint.
+   * @return The key.
+   */
+  public String keyFor(String providerName, XmlResultBinding binding, String fingerprint) {
+    return providerName + "|" + binding.getVariant() + "|" + fingerprint;
+  }
+
+  /**
+   * Looks up a result, first in memory and then on disk. A result found on disk is promoted to the
+   * memory tier.
+   *
+   * @param key The result's key.
+   * @return The encoded result, or an empty optional if it is not cached.
+   */
+  public Optional<JsonObject> get(String key) {
+    String encoded;
+    synchronized (this) {
+      encoded = this.entries.get(key);
+    }
+
+    if (encoded == null && this.directory != null) {
+      encoded = this.load(key);
+      if (encoded != null) {
+        this.remember(key, encoded);
+      }
+    }
+
+    (encoded != null ? this.hits : this.misses).increment();
+    return Optional.ofNullable(encoded).map(JsonObject::new);
+  }
+
+  /**
+   * Caches a result.
+   *
+   * @param key The result's key.
+   * @param result The encoded result.
+   */
+  public void put(String key, JsonObject result) {
+    var encoded = result.encode();
+    this.remember(key, encoded);
+
+    if (this.directory != null) {
+      this.save(key, encoded);
+    }
+  }
+
+  // Helper methods
+  private static Counter lookupCounter(MeterRegistry registry, String outcome) {
+    return Counter.builder("result-cache.lookups")
+        .description("Result cache lookups, by whether the document's result was cached")
+        .tag("outcome", outcome)
+        .register(registry);
+  }
+
+  private static long sizeOf(String key, String encoded) {
+    return ENTRY_OVERHEAD + 2L * (key.length() + encoded.length());
+  }
+
+  private synchronized void remember(String key, String encoded) {
+    long size = sizeOf(key, encoded);
+    if (size > this.maxBytes) {
+      LOGGER.debug("Result for '{}' is too large for the memory tier ({} bytes).", key, size);
+      return;
+    }
+
+    var previous = this.entries.put(key, encoded);
+    if (previous != null) {
+      this.bytes -= sizeOf(key, previous);
+    }
+    this.bytes += size;
+
+    var eldest = this.entries.entrySet().iterator();
+    while (this.bytes > this.maxBytes) {
+      var evicted = eldest.next();
+      this.bytes -= sizeOf(evicted.getKey(), evicted.getValue());
+      eldest.remove();
+    }
+  }
+
+  private String load(String key) {
+    var file = this.fileFor(key);
+    if (!Files.exists(file)) {
+      return null;
+    }
+
+    try {
+      var entry = new JsonObject(Files.readString(file, StandardCharsets.UTF_8));
+      // Distinct keys whose digests collide must not share a result.
+      if (!key.equals(entry.getString("key"))) {
+        return null;
+      }
+
+      var result = entry.getJsonObject("result");
+      return result != null ? result.encode() : null;
+    } catch (IOException | DecodeException | ClassCastException e) {
+      LOGGER.warn("Unable to read the cached result for '{}': {}", key, e.getMessage());
+      return null;
+    }
+  }
+
+  private void save(String key, String encoded) {
+    var file = this.fileFor(key);
+    try {
+      Files.createDirectories(this.directory);
+
+      var temp = Files.createTempFile(this.directory, file.getFileName().toString(), ".tmp");
+      try {
+        Files.writeString(
+            temp,
+            new JsonObject().put("key", key).put("result", new JsonObject(encoded)).encode(),
+            StandardCharsets.UTF_8);
+        Files.move(
+            temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(temp);
+      }
+    } catch (IOException e) {
+      LOGGER.warn("Unable to write the cached result for '{}': {}", key, e.getMessage());
+    }
+  }
+
+  private Path fileFor(String key) {
+    try {
+      var digest =
+          MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+
+      var name = new StringBuilder(digest.length * 2 + 5);
+      for (byte b : digest) {
+        name.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+      }
+      return this.directory.resolve(name.append(".json").toString());
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform is required to support SHA-256.
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,144 @@
+package io.miscellanea.vertx.example;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Encodes a table's rows into the buffers of a <code>RowWriter</code>. A sink holds one pooled
+ * buffer at a time and appends encoded records to it; when the next record does not fit, the
+ * buffer is handed to the writer and replaced from the pool, which costs the caller one credit.
+ * Rows are never written or sent one at a time.
+ *
+ * <p>Instances are confined to the shredder that created them.
+ *
+ * @author Jason Hallford
+ */
+public abstract class RowSink {
+  /** The format of comma-separated text files. */
+  public static final String CSV_FORMAT = "csv";
+
+  /** The format of binary columnar files. */
+  public static final String COLUMNAR_FORMAT = "columnar";
+
+  // Fields
+  private final RowWriter writer;
+  private RowWriter.RowFile file;
+  private ByteBuffer buffer;
+
+  // Constructors
+  protected RowSink(RowWriter writer) {
+    assert writer != null : "writer must not be null.";
+    this.writer = writer;
+  }
+
+  // Factory methods
+
+  /**
+   * Creates a sink in a given format and adds its output to the writer.
+   *
+   * @param format The format: <code>csv</code> or <code>columnar</code>.
+   * @param writer The writer, which must not yet have started.
+   * @param directory The directory in which to create the sink's files.
+   * @param prefix The prefix of each file's name.
+   * @param columns The names of the table's columns.
+   * @param maxFileSize The size past which the output rolls to a new file.
+   * @return The sink.
+   * @throws IllegalArgumentException if the format is not known.
+   */
+  public static RowSink create(
+      String format,
+      RowWriter writer,
+      Path directory,
+      String prefix,
+      List<String> columns,
+      long maxFileSize) {
+    RowSink sink;
+    switch (format) {
+      case CSV_FORMAT:
+        sink = new CsvRowSink(writer, columns.size());
+        break;
+      case COLUMNAR_FORMAT:
+        sink = new ColumnarRowSink(writer, columns.size());
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown row format '" + format + "'.");
+    }
+
+    sink.file =
+        writer.addFile(
+            directory, prefix, sink.getExtension(), sink.header(columns), maxFileSize);
+    return sink;
+  }
+
+  // Subclass responsibilities
+
+  /**
+   * Gets the extension of the sink's files.
+   *
+   * @return The extension.
+   */
+  protected abstract String getExtension();
+
+  /**
+   * Encodes the bytes with which every file begins.
+   *
+   * @param columns The names of the table's columns.
+   * @return The header.
+   */
+  protected abstract byte[] header(List<String> columns);
+
+  /**
+   * Appends a row.
+   *
+   * @param values The row's values, one per column; a <code>null</code> value has no value. The
+   *     values are only read during the call.
+   * @return <code>true</code> if a buffer was handed to the writer, spending one credit.
+   */
+  public abstract boolean append(CharSequence[] values);
+
+  /**
+   * Appends whatever rows the sink still holds and hands its last buffer to the writer. The sink
+   * may not be used afterwards.
+   */
+  public abstract void flush();
+
+  // Helper methods
+
+  /**
+   * Appends an encoded record to the current buffer, first handing the buffer over if the record
+   * does not fit.
+   *
+   * @param record The record.
+   * @return <code>true</code> if a buffer was handed to the writer.
+   */
+  protected boolean write(ByteArrayBuilder record) {
+    if (this.buffer == null) {
+      this.buffer = this.writer.acquire();
+    }
+
+    boolean handedOff = false;
+    if (record.size() > this.buffer.remaining() && this.buffer.position() > 0) {
+      this.writer.submit(this.file, this.buffer);
+      this.buffer = this.writer.acquire();
+      handedOff = true;
+    }
+
+    if (record.size() > this.buffer.remaining()) {
+      var oversized = ByteBuffer.allocate(record.size());
+      record.copyTo(oversized);
+      this.writer.submit(this.file, oversized);
+    } else {
+      record.copyTo(this.buffer);
+    }
+    return handedOff;
+  }
+
+  /** Hands the current buffer, if it holds anything, to the writer for the last time. */
+  protected void close() {
+    if (this.buffer != null && this.buffer.position() > 0) {
+      this.writer.submit(this.file, this.buffer);
+    }
+    this.buffer = null;
+  }
+}
@@ -0,0 +1,273 @@
+package io.miscellanea.vertx.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * Writes a job's row buffers to its output files on a thread of its own, so the shredder never
+ * blocks on file I/O. Sinks fill direct buffers taken from a fixed pool and hand each one over
+ * when it is full; the writer drains it into the table's file with a single channel write and
+ * returns it to the pool, then calls the release handler, with which the processor grants its job
+ * a credit. Memory held by a job is therefore bounded by the pool, however slow the disk. A record
+ * larger than a whole buffer is written from a buffer of its own, which is not pooled.
+ *
+ * <p>Each table's output is a sequence of files, rolled once a file would grow past the maximum
+ * size. Files roll only between buffers, so a file never ends part way through a row or block,
+ * and every file begins with the sink's header.
+ *
+ * @author Jason Hallford
+ */
+public final class RowWriter {
+  /** One table's output files. Used only on the writer thread once the writer has started. */
+  public static final class RowFile {
+    private final Path directory;
+    private final String prefix;
+    private final String extension;
+    private final byte[] header;
+    private final long maxFileSize;
+    private FileChannel channel;
+    private int sequence = 0;
+    private long fileSize;
+    private long rowBytes = 0;
+
+    private RowFile(
+        Path directory, String prefix, String extension, byte[] header, long maxFileSize) {
+      this.directory = directory;
+      this.prefix = prefix;
+      this.extension = extension;
+      this.header = header;
+      this.maxFileSize = maxFileSize;
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+      if (this.channel != null
+          && this.fileSize > this.header.length
+          && this.fileSize + buffer.remaining() > this.maxFileSize) {
+        this.close();
+      }
+
+      if (this.channel == null) {
+        var file =
+            this.directory.resolve(
+                String.format("%s-%05d.%s", this.prefix, this.sequence++, this.extension));
+        LOGGER.debug("Opening row file '{}'.", file);
+        Files.createDirectories(this.directory);
+        this.channel =
+            FileChannel.open(
+                file,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        this.fileSize = 0;
+        this.drain(ByteBuffer.wrap(this.header));
+      }
+
+      this.rowBytes += buffer.remaining();
+      this.drain(buffer);
+    }
+
+    private void drain(ByteBuffer buffer) throws IOException {
+      while (buffer.hasRemaining()) {
+        this.fileSize += this.channel.write(buffer);
+      }
+    }
+
+    private void close() throws IOException {
+      if (this.channel != null) {
+        try {
+          this.channel.close();
+        } finally {
+          this.channel = null;
+        }
+      }
+    }
+  }
+
+  private static final class Task {
+    private final RowFile file;
+    private final ByteBuffer buffer;
+
+    private Task(RowFile file, ByteBuffer buffer) {
+      this.file = file;
+      this.buffer = buffer;
+    }
+  }
+
+  // Fields
+  private static final Logger LOGGER = LoggerFactory.getLogger(RowWriter.class);
+  private static final Task END = new Task(null, null);
+
+  private final int bufferSize;
+  private final BlockingQueue<ByteBuffer> freeBuffers;
+  private final BlockingQueue<Task> tasks = new LinkedBlockingQueue<>();
+  private final List<RowFile> files = new ArrayList<>();
+  private final Runnable releaseHandler;
+  private final Consumer<IOException> errorHandler;
+  private final Thread thread;
+  private volatile Runnable finishedHandler;
+
+  // Constructors
+
+  /**
+   * Creates a writer.
+   *
+   * @param name The name of the writer's thread.
+   * @param bufferSize The capacity of each pooled buffer.
+   * @param bufferCount The number of pooled buffers.
+   * @param releaseHandler Called on the writer thread each time a pooled buffer is returned.
+   * @param errorHandler Called on the writer thread if a file cannot be written, after which the
+   *     writer stops.
+   */
+  public RowWriter(
+      String name,
+      int bufferSize,
+      int bufferCount,
+      Runnable releaseHandler,
+      Consumer<IOException> errorHandler) {
+    assert bufferSize > 0 : "bufferSize must be positive.";
+    this.bufferSize = bufferSize;
+
+    assert bufferCount > 0 : "bufferCount must be positive.";
+    this.freeBuffers = new LinkedBlockingQueue<>(bufferCount);
+    for (int i = 0; i < bufferCount; i++) {
+      this.freeBuffers.add(ByteBuffer.allocateDirect(bufferSize));
+    }
+
+    assert releaseHandler != null : "releaseHandler must not be null.";
+    this.releaseHandler = releaseHandler;
+
+    assert errorHandler != null : "errorHandler must not be null.";
+    this.errorHandler = errorHandler;
+
+    this.thread = new Thread(this::run, name);
+    this.thread.setDaemon(true);
+  }
+
+  // Properties
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  // Methods
+
+  /**
+   * Adds a table's output. Files are created in the writer's thread when the first buffer for
+   * them is written. Must be called before <code>start</code>.
+   *
+   * @param directory The directory in which to create the files.
+   * @param prefix The prefix of each file's name, which is followed by its sequence number.
+   * @param extension The files' extension.
+   * @param header The bytes with which every file begins.
+   * @param maxFileSize The size past which the output rolls to a new file.
+   * @return The output.
+   */
+  public RowFile addFile(
+      Path directory, String prefix, String extension, byte[] header, long maxFileSize) {
+    assert !this.thread.isAlive() : "Files must be added before the writer starts.";
+    var file = new RowFile(directory, prefix, extension, header, maxFileSize);
+    this.files.add(file);
+    return file;
+  }
+
+  public void start() {
+    this.thread.start();
+  }
+
+  /**
+   * Takes a buffer from the pool. The caller must hold a credit for it, so one is always free.
+   *
+   * @return The empty buffer.
+   */
+  public ByteBuffer acquire() {
+    var buffer = this.freeBuffers.poll();
+    assert buffer != null : "A buffer was acquired without a credit.";
+    return buffer;
+  }
+
+  /**
+   * Hands a filled buffer to the writer thread.
+   *
+   * @param file The output to write to.
+   * @param buffer The buffer, positioned after its last byte.
+   */
+  public void submit(RowFile file, ByteBuffer buffer) {
+    buffer.flip();
+    this.tasks.add(new Task(file, buffer));
+  }
+
+  /**
+   * Asks the writer to close its files once every buffer submitted so far has been written.
+   *
+   * @param finishedHandler Called on the writer thread once the files are closed.
+   */
+  public void finish(Runnable finishedHandler) {
+    this.finishedHandler = finishedHandler;
+    this.tasks.add(END);
+  }
+
+  /** Stops the writer, abandoning any buffers not yet written. */
+  public void close() {
+    this.thread.interrupt();
+  }
+
+  // Helper methods
+  private void run() {
+    try {
+      while (true) {
+        var task = this.tasks.take();
+        if (task == END) {
+          this.closeFiles();
+          this.finishedHandler.run();
+          return;
+        }
+
+        task.file.write(task.buffer);
+        if (task.buffer.capacity() == this.bufferSize && task.buffer.isDirect()) {
+          task.buffer.clear();
+          this.freeBuffers.add(task.buffer);
+          this.releaseHandler.run();
+        }
+      }
+    } catch (IOException e) {
+      LOGGER.error("Unable to write rows: {}", e.getMessage());
+      this.closeQuietly();
+      this.errorHandler.accept(e);
+    } catch (InterruptedException e) {
+      LOGGER.debug("Row writer '{}' stopped before it finished.", this.thread.getName());
+      this.closeQuietly();
+    }
+  }
+
+  private void closeFiles() throws IOException {
+    for (RowFile file : this.files) {
+      file.close();
+      LOGGER.debug(
+          "Wrote {} byte(s) of rows to {} '{}' file(s).",
+          file.rowBytes,
+          file.sequence,
+          file.prefix);
+    }
+  }
+
+  private void closeQuietly() {
+    for (RowFile file : this.files) {
+      try {
+        file.close();
+      } catch (IOException e) {
+        LOGGER.warn("Unable to close a '{}' file: {}", file.prefix, e.getMessage());
+      }
+    }
+  }
+}
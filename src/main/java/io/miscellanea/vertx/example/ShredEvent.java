@@ -0,0 +1,102 @@
+package io.miscellanea.vertx.example;
+
+/**
+ * A compact, immutable record exchanged between shredders and processors over the event bus. Every
+ * event carries its kind and job identifier; element events also carry the element's local name
+ * symbol and error events carry a message.
+ *
+ * <p>Because instances are immutable, <code>ShredEventCodec</code> delivers them to local consumers
+ * without copying. Symbols are only meaningful within a JVM, so the codec transmits the element's
+ * name on the wire and the receiving node re-interns it.
+ *
+ * @author Jason Hallford
+ */
+public final class ShredEvent {
+  /** The kinds of event exchanged during shredding. */
+  public enum Kind {
+    BEGIN_JOB,
+    NEXT,
+    START_ELEMENT,
+    FINISHED,
+    ERROR;
+
+    private static final Kind[] VALUES = values();
+
+    static Kind fromOrdinal(int ordinal) {
+      return VALUES[ordinal];
+    }
+  }
+
+  // Fields
+  public static final int NO_SYMBOL = -1;
+
+  private final Kind kind;
+  private final int jobId;
+  private final int symbol;
+  private final String message;
+
+  // Constructors
+  ShredEvent(Kind kind, int jobId, int symbol, String message) {
+    assert kind != null : "kind must not be null.";
+    this.kind = kind;
+    this.jobId = jobId;
+    this.symbol = symbol;
+    this.message = message;
+  }
+
+  // Factory methods
+  public static ShredEvent beginJob(int jobId) {
+    return new ShredEvent(Kind.BEGIN_JOB, jobId, NO_SYMBOL, null);
+  }
+
+  public static ShredEvent next(int jobId) {
+    return new ShredEvent(Kind.NEXT, jobId, NO_SYMBOL, null);
+  }
+
+  public static ShredEvent startElement(int jobId, int symbol) {
+    return new ShredEvent(Kind.START_ELEMENT, jobId, symbol, null);
+  }
+
+  public static ShredEvent finished(int jobId) {
+    return new ShredEvent(Kind.FINISHED, jobId, NO_SYMBOL, null);
+  }
+
+  public static ShredEvent error(int jobId, String message) {
+    return new ShredEvent(Kind.ERROR, jobId, NO_SYMBOL, message);
+  }
+
+  // Properties
+  public Kind getKind() {
+    return kind;
+  }
+
+  public int getJobId() {
+    return jobId;
+  }
+
+  /**
+   * Gets the element's local name symbol from <code>SymbolTable.shared()</code>.
+   *
+   * @return The symbol, or <code>NO_SYMBOL</code> for events that do not describe an element.
+   */
+  public int getSymbol() {
+    return symbol;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  // Methods
+  @Override
+  public String toString() {
+    return "ShredEvent[kind = "
+        + kind
+        + ", job-id = "
+        + jobId
+        + ", symbol = "
+        + symbol
+        + (message != null ? ", message = " + message : "")
+        + "]";
+  }
+}
@@ -0,0 +1,72 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageCodec;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Event bus codec for <code>ShredEvent</code>. Local delivery passes the (immutable) event through
+ * untouched. On the wire an event is encoded as:
+ *
+ * <pre>
+ *   kind      : byte
+ *   job-id    : int
+ *   text-len  : int (-1 when absent)
+ *   text      : UTF-8 bytes (element local name or error message)
+ * </pre>
+ *
+ * @author Jason Hallford
+ */
+public class ShredEventCodec implements MessageCodec<ShredEvent, ShredEvent> {
+  // Fields
+  public static final String NAME = "shred-event";
+
+  // Constructors
+  public ShredEventCodec() {}
+
+  // MessageCodec
+  @Override
+  public void encodeToWire(Buffer buffer, ShredEvent event) {
+    buffer.appendByte((byte) event.getKind().ordinal()).appendInt(event.getJobId());
+
+    String text =
+        event.getKind() == ShredEvent.Kind.START_ELEMENT
+            ? SymbolTable.shared().nameOf(event.getSymbol())
+            : event.getMessage();
+    if (text != null) {
+      byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+      buffer.appendInt(bytes.length).appendBytes(bytes);
+    } else {
+      buffer.appendInt(-1);
+    }
+  }
+
+  @Override
+  public ShredEvent decodeFromWire(int pos, Buffer buffer) {
+    var kind = ShredEvent.Kind.fromOrdinal(buffer.getByte(pos));
+    int jobId = buffer.getInt(pos + 1);
+    int length = buffer.getInt(pos + 5);
+    String text = length >= 0 ? buffer.getString(pos + 9, pos + 9 + length, "UTF-8") : null;
+
+    if (kind == ShredEvent.Kind.START_ELEMENT) {
+      return new ShredEvent(kind, jobId, SymbolTable.shared().intern(text), null);
+    }
+    return new ShredEvent(kind, jobId, ShredEvent.NO_SYMBOL, text);
+  }
+
+  @Override
+  public ShredEvent transform(ShredEvent event) {
+    return event;
+  }
+
+  @Override
+  public String name() {
+    return NAME;
+  }
+
+  @Override
+  public byte systemCodecID() {
+    return -1;
+  }
+}
@@ -0,0 +1,113 @@
+package io.miscellanea.vertx.example;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.vertx.micrometer.backends.BackendRegistries;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The meters one shredder verticle records into. Meters are resolved once, when the shredder
+ * starts, so the event pump only adds a batch's totals to pre-bound counters; nothing is recorded
+ * per event.
+ *
+ * <p>Instances are confined to the context of the verticle that created them.
+ *
+ * @author Jason Hallford
+ */
+public final class ShredMetrics {
+  // Fields
+  private static final MeterRegistry DISABLED = new CompositeMeterRegistry();
+
+  private final Counter eventsParsed;
+  private final Counter bytesRead;
+  private final Timer jobSucceeded;
+  private final Timer jobFailed;
+  private final Map<Integer, Long> jobStarts = new HashMap<>();
+
+  // Published for the registry, which reads it from its scrape thread.
+  private volatile int activeJobs = 0;
+
+  // Constructors
+  public ShredMetrics(MeterRegistry registry, String shredder) {
+    assert registry != null : "registry must not be null.";
+    assert shredder != null : "shredder must not be null.";
+
+    this.eventsParsed =
+        Counter.builder("shred.events.parsed")
+            .description("XML events delivered to processors")
+            .tag("shredder", shredder)
+            .register(registry);
+    this.bytesRead =
+        Counter.builder("shred.bytes.read")
+            .description("Document bytes read")
+            .baseUnit("bytes")
+            .tag("shredder", shredder)
+            .register(registry);
+    this.jobSucceeded = jobTimer(registry, shredder, "success");
+    this.jobFailed = jobTimer(registry, shredder, "error");
+    registry.gauge(
+        "shred.jobs.active", Tags.of("shredder", shredder), this, metrics -> metrics.activeJobs);
+  }
+
+  // Methods
+
+  /**
+   * Gets the registry this example records into: the Vert.x default backend registry when Vert.x
+   * metrics are enabled, or a registry without backends, whose meters discard what they record,
+   * when they are not.
+   *
+   * @return The registry.
+   */
+  public static MeterRegistry registry() {
+    var registry = BackendRegistries.getDefaultNow();
+    return registry != null ? registry : DISABLED;
+  }
+
+  public void eventsParsed(int count) {
+    if (count > 0) {
+      this.eventsParsed.increment(count);
+    }
+  }
+
+  public void bytesRead(long count) {
+    if (count > 0) {
+      this.bytesRead.increment(count);
+    }
+  }
+
+  public void jobStarted(Integer jobId) {
+    this.jobStarts.put(jobId, System.nanoTime());
+    this.activeJobs = this.jobStarts.size();
+  }
+
+  /**
+   * Records a job's latency, from <code>jobStarted</code> until now, with nanosecond precision.
+   *
+   * @param jobId The job identifier.
+   * @param succeeded Whether the job finished without an error.
+   */
+  public void jobFinished(Integer jobId, boolean succeeded) {
+    var start = this.jobStarts.remove(jobId);
+    this.activeJobs = this.jobStarts.size();
+    if (start != null) {
+      (succeeded ? this.jobSucceeded : this.jobFailed)
+          .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  // Helper methods
+  private static Timer jobTimer(MeterRegistry registry, String shredder, String outcome) {
+    return Timer.builder("shred.job.latency")
+        .description("Time from a job's dispatch to a shredder until it finished")
+        .tag("shredder", shredder)
+        .tag("outcome", outcome)
+        .publishPercentileHistogram()
+        .register(registry);
+  }
+}
@@ -0,0 +1,118 @@
+package io.miscellanea.vertx.example;
+
+import javax.xml.stream.XMLStreamConstants;
+import java.util.Arrays;
+
+/**
+ * Delivers to a processor only the events its <code>XmlSubscription</code> asks for. The filter
+ * follows the document's element structure through an <code>XmlPathMachine</code>; elements on the
+ * way to a selected element are not delivered, and once no path can select anything below an
+ * element, the filter tells the shredder the element's subtree may be skipped.
+ *
+ * @author Jason Hallford
+ */
+public class SubscriptionFilter implements XmlStreamProcessor {
+  // Fields
+  private final XmlStreamProcessor delegate;
+  private final XmlSubscription subscription;
+  private final XmlPathMachine machine;
+  private XmlPathMachine.State[] states = new XmlPathMachine.State[16];
+  private int depth = 0;
+  private int selectedDepth = 0;
+  private int ignoredDepth = 0;
+  private boolean skipsSubtree = false;
+
+  // Constructors
+  public SubscriptionFilter(
+      XmlStreamProcessor delegate, XmlSubscription subscription, XmlPathMachine machine) {
+    assert delegate != null : "delegate must not be null.";
+    this.delegate = delegate;
+
+    assert subscription != null : "subscription must not be null.";
+    this.subscription = subscription;
+
+    assert machine != null : "machine must not be null.";
+    this.machine = machine;
+    this.states[0] = machine.getInitialState();
+  }
+
+  // XmlStreamProcessor
+  @Override
+  public boolean process(XmlCursor cursor) {
+    int eventType = cursor.getEventType();
+
+    switch (eventType) {
+      case XMLStreamConstants.START_ELEMENT:
+        return this.beginElement(cursor);
+      case XMLStreamConstants.END_ELEMENT:
+        return this.endElement(cursor);
+      default:
+        // Events outside the root element belong to the document, not to a path.
+        if (this.depth == 0 || this.selectedDepth > 0) {
+          return this.deliver(cursor, eventType);
+        }
+        return true;
+    }
+  }
+
+  @Override
+  public boolean skipsSubtree() {
+    return this.skipsSubtree;
+  }
+
+  // Helper methods
+  private boolean beginElement(XmlCursor cursor) {
+    this.depth++;
+    this.skipsSubtree = false;
+
+    if (this.ignoredDepth > 0) {
+      // The shredder did not skip an ignored subtree, because another processor wanted it.
+      return true;
+    }
+
+    if (this.selectedDepth == 0) {
+      var state = this.machine.next(this.states[this.depth - 1], cursor.getLocalNameSymbol());
+      if (state.isSelected()) {
+        this.selectedDepth = this.depth;
+      } else {
+        if (state.isDead()) {
+          this.ignoredDepth = this.depth;
+          this.skipsSubtree = true;
+        } else {
+          if (this.depth == this.states.length) {
+            this.states = Arrays.copyOf(this.states, this.depth * 2);
+          }
+          this.states[this.depth] = state;
+        }
+        return true;
+      }
+    }
+
+    return this.deliver(cursor, XMLStreamConstants.START_ELEMENT);
+  }
+
+  private boolean endElement(XmlCursor cursor) {
+    int elementDepth = this.depth--;
+    this.skipsSubtree = false;
+
+    if (this.ignoredDepth > 0) {
+      if (this.ignoredDepth == elementDepth) {
+        this.ignoredDepth = 0;
+      }
+      return true;
+    }
+
+    if (this.selectedDepth == 0) {
+      return true;
+    }
+
+    if (this.selectedDepth == elementDepth) {
+      this.selectedDepth = 0;
+    }
+    return this.deliver(cursor, XMLStreamConstants.END_ELEMENT);
+  }
+
+  private boolean deliver(XmlCursor cursor, int eventType) {
+    return !this.subscription.includes(eventType) || this.delegate.process(cursor);
+  }
+}
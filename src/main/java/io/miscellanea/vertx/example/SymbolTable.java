@@ -0,0 +1,92 @@
+package io.miscellanea.vertx.example;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Maps XML names to dense integer identifiers so that hot paths may key on an <code>int</code>
+ * rather than hashing and comparing strings. Identifiers are assigned in order of first appearance,
+ * starting at zero, and are never reused. Instances are safe for concurrent use.
+ *
+ * <p>Names are never forgotten, so the shared table, and with it every exact tag count, grows with
+ * the number of distinct names the JVM has seen across all jobs. That is a few dozen bytes per name,
+ * which is negligible for feeds with a fixed vocabulary; feeds that generate names, such as keys
+ * encoded as tags, should be counted in approximate mode, which does not intern them. The table's
+ * size is exported as the <code>symbol-table.names</code> gauge.
+ *
+ * @author Jason Hallford
+ */
+public final class SymbolTable {
+  // Fields
+  private static final SymbolTable SHARED = new SymbolTable();
+
+  private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+  private volatile String[] names = new String[64];
+  private int size = 0;
+
+  // Constructors
+  public SymbolTable() {}
+
+  // Methods
+
+  /**
+   * Gets the JVM-wide symbol table shared by shredders and processors.
+   *
+   * @return The shared symbol table.
+   */
+  public static SymbolTable shared() {
+    return SHARED;
+  }
+
+  /**
+   * Gets the identifier for a name, assigning a new one if the name has not been seen before.
+   *
+   * @param name The name.
+   * @return The name's identifier.
+   */
+  public int intern(String name) {
+    assert name != null : "name must not be null.";
+
+    Integer id = this.ids.get(name);
+    return id != null ? id : this.register(name);
+  }
+
+  /**
+   * Resolves an identifier back to its name.
+   *
+   * @param id The identifier.
+   * @return The name, or <code>null</code> if the identifier has not been assigned.
+   */
+  public String nameOf(int id) {
+    var snapshot = this.names;
+    return id >= 0 && id < snapshot.length ? snapshot[id] : null;
+  }
+
+  /**
+   * Gets the number of identifiers assigned so far.
+   *
+   * @return The symbol count.
+   */
+  public synchronized int size() {
+    return this.size;
+  }
+
+  private synchronized int register(String name) {
+    Integer id = this.ids.get(name);
+    if (id == null) {
+      id = this.size++;
+      var snapshot = this.names;
+      if (id == snapshot.length) {
+        snapshot = Arrays.copyOf(snapshot, id * 2);
+      }
+      snapshot[id] = name;
+
+      // Publish the name before the identifier so readers never resolve an id to null.
+      this.names = snapshot;
+      this.ids.put(name, id);
+    }
+
+    return id;
+  }
+}
@@ -0,0 +1,57 @@
+package io.miscellanea.vertx.example;
+
+import javax.xml.stream.XMLStreamConstants;
+
+/**
+ * Hides the synthetic root element events that wrap a part of a split document. A part that does
+ * not begin at the start of the document is prefixed with a copy of the root element's start tag,
+ * and a part that does not reach the end of the document is suffixed with a synthetic end tag; the
+ * processor sees neither, so each root event is observed exactly once across all parts. The root
+ * is recognized by the cursor's depth, so the filter works behind one that withholds elements.
+ *
+ * @author Jason Hallford
+ */
+public class SyntheticRootFilter implements XmlStreamProcessor {
+  // Fields
+  private final XmlStreamProcessor delegate;
+  private final boolean syntheticStart;
+  private final boolean syntheticEnd;
+  private boolean hidStart = false;
+
+  // Constructors
+  public SyntheticRootFilter(
+      XmlStreamProcessor delegate, boolean syntheticStart, boolean syntheticEnd) {
+    assert delegate != null : "delegate must not be null.";
+    this.delegate = delegate;
+    this.syntheticStart = syntheticStart;
+    this.syntheticEnd = syntheticEnd;
+  }
+
+  // XmlStreamProcessor
+  @Override
+  public boolean process(XmlCursor cursor) {
+    switch (cursor.getEventType()) {
+      case XMLStreamConstants.START_ELEMENT:
+        this.hidStart = this.syntheticStart && cursor.getDepth() == 1;
+        if (this.hidStart) {
+          return true;
+        }
+        break;
+      case XMLStreamConstants.END_ELEMENT:
+        if (this.syntheticEnd && cursor.getDepth() == 1) {
+          return true;
+        }
+        break;
+      default:
+        break;
+    }
+
+    return this.delegate.process(cursor);
+  }
+
+  @Override
+  public boolean skipsSubtree() {
+    // The delegate never saw a synthetic root, so it cannot answer for one.
+    return !this.hidStart && this.delegate.skipsSubtree();
+  }
+}
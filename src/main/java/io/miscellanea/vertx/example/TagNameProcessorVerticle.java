@@ -1,93 +1,511 @@
 package io.miscellanea.vertx.example;
 
+import io.micrometer.core.instrument.Tags;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Promise;
+import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.eventbus.Message;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.AsyncMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * A worker verticle that counts the unique tag names XML document by working in tandem with <code>
  * TagNameXmlEventProcessor</code>.
  *
+ * <p>A job's state lives only as long as the job: once it finishes, its statistics are published
+ * to the result address and dropped, and a job that fails is dropped when its shredder announces
+ * the failure. Jobs, and merges of split jobs, that see no traffic for the configured time to live
+ * are expired, and new jobs are refused while the state of live ones exceeds the configured cap,
+ * so the verticle's heap stays flat however many jobs pass through it.
+ *
+ * <p>A job in approximate mode is counted by a <code>TagSketch</code> instead of exact <code>
+ * TagStats</code>, so that its state has a fixed size however many distinct names its document has.
+ * The job's processor chooses the mode, and the sketch's parameters, when the job begins.
+ *
  * @author Jason Hallford
  */
 public class TagNameProcessorVerticle extends AbstractVerticle {
+  private static class JobState {
+    private TagStats stats;
+    private TagSketch sketch;
+    private String creditAddress;
+    private String errorAddress;
+    private Integer parentJobId;
+    private int partCount;
+    private long lastActiveMs;
+  }
+
+  private static class MergeState {
+    private TagStats stats;
+    private TagSketch sketch;
+    private final int partCount;
+    private int partsMerged = 0;
+    private long lastActiveMs;
+
+    public MergeState(int partCount) {
+      this.partCount = partCount;
+    }
+  }
+
   // Fields
   private static final Logger LOGGER = LoggerFactory.getLogger(TagNameProcessorVerticle.class);
 
-  private Map<Integer, TagStats> stats = new HashMap<>();
-  private final String docEndAddress = "processor.tag-name.end." + this.hashCode();
-  private final String elementBeginAddress = "processor.tag-name.begin-element." + this.hashCode();
+  /**
+   * The default address on which the statistics of each finished (unsplit or merged) job are
+   * published, with the job's identifier in the <code>job-id</code> header.
+   */
+  public static final String JOB_FINISHED_ADDRESS = "processor.tag-name.finished";
+
+  public static final String JOB_ID_HEADER = "job-id";
+
+  /**
+   * The header with which a job resuming from a checkpoint hands back the statistics it had
+   * gathered, as the JSON object with which a checkpoint request was answered.
+   */
+  public static final String RESTORED_STATE_HEADER = "tag-name.restored-state";
+
+  /** The processor property that sets each job's window, in element observations. */
+  public static final String CREDIT_WINDOW_PROPERTY = "tag-name.credit-window";
+
+  /** The processor property naming the address on which finished jobs' results are published. */
+  public static final String RESULT_ADDRESS_PROPERTY = "tag-name.result-address";
+
+  /** The processor property that sets how long, in milliseconds, an idle job's state is kept. */
+  public static final String JOB_TTL_PROPERTY = "tag-name.job-ttl-ms";
+
+  /** The processor property that caps the bytes of job state each verticle instance holds. */
+  public static final String MAX_STATE_BYTES_PROPERTY = "tag-name.max-state-bytes";
+
+  /**
+   * The processor property, and job header, that selects a job's counting mode: <code>exact
+   * </code>, the default, or <code>approximate</code>.
+   */
+  public static final String MODE_PROPERTY = "tag-name.mode";
+
+  public static final String APPROXIMATE_MODE = "approximate";
+
+  /** The processor property that sets how many of the most frequent names a sketch reports. */
+  public static final String TOP_K_PROPERTY = "tag-name.top-k";
+
+  /** The processor property that bounds a sketch's overestimates, as a fraction of the total. */
+  public static final String ERROR_PROPERTY = "tag-name.error";
+
+  /** The processor property that sets the probability that a sketch stays within its bound. */
+  public static final String CONFIDENCE_PROPERTY = "tag-name.confidence";
+
+  /** The properties an approximate job passes, as headers, to configure its sketch. */
+  public static final List<String> SKETCH_PROPERTIES =
+      List.of(TOP_K_PROPERTY, ERROR_PROPERTY, CONFIDENCE_PROPERTY);
+
+  /** The failure code with which a job is refused while the verticle's job state is full. */
+  public static final int STATE_FULL = 503;
+
+  private static final long DEFAULT_CREDIT_WINDOW = 16 * 1024;
+  private static final long DEFAULT_JOB_TTL_MS = 10 * 60 * 1000L;
+  private static final long DEFAULT_MAX_STATE_BYTES = 64L * 1024 * 1024;
+  private static final long MIN_SWEEP_INTERVAL_MS = 1000L;
+  private static final int DEFAULT_TOP_K = 100;
+  private static final double DEFAULT_ERROR = 0.001;
+  private static final double DEFAULT_CONFIDENCE = 0.99;
+
+  // Maps a split job's identifier to the merge address of the instance, on any node, that owns its
+  // result.
+  private static final String MERGE_OWNERS_MAP = "processor.tag-name.merge-owners";
+
+  private Map<Integer, JobState> jobs = new HashMap<>();
+  private Map<Integer, MergeState> merges = new HashMap<>();
+  private AsyncMap<Integer, String> mergeOwners;
+  private long creditWindow;
+  private String resultAddress;
+  private long jobTtlMs;
+  private long maxStateBytes;
+  private volatile long stateBytes = 0;
+  private volatile int liveJobs = 0;
+  private String elementBeginAddress;
+  private String mergeAddress;
 
   // Constructors
   public TagNameProcessorVerticle() {}
 
   // Vert.x lifecycle methods
   @Override
-  public void start() {
-    // Register handlers
-    getVertx().eventBus().consumer("processor.tag-name.begin", this::beginJob);
-    getVertx().eventBus().consumer(this.docEndAddress, this::endJob);
-    getVertx().eventBus().consumer(this.elementBeginAddress, this::beginElement);
+  public void start(Promise<Void> startPromise) {
+    var identifier = ClusterNode.qualify(this);
+    this.elementBeginAddress = "processor.tag-name.begin-element." + identifier;
+    this.mergeAddress = "processor.tag-name.merge." + identifier;
+
+    var properties = config().getJsonObject("processor-properties", new JsonObject());
+    this.creditWindow =
+        Math.max(1L, properties.getLong(CREDIT_WINDOW_PROPERTY, DEFAULT_CREDIT_WINDOW));
+    this.resultAddress = getResultAddress(config());
+    this.jobTtlMs = properties.getLong(JOB_TTL_PROPERTY, DEFAULT_JOB_TTL_MS);
+    this.maxStateBytes = properties.getLong(MAX_STATE_BYTES_PROPERTY, DEFAULT_MAX_STATE_BYTES);
 
-    LOGGER.info("Tag name processing verticle started. Private address identifier = {}.", this.hashCode());
+    // The parts of a split job may be counted on any node, so their merge owner is elected in a
+    // cluster-wide map.
+    getVertx()
+        .sharedData()
+        .<Integer, String>getAsyncMap(
+            MERGE_OWNERS_MAP,
+            owners -> {
+              if (owners.succeeded()) {
+                this.mergeOwners = owners.result();
+                this.registerHandlers();
+                LOGGER.info(
+                    "Tag name processing verticle started. Private address identifier = {}.",
+                    identifier);
+                startPromise.complete();
+              } else {
+                startPromise.fail(owners.cause());
+              }
+            });
+  }
+
+  // Properties
+
+  /**
+   * Gets the address on which finished jobs' results are published, from the <code>
+   * tag-name.result-address</code> processor property.
+   *
+   * @param config The verticle configuration.
+   * @return The address, or <code>JOB_FINISHED_ADDRESS</code> if none is configured.
+   */
+  public static String getResultAddress(JsonObject config) {
+    var address =
+        config
+            .getJsonObject("processor-properties", new JsonObject())
+            .getString(RESULT_ADDRESS_PROPERTY, "");
+    return address.isBlank() ? JOB_FINISHED_ADDRESS : address;
   }
 
   // Vert.x handlers
-  private void beginJob(Message<JsonObject> message) {
-    var payload = message.body();
+  private void beginJob(Message<ShredEvent> message) {
+    int jobId = message.body().getJobId();
+    var jobState = this.jobs.get(jobId);
+    if (jobState == null) {
+      if (this.updateStateBytes() >= this.maxStateBytes) {
+        LOGGER.warn(
+            "Refusing job {}; live job state has reached {} byte(s).", jobId, this.stateBytes);
+        message.fail(STATE_FULL, "The tag name processor's job state is full.");
+        return;
+      }
+
+      jobState = new JobState();
+      if (APPROXIMATE_MODE.equals(message.headers().get(MODE_PROPERTY))) {
+        try {
+          jobState.sketch = createSketch(message);
+        } catch (IllegalArgumentException e) {
+          LOGGER.warn("Refusing job {}; its sketch is misconfigured: {}", jobId, e.getMessage());
+          message.fail(400, "Invalid sketch parameters: " + e.getMessage());
+          return;
+        }
+      } else {
+        jobState.stats = new TagStats();
+      }
+      this.jobs.put(jobId, jobState);
+      this.liveJobs = this.jobs.size();
 
-    int jobId = payload.getInteger("job-id");
-    if (!stats.containsKey(jobId)) {
-      stats.put(jobId, new TagStats());
+      var restoredState = message.headers().get(RESTORED_STATE_HEADER);
+      if (restoredState != null && jobState.stats != null) {
+        this.restore(jobState.stats, new JsonObject(restoredState));
+        LOGGER.info("Job {} resumed from a checkpoint.", jobId);
+      }
     }
 
-    var jobStats = this.stats.get(jobId);
-    jobStats.startMs = System.currentTimeMillis();
-    LOGGER.info("Job {} started.", jobId);
+    jobState.lastActiveMs = System.currentTimeMillis();
+    if (jobState.sketch != null) {
+      jobState.sketch.startMs = jobState.lastActiveMs;
+    } else {
+      jobState.stats.startMs = jobState.lastActiveMs;
+    }
+    jobState.creditAddress =
+        message.headers().get(XmlEventProcessorContext.CREDIT_ADDRESS_PROPERTY);
+    jobState.errorAddress = message.headers().get(XmlEventProcessorContext.ERROR_ADDRESS_PROPERTY);
+
+    var parentJobId = message.headers().get(XmlEventProcessorContext.PARENT_JOB_ID_PROPERTY);
+    if (parentJobId != null) {
+      jobState.parentJobId = Integer.valueOf(parentJobId);
+      jobState.partCount =
+          Integer.parseInt(message.headers().get(XmlEventProcessorContext.PART_COUNT_PROPERTY));
+      LOGGER.info("Job {} (part of job {}) started.", jobId, parentJobId);
+    } else {
+      LOGGER.info("Job {} started.", jobId);
+    }
 
     // Return a reply to the sender informing them of this verticle's
-    // private addresses.
+    // private addresses and granting the job's initial window.
     message.reply(
         new JsonObject()
             .put("job-id", jobId)
-            .put("end-address", this.docEndAddress)
-            .put("begin-element-address", this.elementBeginAddress));
+            .put("begin-element-address", this.elementBeginAddress)
+            .put("credits", this.creditWindow));
   }
 
-  private void beginElement(Message<JsonObject> message) {
-    var payload = message.body();
-    int jobId = payload.getInteger("job-id");
-    String elementName = payload.getString("element-name");
+  private void beginElement(Message<ElementBatch> message) {
+    var batch = message.body();
+    int jobId = batch.getJobId();
+
+    var jobState = this.jobs.get(jobId);
+    if (jobState != null) {
+      if (jobState.sketch != null && batch.isNamed()) {
+        jobState.sketch.addAll(batch.getNames(), batch.size());
+      } else if (jobState.stats != null && !batch.isNamed()) {
+        jobState.stats.incrementAll(batch.getSymbols(), batch.size());
+      } else {
+        LOGGER.warn("Ignoring an element batch for job {} in the wrong mode.", jobId);
+      }
+      jobState.lastActiveMs = System.currentTimeMillis();
 
-    var jobStats = this.stats.get(jobId);
-    if (jobStats != null) {
-      if (!jobStats.counters.containsKey(elementName)) {
-        LOGGER.debug("Creating new counter for element {}.", elementName);
-        jobStats.counters.put(elementName, new Counter());
+      if (batch.isLast()) {
+        this.endJob(jobId, jobState);
+      } else if (message.replyAddress() != null && jobState.sketch != null) {
+        message.fail(409, "Approximate job " + jobId + " cannot be checkpointed.");
+      } else if (message.replyAddress() != null) {
+        // A checkpoint request; its batch spent no credits.
+        message.reply(jobState.stats.toJson());
+      } else {
+        // Return the batch's credits to the shredder now that it has been applied.
+        getVertx()
+            .eventBus()
+            .send(
+                jobState.creditAddress,
+                new JsonObject().put("job-id", jobId).put("credits", batch.size()));
+      }
+    } else {
+      // Batches may trail a job that has failed or expired.
+      LOGGER.debug("Ignoring element batch for job {}, which has ended.", jobId);
+      if (message.replyAddress() != null) {
+        message.fail(404, "Job " + jobId + " is unknown to the tag name processor.");
       }
+    }
+  }
+
+  private void mergePart(Message<TagNameResult> message) {
+    int parentJobId =
+        Integer.parseInt(message.headers().get(XmlEventProcessorContext.PARENT_JOB_ID_PROPERTY));
+    int partCount =
+        Integer.parseInt(message.headers().get(XmlEventProcessorContext.PART_COUNT_PROPERTY));
 
-      LOGGER.debug("Incrementing counter for element {}.", elementName);
-      jobStats.counters.get(elementName).increment();
+    var state = this.merges.computeIfAbsent(parentJobId, id -> new MergeState(partCount));
+    if (message.body() instanceof TagSketch) {
+      // The first part's sketch, which its sender has dropped, accumulates the others.
+      var sketch = (TagSketch) message.body();
+      if (state.sketch == null) {
+        state.sketch = sketch;
+      } else {
+        state.sketch.merge(sketch);
+      }
     } else {
-      LOGGER.warn("Received begin element for unknown job {}.", jobId);
+      if (state.stats == null) {
+        state.stats = new TagStats();
+      }
+      state.stats.merge((TagStats) message.body());
+    }
+    state.partsMerged++;
+    state.lastActiveMs = System.currentTimeMillis();
+    LOGGER.debug("Merged part {} of {} for job {}.", state.partsMerged, partCount, parentJobId);
+
+    if (state.partsMerged == state.partCount) {
+      this.merges.remove(parentJobId);
+      this.mergeOwners.remove(parentJobId, removed -> {});
+      this.finishJob(parentJobId, state.sketch != null ? state.sketch : state.stats);
+    }
+  }
+
+  private void jobEnded(Message<JsonObject> message) {
+    var event = message.body();
+    if (event.getString("error") == null) {
+      return;
+    }
+
+    // A failed job sends no last batch, so its state would otherwise wait for the TTL.
+    var jobId = event.getInteger("job-id");
+    if (this.jobs.remove(jobId) != null) {
+      this.liveJobs = this.jobs.size();
+      LOGGER.debug("Dropped the state of failed job {}.", jobId);
     }
   }
 
-  private void endJob(Message<JsonObject> message) {
-    var payload = message.body();
-    int jobId = payload.getInteger("job-id");
+  // Helper methods
+  private void registerHandlers() {
+    // Register handlers
+    getVertx().eventBus().consumer("processor.tag-name.begin", this::beginJob);
+    getVertx().eventBus().consumer(this.elementBeginAddress, this::beginElement);
+    getVertx().eventBus().consumer(this.mergeAddress, this::mergePart);
+    getVertx()
+        .eventBus()
+        .<JsonObject>consumer(AbstractXmlShredderVerticle.JOB_ENDED_ADDRESS, this::jobEnded);
+
+    if (this.jobTtlMs > 0) {
+      getVertx()
+          .setPeriodic(
+              Math.max(MIN_SWEEP_INTERVAL_MS, this.jobTtlMs / 4), timerId -> this.expireIdle());
+    }
+
+    var registry = ShredMetrics.registry();
+    var tags = Tags.of("processor", String.valueOf(this.hashCode()));
+    // The registry reads gauges from its scrape thread, so they read only volatile fields.
+    registry.gauge("processor.tag-name.jobs.live", tags, this, verticle -> verticle.liveJobs);
+    registry.gauge(
+        "processor.tag-name.state.bytes", tags, this, verticle -> verticle.stateBytes);
+  }
+
+  private static TagSketch createSketch(Message<ShredEvent> message) {
+    var topK = message.headers().get(TOP_K_PROPERTY);
+    var error = message.headers().get(ERROR_PROPERTY);
+    var confidence = message.headers().get(CONFIDENCE_PROPERTY);
+
+    // A malformed number is an IllegalArgumentException too.
+    return new TagSketch(
+        topK != null ? Integer.parseInt(topK) : DEFAULT_TOP_K,
+        error != null ? Double.parseDouble(error) : DEFAULT_ERROR,
+        confidence != null ? Double.parseDouble(confidence) : DEFAULT_CONFIDENCE);
+  }
+
+  private void restore(TagStats jobStats, JsonObject state) {
+    var symbols = SymbolTable.shared();
+    state
+        .getJsonObject("counts")
+        .forEach(
+            count ->
+                jobStats.add(
+                    symbols.intern(count.getKey()), ((Number) count.getValue()).longValue()));
+  }
+
+  private void endJob(int jobId, JobState jobState) {
+    this.jobs.remove(jobId);
+    this.liveJobs = this.jobs.size();
+    TagNameResult result;
+    if (jobState.sketch != null) {
+      jobState.sketch.endMs = System.currentTimeMillis();
+      result = jobState.sketch;
+    } else {
+      jobState.stats.endMs = System.currentTimeMillis();
+      result = jobState.stats;
+    }
 
-    var jobStats = this.stats.get(jobId);
-    if (jobStats != null) {
-      jobStats.endMs = System.currentTimeMillis();
-      LOGGER.info("Job {} finished. Statistics: {}", jobId, jobStats.toString());
+    if (jobState.parentJobId != null) {
+      this.endPart(jobId, jobState.parentJobId, jobState.partCount, result);
     } else {
-      LOGGER.warn("Received end event for unknown job {}", jobId);
+      this.finishJob(jobId, result);
+    }
+  }
+
+  private void finishJob(int jobId, TagNameResult result) {
+    LOGGER.info("Job {} finished. Statistics: {}", jobId, result.toString());
+    getVertx()
+        .eventBus()
+        .publish(
+            this.resultAddress,
+            result,
+            new DeliveryOptions().addHeader(JOB_ID_HEADER, String.valueOf(jobId)));
+  }
+
+  /**
+   * Sends a finished part's statistics to the instance that merges the split job's result. The
+   * first part to finish elects its own instance as the owner.
+   */
+  private void endPart(int jobId, int parentJobId, int partCount, TagNameResult result) {
+    LOGGER.debug("Job {} (part of job {}) finished.", jobId, parentJobId);
+
+    this.mergeOwners.putIfAbsent(
+        parentJobId,
+        this.mergeAddress,
+        owner -> {
+          if (owner.failed()) {
+            // The merge cannot complete without this part, so it expires with the job's TTL.
+            LOGGER.error(
+                "Unable to elect the owner of job {}'s merge; dropping part {}.",
+                parentJobId,
+                jobId,
+                owner.cause());
+            return;
+          }
+
+          getVertx()
+              .eventBus()
+              .send(
+                  owner.result() != null ? owner.result() : this.mergeAddress,
+                  result,
+                  new DeliveryOptions()
+                      .addHeader(
+                          XmlEventProcessorContext.PARENT_JOB_ID_PROPERTY,
+                          String.valueOf(parentJobId))
+                      .addHeader(
+                          XmlEventProcessorContext.PART_COUNT_PROPERTY,
+                          String.valueOf(partCount)));
+        });
+  }
+
+  /**
+   * Drops jobs and merges that have seen no traffic for the time to live. The shredder of an
+   * expired job is told it failed, so that its slot is released if it is still waiting.
+   */
+  private void expireIdle() {
+    long cutoff = System.currentTimeMillis() - this.jobTtlMs;
+
+    var expiredJobs = new HashMap<Integer, JobState>();
+    this.jobs.forEach(
+        (jobId, jobState) -> {
+          if (jobState.lastActiveMs < cutoff) {
+            expiredJobs.put(jobId, jobState);
+          }
+        });
+    expiredJobs.forEach(
+        (jobId, jobState) -> {
+          this.jobs.remove(jobId);
+          LOGGER.warn("Job {} expired after {} ms without element batches.", jobId, this.jobTtlMs);
+          if (jobState.errorAddress != null) {
+            getVertx()
+                .eventBus()
+                .send(
+                    jobState.errorAddress,
+                    ShredEvent.error(jobId, "The tag name processor expired the idle job."));
+          }
+        });
+    this.liveJobs = this.jobs.size();
+
+    this.merges
+        .entrySet()
+        .removeIf(
+            merge -> {
+              if (merge.getValue().lastActiveMs >= cutoff) {
+                return false;
+              }
+
+              LOGGER.warn(
+                  "Job {} expired with {} of {} part(s) merged.",
+                  merge.getKey(),
+                  merge.getValue().partsMerged,
+                  merge.getValue().partCount);
+              this.mergeOwners.remove(merge.getKey(), removed -> {});
+              return true;
+            });
+
+    this.updateStateBytes();
+  }
+
+  /** Recomputes the estimated size of the state of live jobs and merges. */
+  private long updateStateBytes() {
+    long bytes = 0;
+    for (JobState jobState : this.jobs.values()) {
+      bytes +=
+          jobState.sketch != null
+              ? jobState.sketch.getEstimatedSize()
+              : jobState.stats.getEstimatedSize();
     }
+    for (MergeState state : this.merges.values()) {
+      bytes += state.sketch != null ? state.sketch.getEstimatedSize() : 0L;
+      bytes += state.stats != null ? state.stats.getEstimatedSize() : 0L;
+    }
+
+    this.stateBytes = bytes;
+    return bytes;
   }
 }
@@ -0,0 +1,19 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * The result the tag name processor publishes for a finished job: exact <code>TagStats</code>, or
+ * an approximate <code>TagSketch</code> for jobs in approximate mode. Either converts to JSON with
+ * the elapsed time, the counts by element name and their total.
+ *
+ * @author Jason Hallford
+ */
+public interface TagNameResult {
+  /**
+   * Converts the result to JSON.
+   *
+   * @return The JSON object.
+   */
+  JsonObject toJson();
+}
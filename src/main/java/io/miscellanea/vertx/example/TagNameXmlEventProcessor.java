@@ -1,117 +1,277 @@
 package io.miscellanea.vertx.example;
 
-import io.vertx.core.eventbus.MessageProducer;
+import io.micrometer.core.instrument.Counter;
+import io.vertx.core.Promise;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.eventbus.ReplyFailure;
 import io.vertx.core.json.JsonObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.events.XMLEvent;
 
 /**
- * Implements a SAX content handler that fires an event for each tag encountered during parsing.
+ * Implements a SAX content handler that records each tag encountered during parsing. Observations are
+ * accumulated into fixed-size <code>ElementBatch</code>es, sized by the <code>
+ * tag-name.element-batch-size</code> context property, and flushed to the processor verticle when a
+ * batch fills or the document ends. Each flushed batch spends one credit per element from the job's
+ * window, which the processor verticle replenishes as it applies batches. Supports both the <code>
+ * XMLEvent</code> and cursor processing contracts.
+ *
+ * <p>The processor can be checkpointed: it sends its partial batch to the processor verticle as a
+ * request, and the reply, sent once every earlier batch has been applied, carries the job's counts.
+ * A resumed job hands the counts back to the verticle when it begins.
+ *
+ * <p>In approximate mode, selected by the <code>tag-name.mode</code> context property, element
+ * names are sent in named batches without being interned, and the verticle keeps a <code>TagSketch
+ * </code> for the job. Approximate jobs cannot be checkpointed.
+ *
+ * <p>In a clustered deployment, a job is offered to the processor verticles on the shredder's own
+ * node first, so that its batches do not cross the network, and to the rest of the cluster only if
+ * none is deployed there or none has room for it.
  *
  * @author Jason Hallford
  */
-public class TagNameXmlEventProcessor implements XmlEventProcessor {
+public class TagNameXmlEventProcessor implements XmlEventProcessor, XmlStreamProcessor {
   // Fields
   private static final Logger LOGGER = LoggerFactory.getLogger(TagNameXmlEventProcessor.class);
 
+  public static final String BATCH_SIZE_PROPERTY = "tag-name.element-batch-size";
+  private static final int DEFAULT_BATCH_SIZE = 1024;
+
   private XmlEventProcessorContext context;
-  private JsonObject jobIdMessage;
-  private MessageProducer<JsonObject> beginElementProducer;
-  private String endDocumentAddress;
+  private String beginElementAddress;
+  private int batchSize;
+  private boolean approximate;
+  private ElementBatch batch;
+  private final Counter creditStalls;
 
   // Constructor
   public TagNameXmlEventProcessor(XmlEventProcessorContext context) {
     assert context != null : "context must not be null";
     this.context = context;
 
-    this.jobIdMessage = new JsonObject().put("job-id", this.context.getId());
+    var batchSizeProperty = this.context.getProperty(BATCH_SIZE_PROPERTY);
+    this.batchSize =
+        batchSizeProperty != null
+            ? Math.max(1, Integer.parseInt(batchSizeProperty))
+            : DEFAULT_BATCH_SIZE;
+    this.approximate =
+        TagNameProcessorVerticle.APPROXIMATE_MODE.equals(
+            this.context.getProperty(TagNameProcessorVerticle.MODE_PROPERTY));
+    this.batch = this.newBatch();
+    this.creditStalls =
+        Counter.builder("processor.tag-name.credit.stalls")
+            .description("Times a job paused until the processor verticle granted more credits")
+            .register(ShredMetrics.registry());
+    if (!this.approximate) {
+      this.context.setCheckpointHandler(this::checkpoint);
+    }
   }
 
+  // XmlEventProcessor
   @Override
-  public void process(XMLEvent xmlEvent) {
+  public boolean process(XMLEvent xmlEvent) {
     assert xmlEvent != null : "xmlEvent must not be null.";
 
-    boolean processNextEvent = true;
-
     switch (xmlEvent.getEventType()) {
       case XMLEvent.START_DOCUMENT:
-        LOGGER.debug("Received START_DOCUMENT event.");
-        this.context
-            .getEventBus()
-            .request(
-                "processor.tag-name.begin",
-                jobIdMessage,
-                reply -> {
-                  if (reply.succeeded()) {
-                    LOGGER.debug(
-                        "Received reply from tag name processor verticle; recording private addresses.");
-                    JsonObject body = (JsonObject) reply.result().body();
-                    var beginElementAddress = body.getString("begin-element-address");
-                    this.beginElementProducer =
-                        this.context.getEventBus().sender(beginElementAddress);
-
-                    this.endDocumentAddress = body.getString("end-address");
-
-                    // Process the next event.
-                    this.context.getEventBus().send(this.context.getNextAddress(), jobIdMessage);
-                  } else {
-                    // We've got an error; terminate processing.
-                    this.context
-                        .getEventBus()
-                        .send(
-                            this.context.getErrorAddress(),
-                            new JsonObject()
-                                .put("job-id", this.context.getId())
-                                .put(
-                                    "error-message",
-                                    "Processor verticle rejected attempt to begin processing."));
-                  }
-                });
-
-        // Don't advance to the next element; this will be done when we receive a reply
-        processNextEvent = false;
-        break;
+        return this.beginDocument();
       case XMLEvent.START_ELEMENT:
-        LOGGER.debug("Received START_ELEMENT event.");
-        var element = xmlEvent.asStartElement();
-
-        if (!this.beginElementProducer.writeQueueFull()) {
-          this.beginElementProducer.write(
-              new JsonObject()
-                  .put("job-id", this.context.getId())
-                  .put("element-name", element.getName().getLocalPart()));
-        } else {
-          LOGGER.debug("Write queue is full; installing drain handler.");
-          this.beginElementProducer.drainHandler(
-              handler -> {
-                LOGGER.debug("Drain handler executing");
-
-                this.beginElementProducer.write(
-                    new JsonObject()
-                        .put("job-id", this.context.getId())
-                        .put("element-name", element.getName().getLocalPart()));
-
-                // Restart normal processing
-                this.context.getEventBus().send(this.context.getNextAddress(), jobIdMessage);
-              });
+        var localName = xmlEvent.asStartElement().getName().getLocalPart();
+        if (this.approximate) {
+          this.batch.add(localName);
+          return this.afterElement();
         }
-        break;
+        return this.beginElement(SymbolTable.shared().intern(localName));
       case XMLEvent.END_DOCUMENT:
-        LOGGER.debug("Received END_DOCUMENT event.");
-        this.context
-            .getEventBus()
-            .send(this.endDocumentAddress, new JsonObject().put("job-id", this.context.getId()));
-
-        // Send the end event
-        this.context.getEventBus().send(this.context.getFinishedAddress(), jobIdMessage);
-        processNextEvent = false;
-        break;
+        return this.endDocument();
+      default:
+        return true;
+    }
+  }
+
+  // XmlStreamProcessor
+  @Override
+  public boolean process(XmlCursor cursor) {
+    assert cursor != null : "cursor must not be null.";
+
+    switch (cursor.getEventType()) {
+      case XMLStreamConstants.START_DOCUMENT:
+        return this.beginDocument();
+      case XMLStreamConstants.START_ELEMENT:
+        if (this.approximate) {
+          this.batch.add(cursor.getLocalName());
+          return this.afterElement();
+        }
+        return this.beginElement(cursor.getLocalNameSymbol());
+      case XMLStreamConstants.END_DOCUMENT:
+        return this.endDocument();
+      default:
+        return true;
     }
+  }
+
+  // Event handlers
+  private boolean beginDocument() {
+    LOGGER.debug("Received START_DOCUMENT event.");
+    // Parts of a split document tell the processor verticle which job to merge into.
+    var options =
+        new DeliveryOptions()
+            .addHeader(
+                XmlEventProcessorContext.CREDIT_ADDRESS_PROPERTY, this.context.getCreditAddress())
+            .addHeader(
+                XmlEventProcessorContext.ERROR_ADDRESS_PROPERTY, this.context.getErrorAddress());
+    if (this.approximate) {
+      options.addHeader(
+          TagNameProcessorVerticle.MODE_PROPERTY, TagNameProcessorVerticle.APPROXIMATE_MODE);
+      for (String property : TagNameProcessorVerticle.SKETCH_PROPERTIES) {
+        var value = this.context.getProperty(property);
+        if (value != null) {
+          options.addHeader(property, value);
+        }
+      }
+    }
+    if (this.context.getRestoredState() != null) {
+      options.addHeader(
+          TagNameProcessorVerticle.RESTORED_STATE_HEADER,
+          this.context.getRestoredState().encode());
+    }
+    var parentJobId = this.context.getProperty(XmlEventProcessorContext.PARENT_JOB_ID_PROPERTY);
+    if (parentJobId != null) {
+      options
+          .addHeader(XmlEventProcessorContext.PARENT_JOB_ID_PROPERTY, parentJobId)
+          .addHeader(
+              XmlEventProcessorContext.PART_COUNT_PROPERTY,
+              this.context.getProperty(XmlEventProcessorContext.PART_COUNT_PROPERTY));
+    }
+
+    // In a cluster, the job's elements stay on this node if one of its processor verticles can
+    // take the job.
+    this.requestBegin(options.setLocalOnly(ClusterNode.getNumber() > 0));
+
+    // Don't advance to the next element; this will be done when we receive a reply
+    this.context.suspend();
+    return false;
+  }
+
+  private boolean beginElement(int elementSymbol) {
+    this.batch.add(elementSymbol);
+    return this.afterElement();
+  }
 
-    if (processNextEvent) {
-      this.context.getEventBus().send(this.context.getNextAddress(), jobIdMessage);
+  private boolean afterElement() {
+    if (!this.batch.isFull()) {
+      return true;
     }
+
+    int size = this.batch.size();
+    this.flush();
+    if (!this.context.spendCredits(size)) {
+      // Stop the pump until the processor verticle grants more credits.
+      LOGGER.debug("Credits exhausted; waiting for the processor verticle.");
+      this.creditStalls.increment();
+      return false;
+    }
+
+    return true;
+  }
+
+  private boolean endDocument() {
+    LOGGER.debug("Received END_DOCUMENT event.");
+
+    // The last batch, even if empty, tells the processor verticle the document is complete. It
+    // is sent from the same context as the batches before it, so it cannot overtake them.
+    this.batch.setLast(true);
+    this.flush();
+
+    // Send the end event
+    this.context
+        .getEventBus()
+        .send(this.context.getFinishedAddress(), ShredEvent.finished(this.context.getId()));
+    return false;
+  }
+
+  private void checkpoint(Promise<JsonObject> promise) {
+    if (this.beginElementAddress == null) {
+      promise.fail("The processor verticle has not yet accepted job " + this.context.getId() + ".");
+      return;
+    }
+
+    // The partial batch travels with the request and spends no credits; the reply returns none.
+    LOGGER.debug("Checkpointing after a batch of {} element(s).", this.batch.size());
+    var batch = this.batch;
+    this.batch = this.newBatch();
+    this.context
+        .getEventBus()
+        .<JsonObject>request(
+            this.beginElementAddress,
+            batch,
+            reply -> {
+              if (reply.succeeded()) {
+                promise.complete(reply.result().body());
+              } else {
+                promise.fail(reply.cause());
+              }
+            });
+  }
+
+  private void requestBegin(DeliveryOptions options) {
+    this.context
+        .getEventBus()
+        .request(
+            "processor.tag-name.begin",
+            ShredEvent.beginJob(this.context.getId()),
+            options,
+            reply -> {
+              if (reply.succeeded()) {
+                LOGGER.debug(
+                    "Received reply from tag name processor verticle; "
+                        + "recording private addresses.");
+                JsonObject body = (JsonObject) reply.result().body();
+                this.beginElementAddress = body.getString("begin-element-address");
+
+                // The initial window resumes the job.
+                this.context.grantCredits(body.getLong("credits"));
+              } else if (options.isLocalOnly() && isRefusedLocally(reply.cause())) {
+                LOGGER.debug(
+                    "No processor verticle on this node took job {}; asking the cluster.",
+                    this.context.getId());
+                this.requestBegin(new DeliveryOptions(options).setLocalOnly(false));
+              } else {
+                // We've got an error; terminate processing.
+                this.context
+                    .getEventBus()
+                    .send(
+                        this.context.getErrorAddress(),
+                        ShredEvent.error(
+                            this.context.getId(),
+                            "Processor verticle rejected attempt to begin processing: "
+                                + reply.cause().getMessage()));
+              }
+            });
+  }
+
+  private static boolean isRefusedLocally(Throwable cause) {
+    if (!(cause instanceof ReplyException)) {
+      return false;
+    }
+
+    var failure = (ReplyException) cause;
+    return failure.failureType() == ReplyFailure.NO_HANDLERS
+        || (failure.failureType() == ReplyFailure.RECIPIENT_FAILURE
+            && failure.failureCode() == TagNameProcessorVerticle.STATE_FULL);
+  }
+
+  private ElementBatch newBatch() {
+    return new ElementBatch(this.context.getId(), this.batchSize, this.approximate);
+  }
+
+  private void flush() {
+    LOGGER.debug("Flushing batch of {} element(s).", this.batch.size());
+    this.context.getEventBus().send(this.beginElementAddress, this.batch);
+    this.batch = this.newBatch();
   }
 }
@@ -3,6 +3,8 @@ package io.miscellanea.vertx.example;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.xml.stream.XMLStreamConstants;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -18,6 +20,11 @@ public class TagNameXmlEventProcessorProvider implements XmlEventProcessorProvid
   private static final String TAG_NAME_CONTENT_HANDLER_PROVIDER =
       "Tag Name Content Handler Provider";
 
+  /** The processor property listing the comma-separated paths of the elements to count. */
+  public static final String PATHS_PROPERTY = "tag-name.paths";
+
+  private static final String DEFAULT_PATHS = "//*";
+
   // Constructors
   public TagNameXmlEventProcessorProvider() {}
 
@@ -39,4 +46,50 @@ public class TagNameXmlEventProcessorProvider implements XmlEventProcessorProvid
     LOGGER.debug("Creating new content handler for job {}.", context.getId());
     return Optional.ofNullable(new TagNameXmlEventProcessor(context));
   }
+
+  @Override
+  public Optional<XmlStreamProcessor> provideStreamProcessor(XmlEventProcessorContext context) {
+    assert context != null : "context must not be null.";
+
+    LOGGER.debug("Creating new cursor processor for job {}.", context.getId());
+    return Optional.of(new TagNameXmlEventProcessor(context));
+  }
+
+  @Override
+  public XmlSubscription getSubscription(XmlEventProcessorContext context) {
+    assert context != null : "context must not be null.";
+
+    // Only element names are counted, so text, comments and end tags are never delivered.
+    var paths = context.getProperty(PATHS_PROPERTY);
+    return XmlSubscription.of(
+        List.of(XMLStreamConstants.START_ELEMENT),
+        (paths != null ? paths : DEFAULT_PATHS).trim().split("\\s*,\\s*"));
+  }
+
+  @Override
+  public Optional<XmlResultBinding> getResultBinding(XmlEventProcessorContext context) {
+    assert context != null : "context must not be null.";
+
+    // The counts depend only on the document, the paths counted and how they are counted.
+    var address = context.getProperty(TagNameProcessorVerticle.RESULT_ADDRESS_PROPERTY);
+    var paths = context.getProperty(PATHS_PROPERTY);
+    var variant = new StringBuilder(paths != null ? paths.trim() : DEFAULT_PATHS);
+    boolean approximate =
+        TagNameProcessorVerticle.APPROXIMATE_MODE.equals(
+            context.getProperty(TagNameProcessorVerticle.MODE_PROPERTY));
+    if (approximate) {
+      variant.append('|').append(TagNameProcessorVerticle.APPROXIMATE_MODE);
+      TagNameProcessorVerticle.SKETCH_PROPERTIES.forEach(
+          property -> variant.append('|').append(context.getProperty(property)));
+    }
+
+    return Optional.of(
+        XmlResultBinding.of(
+            address != null && !address.isBlank()
+                ? address
+                : TagNameProcessorVerticle.JOB_FINISHED_ADDRESS,
+            variant.toString(),
+            result -> ((TagNameResult) result).toJson(),
+            approximate ? TagSketch::fromJson : TagStats::fromJson));
+  }
 }
@@ -0,0 +1,382 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Approximate per-job tag name statistics in a fixed footprint, for documents whose element names
+ * are too many to count exactly. A count-min sketch of <code>e / error</code> columns and <code>
+ * ln(1 / (1 - confidence))</code> rows estimates how often any name was seen: never less than the
+ * true count and, with the given confidence, by no more than <code>error</code> times the total.
+ * The most frequent names are tracked by a space-saving summary of <code>top-k</code> counters kept
+ * in a min-heap. A monitored name's counter is incremented exactly; an unmonitored name takes over
+ * the smallest counter once the sketch's estimate for it exceeds that counter, and starts from the
+ * estimate rather than from the evicted count plus one, so every reported count stays within the
+ * sketch's error bound.
+ *
+ * <p>Names are never interned, so memory depends only on the sketch's dimensions and <code>top-k
+ * </code>, not on how many distinct names a document has.
+ *
+ * @author Jason Hallford
+ */
+public class TagSketch implements TagNameResult {
+  // Fields
+  private static final long OBJECT_OVERHEAD = 256L;
+  private static final long ENTRY_OVERHEAD = 96L;
+
+  private final int topK;
+  private final double error;
+  private final double confidence;
+  private final int width;
+  private final int depth;
+  private final long[] table;
+  private final String[] names;
+  private final long[] counts;
+  private final Map<String, Integer> positions;
+  private int size = 0;
+  private long nameChars = 0L;
+  private long total = 0L;
+  public long startMs;
+  public long endMs;
+
+  // Constructors
+
+  /**
+   * Creates an empty sketch.
+   *
+   * @param topK The number of most frequent names to report.
+   * @param error The largest overestimate of any count, as a fraction of the total.
+   * @param confidence The probability that no estimate exceeds the error bound.
+   * @throws IllegalArgumentException if a parameter is out of range.
+   */
+  public TagSketch(int topK, double error, double confidence) {
+    if (topK < 1) {
+      throw new IllegalArgumentException("top-k must be at least 1.");
+    }
+    if (!(error > 0.0 && error < 1.0)) {
+      throw new IllegalArgumentException("error must be between 0 and 1.");
+    }
+    if (!(confidence > 0.0 && confidence < 1.0)) {
+      throw new IllegalArgumentException("confidence must be between 0 and 1.");
+    }
+
+    this.topK = topK;
+    this.error = error;
+    this.confidence = confidence;
+    this.width = (int) Math.ceil(Math.E / error);
+    this.depth = Math.max(1, (int) Math.ceil(Math.log(1.0 / (1.0 - confidence))));
+    this.table = new long[this.width * this.depth];
+    this.names = new String[topK];
+    this.counts = new long[topK];
+    this.positions = new HashMap<>(topK * 2);
+  }
+
+  // Properties
+  public int getTopK() {
+    return topK;
+  }
+
+  public double getError() {
+    return error;
+  }
+
+  public double getConfidence() {
+    return confidence;
+  }
+
+  public long getTotal() {
+    return total;
+  }
+
+  /**
+   * Gets the sketch's cells, row by row. The array is live; it is exposed for codecs.
+   *
+   * @return The cells.
+   */
+  long[] getTable() {
+    return table;
+  }
+
+  // Methods
+
+  /**
+   * Records one observation of an element name.
+   *
+   * @param name The element's local name.
+   */
+  public void add(String name) {
+    long hash = hash(name);
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32);
+
+    long estimate = Long.MAX_VALUE;
+    for (int row = 0; row < this.depth; row++) {
+      int cell = row * this.width + Math.floorMod(h1 + row * h2, this.width);
+      estimate = Math.min(estimate, ++this.table[cell]);
+    }
+    this.total++;
+
+    this.offer(name, estimate);
+  }
+
+  /**
+   * Records the first <code>length</code> names in an array.
+   *
+   * @param names The element names.
+   * @param length The number of valid entries in <code>names</code>.
+   */
+  public void addAll(String[] names, int length) {
+    for (int i = 0; i < length; i++) {
+      this.add(names[i]);
+    }
+  }
+
+  /**
+   * Estimates how often a name was seen.
+   *
+   * @param name The element's local name.
+   * @return The estimate, never less than the true count.
+   */
+  public long estimate(String name) {
+    long hash = hash(name);
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32);
+
+    long estimate = Long.MAX_VALUE;
+    for (int row = 0; row < this.depth; row++) {
+      int cell = row * this.width + Math.floorMod(h1 + row * h2, this.width);
+      estimate = Math.min(estimate, this.table[cell]);
+    }
+    return estimate;
+  }
+
+  /**
+   * Merges another job's sketch into this one, as when combining the parts of a split document.
+   * The sketches' cells are added, and the merged top names are chosen from both summaries by their
+   * estimates in the merged sketch. The merged time span covers both.
+   *
+   * @param other The sketch to merge, which must have the same parameters.
+   */
+  public void merge(TagSketch other) {
+    if (other.topK != this.topK || other.width != this.width || other.depth != this.depth) {
+      throw new IllegalArgumentException("Sketches with different parameters cannot be merged.");
+    }
+
+    for (int cell = 0; cell < this.table.length; cell++) {
+      this.table[cell] += other.table[cell];
+    }
+    this.total += other.total;
+
+    var candidates = new HashSet<String>(this.positions.keySet());
+    candidates.addAll(other.positions.keySet());
+    var estimates = new HashMap<String, Long>(candidates.size() * 2);
+    candidates.forEach(name -> estimates.put(name, this.estimate(name)));
+
+    this.positions.clear();
+    this.size = 0;
+    this.nameChars = 0L;
+    estimates.entrySet().stream()
+        .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+        .limit(this.topK)
+        .forEach(entry -> this.putEntry(entry.getKey(), entry.getValue()));
+
+    this.startMs = this.startMs == 0L ? other.startMs : Math.min(this.startMs, other.startMs);
+    this.endMs = Math.max(this.endMs, other.endMs);
+  }
+
+  /**
+   * Estimates the heap the sketch occupies, which is fixed by its parameters apart from the lengths
+   * of the names it monitors.
+   *
+   * @return The estimate, in bytes.
+   */
+  public long getEstimatedSize() {
+    return OBJECT_OVERHEAD
+        + (long) this.table.length * Long.BYTES
+        + this.topK * ENTRY_OVERHEAD
+        + 2L * this.nameChars;
+  }
+
+  /**
+   * Gets the monitored names and their estimated counts, most frequent first.
+   *
+   * @return A map of element name to estimated count.
+   */
+  public Map<String, Long> toMap() {
+    var entries = new ArrayList<Integer>(this.size);
+    for (int i = 0; i < this.size; i++) {
+      entries.add(i);
+    }
+    entries.sort(Comparator.comparingLong((Integer i) -> this.counts[i]).reversed());
+
+    var map = new LinkedHashMap<String, Long>();
+    entries.forEach(i -> map.put(this.names[i], this.counts[i]));
+    return map;
+  }
+
+  /**
+   * Converts the sketch to JSON, with the elapsed time in milliseconds, the estimated counts of the
+   * top names, the exact total, and the bound, in elements, that no count exceeds its true value by
+   * with the sketch's confidence.
+   *
+   * @return The JSON object.
+   */
+  @Override
+  public JsonObject toJson() {
+    var counts = new JsonObject();
+    this.toMap().forEach(counts::put);
+
+    return new JsonObject()
+        .put("elapsed-ms", this.endMs - this.startMs)
+        .put("approximate", true)
+        .put("counts", counts)
+        .put("total-elements", this.total)
+        .put("top-k", this.topK)
+        .put("error", this.error)
+        .put("confidence", this.confidence)
+        .put("error-bound", this.getErrorBound());
+  }
+
+  /**
+   * Restores a sketch's summary from the JSON written by <code>toJson</code>: its parameters, top
+   * names and total. The sketch's cells are not part of the JSON, so the restored sketch can be
+   * reported but should not be added to or merged.
+   *
+   * @param json The JSON object.
+   * @return The sketch.
+   */
+  public static TagSketch fromJson(JsonObject json) {
+    var sketch =
+        new TagSketch(
+            json.getInteger("top-k"), json.getDouble("error"), json.getDouble("confidence"));
+    json.getJsonObject("counts", new JsonObject())
+        .forEach(
+            count -> sketch.putEntry(count.getKey(), ((Number) count.getValue()).longValue()));
+    sketch.setTotal(json.getLong("total-elements", 0L));
+
+    return sketch;
+  }
+
+  @Override
+  public String toString() {
+    var builder = new StringBuilder();
+
+    builder.append("[time = ").append((endMs - startMs) / 1000).append("sec, ");
+    builder.append("top ").append(this.size).append(" of ").append(this.total).append(": ");
+    for (var entry : this.toMap().entrySet()) {
+      builder.append(entry.getKey()).append(" ~ ").append(entry.getValue()).append(", ");
+    }
+    builder.append("error bound = ").append(this.getErrorBound()).append("]");
+
+    return builder.toString();
+  }
+
+  /**
+   * Adds a monitored name with a count, as when decoding a sketch. The name is ignored if every
+   * counter is taken.
+   *
+   * @param name The element's local name.
+   * @param count The name's count.
+   */
+  void putEntry(String name, long count) {
+    if (this.size == this.topK || this.positions.containsKey(name)) {
+      return;
+    }
+
+    int position = this.size++;
+    this.names[position] = name;
+    this.counts[position] = count;
+    this.positions.put(name, position);
+    this.nameChars += name.length();
+    this.siftUp(position);
+  }
+
+  void setTotal(long total) {
+    this.total = total;
+  }
+
+  // Helper methods
+  private long getErrorBound() {
+    return (long) Math.ceil(this.error * this.total);
+  }
+
+  private void offer(String name, long estimate) {
+    var position = this.positions.get(name);
+    if (position != null) {
+      this.counts[position]++;
+      this.siftDown(position);
+    } else if (this.size < this.topK) {
+      this.putEntry(name, estimate);
+    } else if (estimate > this.counts[0]) {
+      this.positions.remove(this.names[0]);
+      this.nameChars += name.length() - this.names[0].length();
+      this.names[0] = name;
+      this.counts[0] = estimate;
+      this.positions.put(name, 0);
+      this.siftDown(0);
+    }
+  }
+
+  private void siftUp(int position) {
+    while (position > 0) {
+      int parent = (position - 1) / 2;
+      if (this.counts[parent] <= this.counts[position]) {
+        return;
+      }
+      this.swap(position, parent);
+      position = parent;
+    }
+  }
+
+  private void siftDown(int position) {
+    while (true) {
+      int smallest = position;
+      int left = 2 * position + 1;
+      int right = left + 1;
+      if (left < this.size && this.counts[left] < this.counts[smallest]) {
+        smallest = left;
+      }
+      if (right < this.size && this.counts[right] < this.counts[smallest]) {
+        smallest = right;
+      }
+      if (smallest == position) {
+        return;
+      }
+      this.swap(position, smallest);
+      position = smallest;
+    }
+  }
+
+  private void swap(int a, int b) {
+    var name = this.names[a];
+    this.names[a] = this.names[b];
+    this.names[b] = name;
+
+    long count = this.counts[a];
+    this.counts[a] = this.counts[b];
+    this.counts[b] = count;
+
+    this.positions.put(this.names[a], a);
+    this.positions.put(this.names[b], b);
+  }
+
+  /** A 64-bit FNV-1a hash of a name, finalized so that every bit depends on every character. */
+  private static long hash(String name) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < name.length(); i++) {
+      hash = (hash ^ name.charAt(i)) * 0x100000001b3L;
+    }
+
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    return hash ^ (hash >>> 33);
+  }
+}
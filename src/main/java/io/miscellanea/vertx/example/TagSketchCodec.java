@@ -0,0 +1,108 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageCodec;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Event bus codec for <code>TagSketch</code>. Local delivery passes the sketch through untouched;
+ * the sender must not modify it afterwards. On the wire, the sketch's cells travel with its
+ * summary, so that parts of a split job can still be merged:
+ *
+ * <pre>
+ *   start-ms    : long
+ *   end-ms      : long
+ *   top-k       : int
+ *   error       : double
+ *   confidence  : double
+ *   total       : long
+ *   cell-count  : int
+ *   cells       : cell-count x long
+ *   name-count  : int
+ *   entries     : name-count x (length : int, UTF-8 bytes, count : long)
+ * </pre>
+ *
+ * @author Jason Hallford
+ */
+public class TagSketchCodec implements MessageCodec<TagSketch, TagSketch> {
+  // Fields
+  public static final String NAME = "tag-sketch";
+
+  // Constructors
+  public TagSketchCodec() {}
+
+  // MessageCodec
+  @Override
+  public void encodeToWire(Buffer buffer, TagSketch sketch) {
+    buffer
+        .appendLong(sketch.startMs)
+        .appendLong(sketch.endMs)
+        .appendInt(sketch.getTopK())
+        .appendDouble(sketch.getError())
+        .appendDouble(sketch.getConfidence())
+        .appendLong(sketch.getTotal());
+
+    var table = sketch.getTable();
+    buffer.appendInt(table.length);
+    for (long cell : table) {
+      buffer.appendLong(cell);
+    }
+
+    var counts = sketch.toMap();
+    buffer.appendInt(counts.size());
+    counts.forEach(
+        (name, count) -> {
+          byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+          buffer.appendInt(bytes.length).appendBytes(bytes).appendLong(count);
+        });
+  }
+
+  @Override
+  public TagSketch decodeFromWire(int pos, Buffer buffer) {
+    long startMs = buffer.getLong(pos);
+    long endMs = buffer.getLong(pos + 8);
+    var sketch =
+        new TagSketch(
+            buffer.getInt(pos + 16), buffer.getDouble(pos + 20), buffer.getDouble(pos + 28));
+    sketch.startMs = startMs;
+    sketch.endMs = endMs;
+    sketch.setTotal(buffer.getLong(pos + 36));
+    pos += 44;
+
+    var table = sketch.getTable();
+    int cellCount = buffer.getInt(pos);
+    pos += 4;
+    for (int i = 0; i < cellCount; i++, pos += 8) {
+      table[i] = buffer.getLong(pos);
+    }
+
+    int nameCount = buffer.getInt(pos);
+    pos += 4;
+    for (int i = 0; i < nameCount; i++) {
+      int length = buffer.getInt(pos);
+      var name = buffer.getString(pos + 4, pos + 4 + length, "UTF-8");
+      pos += 4 + length;
+
+      sketch.putEntry(name, buffer.getLong(pos));
+      pos += 8;
+    }
+
+    return sketch;
+  }
+
+  @Override
+  public TagSketch transform(TagSketch sketch) {
+    return sketch;
+  }
+
+  @Override
+  public String name() {
+    return NAME;
+  }
+
+  @Override
+  public byte systemCodecID() {
+    return -1;
+  }
+}
@@ -1,18 +1,174 @@
 package io.miscellanea.vertx.example;
 
-import java.util.HashMap;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
-public class TagStats {
+/**
+ * Per-job tag name statistics. Counts are kept in a growable <code>long[]</code> indexed by element
+ * symbol, so recording an observation is an array increment; names are only resolved, through the
+ * symbol table, when results are reported.
+ *
+ * @author Jason Hallford
+ */
+public class TagStats implements TagNameResult {
   // Fields
-  public Map<String, Counter> counters = new HashMap<>();
+  private static final int INITIAL_CAPACITY = 256;
+  private static final long OBJECT_OVERHEAD = 64L;
+
+  private final SymbolTable symbols;
+  private long[] counts = new long[INITIAL_CAPACITY];
   public long startMs;
   public long endMs;
 
   // Constructors
-  public TagStats() {}
+  public TagStats() {
+    this(SymbolTable.shared());
+  }
+
+  public TagStats(SymbolTable symbols) {
+    assert symbols != null : "symbols must not be null.";
+    this.symbols = symbols;
+  }
 
   // Methods
+
+  /**
+   * Increments the count for a single element symbol.
+   *
+   * @param symbol The element's symbol.
+   */
+  public void increment(int symbol) {
+    this.ensureCapacity(symbol + 1);
+    this.counts[symbol]++;
+  }
+
+  /**
+   * Increments the counts for the first <code>length</code> symbols in an array.
+   *
+   * @param symbols The element symbols.
+   * @param length The number of valid entries in <code>symbols</code>.
+   */
+  public void incrementAll(int[] symbols, int length) {
+    // The array covers the job's own symbols, not every name the shared table has seen.
+    int maxSymbol = -1;
+    for (int i = 0; i < length; i++) {
+      maxSymbol = Math.max(maxSymbol, symbols[i]);
+    }
+    this.ensureCapacity(maxSymbol + 1);
+
+    var local = this.counts;
+    for (int i = 0; i < length; i++) {
+      local[symbols[i]]++;
+    }
+  }
+
+  /**
+   * Adds a count to an element symbol.
+   *
+   * @param symbol The element's symbol.
+   * @param count The count to add.
+   */
+  public void add(int symbol, long count) {
+    this.ensureCapacity(symbol + 1);
+    this.counts[symbol] += count;
+  }
+
+  /**
+   * Merges another job's statistics into these, as when combining the parts of a split document.
+   * The merged time span covers both.
+   *
+   * @param other The statistics to merge.
+   */
+  public void merge(TagStats other) {
+    assert other.symbols == this.symbols : "other must share this instance's symbol table.";
+
+    this.ensureCapacity(other.counts.length);
+    for (int symbol = 0; symbol < other.counts.length; symbol++) {
+      this.counts[symbol] += other.counts[symbol];
+    }
+
+    this.startMs = this.startMs == 0L ? other.startMs : Math.min(this.startMs, other.startMs);
+    this.endMs = Math.max(this.endMs, other.endMs);
+  }
+
+  /**
+   * Gets the count for an element symbol.
+   *
+   * @param symbol The element's symbol.
+   * @return The count.
+   */
+  public long getCount(int symbol) {
+    return symbol >= 0 && symbol < this.counts.length ? this.counts[symbol] : 0L;
+  }
+
+  /**
+   * Estimates the heap the statistics occupy. The count array dominates, and grows to the highest
+   * symbol the job has counted.
+   *
+   * @return The estimate, in bytes.
+   */
+  public long getEstimatedSize() {
+    return OBJECT_OVERHEAD + (long) this.counts.length * Long.BYTES;
+  }
+
+  /**
+   * Resolves the non-zero counts to element names.
+   *
+   * @return A map of element name to count.
+   */
+  public Map<String, Long> toMap() {
+    var map = new LinkedHashMap<String, Long>();
+    for (int symbol = 0; symbol < this.counts.length; symbol++) {
+      if (this.counts[symbol] != 0L) {
+        map.put(this.symbols.nameOf(symbol), this.counts[symbol]);
+      }
+    }
+
+    return map;
+  }
+
+  /**
+   * Converts the statistics to JSON, with the elapsed time in milliseconds, the counts in symbol
+   * order, and their total.
+   *
+   * @return The JSON object.
+   */
+  @Override
+  public JsonObject toJson() {
+    var counts = new JsonObject();
+    long totalElements = 0L;
+    for (var entry : this.toMap().entrySet()) {
+      counts.put(entry.getKey(), entry.getValue());
+      totalElements += entry.getValue();
+    }
+
+    return new JsonObject()
+        .put("elapsed-ms", this.endMs - this.startMs)
+        .put("counts", counts)
+        .put("total-elements", totalElements);
+  }
+
+  /**
+   * Restores statistics from the JSON written by <code>toJson</code>. Only the counts are read, so
+   * the restored statistics span no time.
+   *
+   * @param json The JSON object.
+   * @return The statistics, in the shared symbol table.
+   */
+  public static TagStats fromJson(JsonObject json) {
+    var stats = new TagStats();
+    json.getJsonObject("counts", new JsonObject())
+        .forEach(
+            count ->
+                stats.add(
+                    stats.symbols.intern(count.getKey()), ((Number) count.getValue()).longValue()));
+
+    return stats;
+  }
+
   @Override
   public String toString() {
     var builder = new StringBuilder();
@@ -20,13 +176,19 @@ public class TagStats {
     builder.append("[time = ").append((endMs - startMs) / 1000).append("sec, ");
 
     long totalElements = 0L;
-    for (String name : this.counters.keySet()) {
-      var counter = this.counters.get(name);
-      builder.append(name).append(" = ").append(counter.getValue()).append(", ");
-      totalElements += counter.getValue();
+    for (var entry : this.toMap().entrySet()) {
+      builder.append(entry.getKey()).append(" = ").append(entry.getValue()).append(", ");
+      totalElements += entry.getValue();
     }
     builder.append("total elements = ").append(totalElements).append("]");
 
     return builder.toString();
   }
+
+  // Helper methods
+  private void ensureCapacity(int capacity) {
+    if (capacity > this.counts.length) {
+      this.counts = Arrays.copyOf(this.counts, Math.max(capacity, this.counts.length * 2));
+    }
+  }
 }
@@ -0,0 +1,77 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.MessageCodec;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Event bus codec for <code>TagStats</code>. Local delivery passes the statistics through untouched;
+ * the sender must not modify them afterwards. On the wire, counts are keyed by element name:
+ *
+ * <pre>
+ *   start-ms    : long
+ *   end-ms      : long
+ *   name-count  : int
+ *   entries     : name-count x (length : int, UTF-8 bytes, count : long)
+ * </pre>
+ *
+ * @author Jason Hallford
+ */
+public class TagStatsCodec implements MessageCodec<TagStats, TagStats> {
+  // Fields
+  public static final String NAME = "tag-stats";
+
+  // Constructors
+  public TagStatsCodec() {}
+
+  // MessageCodec
+  @Override
+  public void encodeToWire(Buffer buffer, TagStats stats) {
+    var counts = stats.toMap();
+
+    buffer.appendLong(stats.startMs).appendLong(stats.endMs).appendInt(counts.size());
+    counts.forEach(
+        (name, count) -> {
+          byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+          buffer.appendInt(bytes.length).appendBytes(bytes).appendLong(count);
+        });
+  }
+
+  @Override
+  public TagStats decodeFromWire(int pos, Buffer buffer) {
+    var symbols = SymbolTable.shared();
+    var stats = new TagStats(symbols);
+
+    stats.startMs = buffer.getLong(pos);
+    stats.endMs = buffer.getLong(pos + 8);
+    int nameCount = buffer.getInt(pos + 16);
+    pos += 20;
+
+    for (int i = 0; i < nameCount; i++) {
+      int length = buffer.getInt(pos);
+      var name = buffer.getString(pos + 4, pos + 4 + length, "UTF-8");
+      pos += 4 + length;
+
+      stats.add(symbols.intern(name), buffer.getLong(pos));
+      pos += 8;
+    }
+
+    return stats;
+  }
+
+  @Override
+  public TagStats transform(TagStats stats) {
+    return stats;
+  }
+
+  @Override
+  public String name() {
+    return NAME;
+  }
+
+  @Override
+  public byte systemCodecID() {
+    return -1;
+  }
+}
@@ -0,0 +1,224 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.json.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A shredder that runs each job as a plain blocking pull loop on a virtual thread of its own,
+ * instead of as a chain of <code>nextElement</code> messages. The verticle only starts and ends
+ * jobs; a job's thread opens its document, reads it and calls the processor directly, and parks
+ * while the processor applies backpressure. Thousands of jobs may be in flight at the cost of very
+ * few platform threads, and no message is sent per batch of events.
+ *
+ * <p>Processors keep the same contract, and while a job runs, its processors and their contexts
+ * are confined to the job's thread. Credit grants, resumptions and the handlers processors
+ * register through their context's event bus are queued to the thread and run between events, so
+ * what a processor hands to Vert.x is still bounded by its credits. Documents are split and
+ * decompressed as in blocking mode, but jobs are not checkpointed.
+ *
+ * @author Jason Hallford
+ */
+public class VirtualThreadShredderVerticle extends XmlShredderVerticle {
+  /** A running job: its thread's inbox and the state that thread owns. */
+  private static final class Job {
+    private final Integer jobId;
+    private final BlockingQueue<Runnable> inbox = new LinkedBlockingQueue<>();
+    private volatile boolean ended = false;
+    private boolean ready = true;
+    private final List<FileChannelInputStream> sources = new ArrayList<>(2);
+    private long bytesReported = 0;
+
+    private Job(Integer jobId) {
+      this.jobId = jobId;
+    }
+
+    private long takeBytesRead() {
+      long read = 0;
+      for (FileChannelInputStream source : this.sources) {
+        read += source.getBytesRead();
+      }
+
+      long delta = read - this.bytesReported;
+      this.bytesReported = read;
+      return delta;
+    }
+  }
+
+  // Fields
+  private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreadShredderVerticle.class);
+
+  private final Map<Integer, Job> jobs = new ConcurrentHashMap<>();
+
+  // Constructors
+  public VirtualThreadShredderVerticle() {}
+
+  // AbstractXmlShredderVerticle
+  @Override
+  protected boolean supportsCheckpoints() {
+    return false;
+  }
+
+  @Override
+  protected EventBus getProcessorEventBus(Integer jobId) {
+    return new ConfinedEventBus(getVertx().eventBus(), task -> this.execute(jobId, task));
+  }
+
+  @Override
+  protected XmlEventProcessorContext createProcessorContext(Integer jobId, int index) {
+    var processorContext = super.createProcessorContext(jobId, index);
+
+    // Resume the job on its own thread rather than through the event bus.
+    processorContext.setResumeHandler(() -> this.sendNext(jobId));
+    return processorContext;
+  }
+
+  @Override
+  protected void deliverCredits(Integer jobId, XmlEventProcessorContext context, long credits) {
+    this.execute(jobId, () -> context.grantCredits(credits));
+  }
+
+  @Override
+  protected void sendNext(Integer jobId) {
+    var job = this.jobs.get(jobId);
+    if (job != null) {
+      job.inbox.add(() -> job.ready = true);
+    }
+  }
+
+  @Override
+  protected void beginShredding(JsonObject request, XmlStreamProcessor processor) {
+    var job = new Job(request.getInteger("job-id"));
+    this.jobs.put(job.jobId, job);
+
+    Thread.ofVirtual()
+        .name("xml-shred-job-" + job.jobId)
+        .start(() -> this.run(job, request, processor));
+  }
+
+  @Override
+  protected void continueShredding(Integer jobId) {
+    // A processor sent the next message itself.
+    this.sendNext(jobId);
+  }
+
+  @Override
+  protected void cleanupContext(Integer jobId) {
+    var job = this.jobs.remove(jobId);
+    if (job != null) {
+      // Wake the thread so it can see that the job has ended; it closes the document itself.
+      job.ended = true;
+      job.inbox.add(() -> {});
+    }
+  }
+
+  // Helper methods
+  private void run(Job job, JsonObject request, XmlStreamProcessor processor) {
+    var pathToFile = request.getString("path-to-file");
+    InputStream inputStream = null;
+    XMLStreamReader xmlStreamReader = null;
+
+    try {
+      inputStream = this.openInput(request, null, job.sources);
+      xmlStreamReader = this.createReader(inputStream);
+    } catch (IOException | XMLStreamException | RuntimeException e) {
+      // An unchecked failure, such as an invalid path, would otherwise end the thread silently.
+      LOGGER.error("Unable to parse document '" + pathToFile + "'.", e);
+      closeQuietly(inputStream);
+      this.sendError(job.jobId, "Unable to parse document: " + e.getMessage());
+      return;
+    }
+
+    LOGGER.info(
+        "Begin shredding for XML document '{}' (job = {}) on a virtual thread.",
+        pathToFile,
+        job.jobId);
+    try {
+      this.pull(job, new XmlCursor(xmlStreamReader, SymbolTable.shared()), processor);
+    } catch (XMLStreamException e) {
+      LOGGER.error("XML stream processing raised an exception.", e);
+      this.sendError(job.jobId, e.getMessage());
+    } catch (InterruptedException e) {
+      LOGGER.debug("Job {} was interrupted.", job.jobId);
+    } catch (RuntimeException e) {
+      LOGGER.error("A processor for job " + job.jobId + " raised an exception.", e);
+      this.sendError(job.jobId, "Processor failed: " + e.getMessage());
+    } finally {
+      try {
+        xmlStreamReader.close();
+      } catch (XMLStreamException e) {
+        LOGGER.warn("Unable to close the XML stream reader for job {}.", job.jobId, e);
+      }
+
+      // Closing a StAX reader does not close its underlying stream.
+      closeQuietly(inputStream);
+    }
+  }
+
+  /**
+   * Reads a job's document, delivering each event to the processor as soon as the previous one has
+   * been accepted. Between events, the thread runs whatever its inbox holds; while the processor
+   * applies backpressure, or once the document has ended, it parks on the inbox until the job is
+   * resumed or cleaned up. Subtrees the processor declines are skipped in the tokenizer.
+   */
+  private void pull(Job job, XmlCursor cursor, XmlStreamProcessor processor)
+      throws XMLStreamException, InterruptedException {
+    int parsed = 0;
+    boolean more = true;
+
+    // A new reader is already positioned on START_DOCUMENT.
+    job.ready = processor.process(cursor);
+    while (!job.ended) {
+      var task = job.inbox.poll();
+      if (task == null && !(job.ready && more)) {
+        this.report(job, parsed);
+        parsed = 0;
+        task = job.inbox.take();
+      }
+      if (task != null) {
+        task.run();
+        continue;
+      }
+
+      more = cursor.hasNext();
+      if (more) {
+        cursor.advance();
+        job.ready = processor.process(cursor);
+        if (job.ready && cursor.isStartElement() && processor.skipsSubtree()) {
+          cursor.skipElement();
+        }
+
+        if (++parsed >= this.batchSize) {
+          this.report(job, parsed);
+          parsed = 0;
+        }
+      }
+    }
+    this.report(job, parsed);
+  }
+
+  private void report(Job job, int parsed) {
+    this.metrics.eventsParsed(parsed);
+    this.metrics.bytesRead(job.takeBytesRead());
+  }
+
+  /** Queues a task to a job's thread; tasks for a job that has ended are dropped. */
+  private void execute(Integer jobId, Runnable task) {
+    var job = this.jobs.get(jobId);
+    if (job != null) {
+      job.inbox.add(task);
+    }
+  }
+}
@@ -0,0 +1,172 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A queue whose elements each belong to a priority class with a weight. Within a class, elements
+ * leave in the order they were queued; across classes, <code>poll</code> interleaves them by
+ * smooth weighted round-robin. While several classes have elements waiting, each is polled in
+ * proportion to its weight, and none is passed over more than its share of the total weight
+ * allows, so a light class is slowed but never starved. A class that empties loses whatever turns
+ * it had accrued.
+ *
+ * <p>Instances are not thread safe.
+ *
+ * @author Jason Hallford
+ */
+public final class WeightedRoundRobinQueue<E> {
+  private static final class PriorityClass<E> {
+    private final String name;
+    private final int weight;
+    private final Deque<E> elements = new ArrayDeque<>();
+    private long current = 0;
+
+    private PriorityClass(String name, int weight) {
+      this.name = name;
+      this.weight = weight;
+    }
+  }
+
+  // Fields
+
+  /** The priority class weights used when none are configured. */
+  private static final JsonObject DEFAULT_WEIGHTS =
+      new JsonObject().put("interactive", 8).put("normal", 4).put("bulk", 1);
+
+  /** The priority class of jobs that name none, or a class that is not configured. */
+  public static final String DEFAULT_PRIORITY = "normal";
+
+  private final Map<String, PriorityClass<E>> classes = new LinkedHashMap<>();
+  private final PriorityClass<E> defaultClass;
+  private int size = 0;
+
+  // Constructors
+
+  /**
+   * Creates an empty queue.
+   *
+   * @param weights The weight of each priority class; weights below 1 are raised to 1.
+   * @param defaultClass The class of elements queued under a name that is not in <code>weights
+   *     </code>; it is added with a weight of 1 if it is not there itself.
+   */
+  public WeightedRoundRobinQueue(Map<String, Integer> weights, String defaultClass) {
+    assert weights != null : "weights must not be null.";
+    assert defaultClass != null : "defaultClass must not be null.";
+
+    weights.forEach(
+        (name, weight) -> this.classes.put(name, new PriorityClass<>(name, Math.max(1, weight))));
+    this.defaultClass =
+        this.classes.computeIfAbsent(defaultClass, name -> new PriorityClass<>(name, 1));
+  }
+
+  // Factory methods
+
+  /**
+   * Creates a queue of jobs from a verticle's configuration: the weights are read from <code>
+   * shred-priority-weights</code> and the default class from <code>shred-default-priority</code>.
+   *
+   * @param config The configuration.
+   * @return The empty queue.
+   */
+  public static <E> WeightedRoundRobinQueue<E> forJobs(JsonObject config) {
+    var weights = new LinkedHashMap<String, Integer>();
+    config
+        .getJsonObject("shred-priority-weights", DEFAULT_WEIGHTS)
+        .forEach(entry -> weights.put(entry.getKey(), ((Number) entry.getValue()).intValue()));
+
+    return new WeightedRoundRobinQueue<>(
+        weights, config.getString("shred-default-priority", DEFAULT_PRIORITY));
+  }
+
+  // Properties
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  // Methods
+
+  /**
+   * Resolves a priority class name.
+   *
+   * @param name The name, which may be <code>null</code>.
+   * @return The name if it is a configured class, or else the default class's name.
+   */
+  public String classify(String name) {
+    return this.resolve(name).name;
+  }
+
+  /** Queues an element behind the others of its class. */
+  public void addLast(String className, E element) {
+    this.resolve(className).elements.addLast(element);
+    this.size++;
+  }
+
+  /** Queues an element ahead of the others of its class. */
+  public void addFirst(String className, E element) {
+    this.resolve(className).elements.addFirst(element);
+    this.size++;
+  }
+
+  /**
+   * Removes an element that is still waiting.
+   *
+   * @param className The element's class.
+   * @param element The element.
+   * @return <code>true</code> if the element was waiting.
+   */
+  public boolean remove(String className, E element) {
+    if (this.resolve(className).elements.remove(element)) {
+      this.size--;
+      return true;
+    }
+
+    return false;
+  }
+
+  /**
+   * Takes the next element: the head of the waiting class whose accrued turns are greatest, after
+   * every waiting class has accrued its weight. The chosen class then gives up the total weight of
+   * the waiting classes.
+   *
+   * @return The element, or <code>null</code> if the queue is empty.
+   */
+  public E poll() {
+    PriorityClass<E> chosen = null;
+    long totalWeight = 0;
+    for (PriorityClass<E> priorityClass : this.classes.values()) {
+      if (priorityClass.elements.isEmpty()) {
+        priorityClass.current = 0;
+        continue;
+      }
+
+      priorityClass.current += priorityClass.weight;
+      totalWeight += priorityClass.weight;
+      if (chosen == null || priorityClass.current > chosen.current) {
+        chosen = priorityClass;
+      }
+    }
+
+    if (chosen == null) {
+      return null;
+    }
+
+    chosen.current -= totalWeight;
+    this.size--;
+    return chosen.elements.pollFirst();
+  }
+
+  // Helper methods
+  private PriorityClass<E> resolve(String name) {
+    var priorityClass = name != null ? this.classes.get(name) : null;
+    return priorityClass != null ? priorityClass : this.defaultClass;
+  }
+}
@@ -0,0 +1,200 @@
+package io.miscellanea.vertx.example;
+
+import com.fasterxml.aalto.AsyncXMLStreamReader;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * A reusable, mutable view of the event on which a shredder's <code>XMLStreamReader</code> is
+ * positioned. One cursor exists per job and is handed to the job's <code>XmlStreamProcessor</code>
+ * for every event, so steady-state shredding allocates nothing on the processor's behalf.
+ *
+ * <p>Element local names are exposed both as strings, which StAX implementations intern in their
+ * own symbol tables, and as dense integer symbols from a <code>SymbolTable</code>. Text content is
+ * exposed as a range over the reader's character buffer.
+ *
+ * @author Jason Hallford
+ */
+public final class XmlCursor {
+  // Fields
+  private static final int UNRESOLVED = -1;
+
+  private final XMLStreamReader reader;
+  private final SymbolTable symbols;
+  private int symbol = UNRESOLVED;
+  private int depth = 0;
+  private int skipDepth = 0;
+
+  // Constructors
+  XmlCursor(XMLStreamReader reader, SymbolTable symbols) {
+    assert reader != null : "reader must not be null.";
+    this.reader = reader;
+
+    assert symbols != null : "symbols must not be null.";
+    this.symbols = symbols;
+  }
+
+  // Shredder operations
+  boolean hasNext() throws XMLStreamException {
+    return this.reader.hasNext();
+  }
+
+  int next() throws XMLStreamException {
+    this.symbol = UNRESOLVED;
+
+    // An element's depth is reported on its END_ELEMENT and dropped when the cursor moves past it.
+    if (this.reader.getEventType() == XMLStreamConstants.END_ELEMENT) {
+      this.depth--;
+    }
+    int eventType = this.reader.next();
+    if (eventType == XMLStreamConstants.START_ELEMENT) {
+      this.depth++;
+    }
+
+    return eventType;
+  }
+
+  /**
+   * Begins skipping the subtree of the element on whose <code>START_ELEMENT</code> the cursor is
+   * positioned. The next call to <code>advance</code> moves past the subtree's events without
+   * presenting them.
+   */
+  void skipElement() {
+    assert this.isStartElement() : "skipElement() requires a START_ELEMENT.";
+    this.skipDepth = 1;
+  }
+
+  /**
+   * Moves to the next event to present to the processor. While a subtree is being skipped, its
+   * events are consumed until the cursor is positioned on its <code>END_ELEMENT</code>, which is
+   * presented like any other event. Text in a skipped subtree is never decoded.
+   *
+   * @return The event type, which is <code>AsyncXMLStreamReader.EVENT_INCOMPLETE</code> if a
+   *     non-blocking reader needs more input; the skip then resumes on the next call.
+   */
+  int advance() throws XMLStreamException {
+    while (this.skipDepth > 0) {
+      switch (this.next()) {
+        case XMLStreamConstants.START_ELEMENT:
+          this.skipDepth++;
+          break;
+        case XMLStreamConstants.END_ELEMENT:
+          if (--this.skipDepth == 0) {
+            return XMLStreamConstants.END_ELEMENT;
+          }
+          break;
+        case AsyncXMLStreamReader.EVENT_INCOMPLETE:
+          return AsyncXMLStreamReader.EVENT_INCOMPLETE;
+        default:
+          break;
+      }
+    }
+
+    return this.next();
+  }
+
+  // Properties
+  public int getEventType() {
+    return this.reader.getEventType();
+  }
+
+  public boolean isStartElement() {
+    return this.reader.getEventType() == XMLStreamConstants.START_ELEMENT;
+  }
+
+  public boolean isEndElement() {
+    return this.reader.getEventType() == XMLStreamConstants.END_ELEMENT;
+  }
+
+  /**
+   * Gets the depth of the current element, counting the root element as 1. On <code>END_ELEMENT
+   * </code>, this is the depth of the element being closed; outside the root element, it is 0.
+   *
+   * @return The depth.
+   */
+  public int getDepth() {
+    return this.depth;
+  }
+
+  public SymbolTable getSymbolTable() {
+    return this.symbols;
+  }
+
+  /**
+   * Gets the current element's local name. Valid only on <code>START_ELEMENT</code> and <code>
+   * END_ELEMENT</code>.
+   *
+   * @return The local name.
+   */
+  public String getLocalName() {
+    return this.reader.getLocalName();
+  }
+
+  /**
+   * Gets the symbol assigned to the current element's local name. The symbol is resolved at most
+   * once per event. Valid only on <code>START_ELEMENT</code> and <code>END_ELEMENT</code>.
+   *
+   * @return The local name's symbol.
+   */
+  public int getLocalNameSymbol() {
+    if (this.symbol == UNRESOLVED) {
+      this.symbol = this.symbols.intern(this.reader.getLocalName());
+    }
+
+    return this.symbol;
+  }
+
+  public String getNamespaceURI() {
+    return this.reader.getNamespaceURI();
+  }
+
+  public String getPrefix() {
+    return this.reader.getPrefix();
+  }
+
+  public int getAttributeCount() {
+    return this.reader.getAttributeCount();
+  }
+
+  public String getAttributeLocalName(int index) {
+    return this.reader.getAttributeLocalName(index);
+  }
+
+  public String getAttributeNamespace(int index) {
+    return this.reader.getAttributeNamespace(index);
+  }
+
+  public String getAttributeValue(int index) {
+    return this.reader.getAttributeValue(index);
+  }
+
+  /**
+   * Gets the reader's character buffer for the current text event. The buffer is owned by the
+   * reader and is overwritten when the cursor advances.
+   *
+   * @return The character buffer.
+   */
+  public char[] getTextCharacters() {
+    return this.reader.getTextCharacters();
+  }
+
+  public int getTextStart() {
+    return this.reader.getTextStart();
+  }
+
+  public int getTextLength() {
+    return this.reader.getTextLength();
+  }
+
+  /**
+   * Gets the underlying reader for access to less common event properties. Processors must not
+   * advance or close it.
+   *
+   * @return The reader.
+   */
+  public XMLStreamReader getReader() {
+    return this.reader;
+  }
+}
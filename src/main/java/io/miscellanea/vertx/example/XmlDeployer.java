@@ -3,12 +3,28 @@ package io.miscellanea.vertx.example;
 import io.vertx.config.ConfigRetriever;
 import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.spi.cluster.ClusterManager;
+import io.vertx.micrometer.Label;
+import io.vertx.micrometer.Match;
+import io.vertx.micrometer.MatchType;
+import io.vertx.micrometer.MetricsDomain;
+import io.vertx.micrometer.MicrometerMetricsOptions;
+import io.vertx.micrometer.VertxPrometheusOptions;
+import io.vertx.spi.cluster.hazelcast.ConfigUtil;
+import io.vertx.spi.cluster.hazelcast.HazelcastClusterManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Deploys this example's verticles, which consist of...
@@ -20,71 +36,289 @@ import java.nio.file.Path;
  *
  * Together, these verticles demonstrate how one might "shred" an XML document with Vert.x.
  *
+ * <p>With <code>cluster</code> set, the deployer joins a Hazelcast cluster of JVMs and deploys only
+ * the verticles its <code>cluster-roles</code> name, so that one node's scheduler can hand jobs to
+ * shredders, and shredders can hand events to processors, on other nodes.
+ *
  * @author Jason Hallford
  */
 public class XmlDeployer {
   // Fields
   public static final Logger LOGGER = LoggerFactory.getLogger(XmlDeployer.class);
 
+  // Event bus metrics keep the addresses that carry a job's event traffic; every other address,
+  // including the reply addresses, is reported as "other".
+  private static final String UNMETERED_ADDRESSES =
+      "(?!xml\\.shred\\.next\\.|processor\\.tag-name\\.).*";
+
+  // The verticles a clustered node deploys; exactly one node of a cluster should be the scheduler.
+  private static final String SCHEDULER_ROLE = "scheduler";
+  private static final String SHREDDER_ROLE = "shredder";
+  private static final String PROCESSOR_ROLE = "processor";
+  private static final List<String> ALL_ROLES =
+      List.of(SCHEDULER_ROLE, SHREDDER_ROLE, PROCESSOR_ROLE);
+
   // Constructors
   public XmlDeployer() {}
 
   // Main method
   public static void main(String[] args) {
-    if (args.length < 1) {
-      LOGGER.error("You must provide a path to the XML file on the command line.");
-      return;
+    // Without a document on the command line, the example only runs its ingestion server or batch.
+    String pathToFile = args.length > 0 ? args[0] : null;
+    if (pathToFile != null && !Files.exists(Path.of(pathToFile))) {
+      LOGGER.error("XML file '{}' does not exist.", pathToFile);
     }
 
-    if (!Files.exists(Path.of(args[0]))) {
-      LOGGER.error("XML file '{}' does not exist.", args[0]);
-    }
-
-    LOGGER.debug("Bootstrapping the Vert.x runtime.");
-    var vertx = Vertx.vertx();
-    LOGGER.debug("Vert.x successfully initialized.");
-
+    // The configuration decides whether the runtime joins a cluster, so it is read first with a
+    // bootstrap instance that is discarded.
+    var bootstrap = Vertx.vertx();
     var configRetrieverOpts =
         ConfigStoreHelper.buildDefaultRetrieverOptions("conf/shred-config.json");
 
-    ConfigRetriever.create(vertx, configRetrieverOpts)
+    ConfigRetriever.create(bootstrap, configRetrieverOpts)
         .getConfig(
             config -> {
-              int processorCount = config.result().getInteger("processor-verticle-count");
-              LOGGER.info("Deploying {} tag processor verticle(s).", processorCount);
-              var processorOpts = new DeploymentOptions().setInstances(processorCount);
-              vertx.deployVerticle(TagNameProcessorVerticle.class.getName(),processorOpts);
-
-              int shredderCount = config.result().getInteger("shred-verticle-count");
-              LOGGER.info("Deploying {} XML shredding verticle(s).", shredderCount);
-              var opts = new DeploymentOptions().setInstances(shredderCount);
-              vertx.deployVerticle(
-                  XmlShredderVerticle.class.getName(),
-                  opts,
-                  result -> {
-                    if (result.succeeded()) {
-
-                      // Submit jobs for processing...
-                      int jobCount = config.result().getInteger("job-count");
-                      LOGGER.debug("Submitting {} XML shredding job(s).", jobCount);
-
-                      for (int i = 0; i < jobCount; i++) {
-                        vertx
-                            .eventBus()
-                            .send(
-                                "xml.shred",
-                                new JsonObject()
-                                    .put("doc-type", "xml")
-                                    .put("path-to-file", args[0])
-                                    .put("job-id", (i + 1)));
-                      }
-
-                      LOGGER.debug("Shredding messages sent.");
-                    } else {
-                      // Terminate the JVM; the verticle didn't start.
-                      vertx.close();
+              bootstrap.close();
+              if (config.failed()) {
+                LOGGER.error("Unable to read the configuration.", config.cause());
+                return;
+              }
+
+              var options = new VertxOptions().setMetricsOptions(buildMetricsOptions());
+              if (!config.result().getBoolean("cluster", false)) {
+                LOGGER.debug("Bootstrapping the Vert.x runtime.");
+                deploy(Vertx.vertx(options), config.result(), pathToFile);
+                return;
+              }
+
+              LOGGER.info("Bootstrapping a clustered Vert.x runtime.");
+              var host = config.result().getString("cluster-host", "");
+              if (!host.isBlank()) {
+                options.getEventBusOptions().setHost(host);
+              }
+              var clusterManager = buildClusterManager(config.result());
+              options.setClusterManager(clusterManager);
+              Vertx.clusteredVertx(
+                  options,
+                  clustered -> {
+                    if (clustered.failed()) {
+                      LOGGER.error("Unable to join the cluster.", clustered.cause());
+                      return;
                     }
+
+                    var vertx = clustered.result();
+                    ClusterNode.join(
+                        vertx,
+                        clusterManager,
+                        joined -> {
+                          if (joined.succeeded()) {
+                            deploy(vertx, config.result(), pathToFile);
+                          } else {
+                            LOGGER.error("Unable to number this node.", joined.cause());
+                            vertx.close();
+                          }
+                        });
                   });
             });
   }
+
+  // Helper methods
+  private static MicrometerMetricsOptions buildMetricsOptions() {
+    return new MicrometerMetricsOptions()
+        .setEnabled(true)
+        .setPrometheusOptions(new VertxPrometheusOptions().setEnabled(true))
+        .setLabels(EnumSet.of(Label.EB_ADDRESS, Label.EB_SIDE, Label.EB_FAILURE))
+        .addLabelMatch(
+            new Match()
+                .setDomain(MetricsDomain.EVENT_BUS)
+                .setLabel("address")
+                .setType(MatchType.REGEX)
+                .setValue(UNMETERED_ADDRESSES)
+                .setAlias("other"));
+  }
+
+  private static void deploy(Vertx vertx, JsonObject config, String pathToFile) {
+    MessageCodecs.registerDefaults(vertx.eventBus());
+    LOGGER.debug("Vert.x successfully initialized.");
+
+    // A clustered node may only lend its shredders or processors to the cluster's jobs.
+    int httpPort = config.getInteger("http-port", 0);
+    boolean batch =
+        !config.getString("batch-source", "").isBlank()
+            || !config.getString("batch-manifest", "").isBlank();
+    if (pathToFile == null && httpPort <= 0 && !batch && !vertx.isClustered()) {
+      LOGGER.error(
+          "You must provide a path to the XML file on the command line, or set "
+              + "http-port, batch-source or batch-manifest.");
+      vertx.close();
+      return;
+    }
+
+    var roles = vertx.isClustered() ? getRoles(config) : Set.copyOf(ALL_ROLES);
+    if (vertx.isClustered()) {
+      LOGGER.info("Deploying node {} with roles {}.", ClusterNode.getNumber(), roles);
+    }
+
+    if (roles.contains(PROCESSOR_ROLE)) {
+      int processorCount = config.getInteger("processor-verticle-count");
+      LOGGER.info("Deploying {} tag processor verticle(s).", processorCount);
+      var processorOpts = new DeploymentOptions().setInstances(processorCount).setConfig(config);
+      vertx.deployVerticle(TagNameProcessorVerticle.class.getName(), processorOpts);
+    }
+
+    if (config.getInteger("metrics-port", MetricsVerticle.DEFAULT_PORT) > 0) {
+      vertx.deployVerticle(
+          MetricsVerticle.class.getName(), new DeploymentOptions().setConfig(config));
+    }
+
+    if (!roles.contains(SCHEDULER_ROLE)) {
+      // Shredders wait for the node that runs the scheduler to register them.
+      deployShredders(vertx, config, roles, pathToFile, httpPort, batch);
+      return;
+    }
+
+    LOGGER.info("Deploying the job scheduler verticle.");
+    vertx.deployVerticle(
+        JobSchedulerVerticle.class.getName(),
+        new DeploymentOptions().setConfig(config),
+        scheduled -> {
+          if (scheduled.succeeded()) {
+            deployShredders(vertx, config, roles, pathToFile, httpPort, batch);
+          } else {
+            LOGGER.error("Unable to deploy the job scheduler.", scheduled.cause());
+            vertx.close();
+          }
+        });
+  }
+
+  private static Set<String> getRoles(JsonObject config) {
+    var roles = new LinkedHashSet<String>();
+    config
+        .getJsonArray("cluster-roles", new JsonArray(ALL_ROLES))
+        .forEach(role -> roles.add(role.toString()));
+
+    for (String role : roles) {
+      if (!ALL_ROLES.contains(role)) {
+        LOGGER.warn("Ignoring unknown cluster role '{}'.", role);
+      }
+    }
+    return roles;
+  }
+
+  private static ClusterManager buildClusterManager(JsonObject config) {
+    // Starts from vert.x's default Hazelcast configuration, or a cluster.xml on the class path.
+    var hazelcastConfig = ConfigUtil.loadConfig();
+    hazelcastConfig.setProperty("hazelcast.logging.type", "slf4j");
+
+    var network = hazelcastConfig.getNetworkConfig();
+    var host = config.getString("cluster-host", "");
+    if (!host.isBlank()) {
+      network.getInterfaces().setEnabled(true).setInterfaces(List.of(host));
+    }
+
+    // Without a member list, nodes find each other by multicast.
+    var members = new ArrayList<String>();
+    config.getJsonArray("cluster-members", new JsonArray()).forEach(m -> members.add(m.toString()));
+    if (!members.isEmpty()) {
+      network.getJoin().getMulticastConfig().setEnabled(false);
+      network.getJoin().getTcpIpConfig().setEnabled(true).setMembers(members);
+    }
+
+    return new HazelcastClusterManager(hazelcastConfig);
+  }
+
+  private static void deployShredders(
+      Vertx vertx,
+      JsonObject config,
+      Set<String> roles,
+      String pathToFile,
+      int httpPort,
+      boolean batch) {
+    if (httpPort > 0) {
+      LOGGER.info("Deploying the HTTP ingestion verticle.");
+      vertx.deployVerticle(
+          HttpIngestionVerticle.class.getName(), new DeploymentOptions().setConfig(config));
+    }
+
+    if (!roles.contains(SHREDDER_ROLE)) {
+      submitJobs(vertx, config, pathToFile, batch);
+      return;
+    }
+
+    int shredderCount = config.getInteger("shred-verticle-count");
+    var mode = config.getString("shred-mode", "blocking");
+    boolean async = "async".equals(mode);
+    LOGGER.info("Deploying {} {} XML shredding verticle(s).", shredderCount, mode);
+
+    // Virtual thread shredders only start and end jobs, but may scan a document to split it.
+    var opts =
+        new DeploymentOptions().setInstances(shredderCount).setWorker(!async).setConfig(config);
+    String verticle;
+    switch (mode) {
+      case "async":
+        verticle = AsyncXmlShredderVerticle.class.getName();
+        break;
+      case "virtual":
+        verticle = VirtualThreadShredderVerticle.class.getName();
+        break;
+      default:
+        verticle = XmlShredderVerticle.class.getName();
+        break;
+    }
+    vertx.deployVerticle(
+        verticle,
+        opts,
+        result -> {
+          if (result.succeeded()) {
+            submitJobs(vertx, config, pathToFile, batch);
+          } else {
+            // Terminate the JVM; the verticle didn't start.
+            vertx.close();
+          }
+        });
+  }
+
+  private static void submitJobs(Vertx vertx, JsonObject config, String pathToFile, boolean batch) {
+    if (batch) {
+      LOGGER.info("Deploying the batch ingestion verticle.");
+      vertx.deployVerticle(
+          BatchIngestionVerticle.class.getName(),
+          new DeploymentOptions().setWorker(true).setConfig(config),
+          deployed -> {
+            if (deployed.failed()) {
+              LOGGER.error("Unable to start the batch: {}", deployed.cause().getMessage());
+            }
+          });
+    }
+
+    if (pathToFile == null) {
+      return;
+    }
+
+    // Submit jobs for processing...
+    int jobCount = config.getInteger("job-count");
+    var priority = config.getString("job-priority", WeightedRoundRobinQueue.DEFAULT_PRIORITY);
+    LOGGER.debug("Submitting {} XML shredding job(s).", jobCount);
+
+    for (int i = 0; i < jobCount; i++) {
+      // Every node of a cluster may submit jobs, so theirs are numbered by the node.
+      int jobId = vertx.isClustered() ? JobIds.next() : i + 1;
+      vertx
+          .eventBus()
+          .<JsonObject>request(
+              JobSchedulerVerticle.SUBMIT_ADDRESS,
+              new JsonObject()
+                  .put("doc-type", "xml")
+                  .put("path-to-file", pathToFile)
+                  .put("job-id", jobId)
+                  .put(AbstractXmlShredderVerticle.PRIORITY, priority),
+              reply -> {
+                if (reply.failed()) {
+                  LOGGER.warn("Job {} rejected: {}", jobId, reply.cause().getMessage());
+                }
+              });
+    }
+
+    LOGGER.debug("Shredding messages sent.");
+  }
 }
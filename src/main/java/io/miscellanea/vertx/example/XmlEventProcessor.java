@@ -8,5 +8,14 @@ import javax.xml.stream.events.XMLEvent;
  * @author Jason Hallford
  */
 public interface XmlEventProcessor {
-    void process(XMLEvent xmlEvent);
+    /**
+     * Processes a single XML event.
+     *
+     * @param xmlEvent The event to process.
+     * @return <code>true</code> if the shredder may immediately deliver the next event; <code>false
+     *     </code> if the processor is applying backpressure (or has finished the document), in which
+     *     case it is responsible for resuming the job by sending a message to the context's next
+     *     address.
+     */
+    boolean process(XMLEvent xmlEvent);
 }
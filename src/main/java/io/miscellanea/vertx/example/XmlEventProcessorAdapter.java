@@ -0,0 +1,114 @@
+package io.miscellanea.vertx.example;
+
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.Namespace;
+import javax.xml.stream.events.XMLEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Adapts an <code>XmlEventProcessor</code> to the shredder's cursor so that providers which have not
+ * opted into <code>XmlStreamProcessor</code> continue to work. An immutable <code>XMLEvent</code> is
+ * built for every node, so adapted processors do not benefit from the cursor's allocation profile.
+ *
+ * @author Jason Hallford
+ */
+public class XmlEventProcessorAdapter implements XmlStreamProcessor {
+  // Fields
+  private final XmlEventProcessor delegate;
+  private final XMLEventFactory eventFactory = XMLEventFactory.newInstance();
+
+  // Constructors
+  public XmlEventProcessorAdapter(XmlEventProcessor delegate) {
+    assert delegate != null : "delegate must not be null.";
+    this.delegate = delegate;
+  }
+
+  // XmlStreamProcessor
+  @Override
+  public boolean process(XmlCursor cursor) {
+    assert cursor != null : "cursor must not be null.";
+
+    var event = this.toEvent(cursor.getReader());
+    return event == null || this.delegate.process(event);
+  }
+
+  // Helper methods
+  private XMLEvent toEvent(XMLStreamReader reader) {
+    switch (reader.getEventType()) {
+      case XMLStreamConstants.START_DOCUMENT:
+        var encoding = reader.getCharacterEncodingScheme();
+        var version = reader.getVersion();
+        return this.eventFactory.createStartDocument(
+            encoding != null ? encoding : "UTF-8",
+            version != null ? version : "1.0",
+            reader.isStandalone());
+      case XMLStreamConstants.END_DOCUMENT:
+        return this.eventFactory.createEndDocument();
+      case XMLStreamConstants.START_ELEMENT:
+        return this.eventFactory.createStartElement(
+            nullToEmpty(reader.getPrefix()),
+            nullToEmpty(reader.getNamespaceURI()),
+            reader.getLocalName(),
+            this.attributes(reader).iterator(),
+            this.namespaces(reader).iterator(),
+            reader.getNamespaceContext());
+      case XMLStreamConstants.END_ELEMENT:
+        return this.eventFactory.createEndElement(
+            nullToEmpty(reader.getPrefix()),
+            nullToEmpty(reader.getNamespaceURI()),
+            reader.getLocalName(),
+            this.namespaces(reader).iterator());
+      case XMLStreamConstants.CHARACTERS:
+        return this.eventFactory.createCharacters(reader.getText());
+      case XMLStreamConstants.SPACE:
+        return this.eventFactory.createSpace(reader.getText());
+      case XMLStreamConstants.CDATA:
+        return this.eventFactory.createCData(reader.getText());
+      case XMLStreamConstants.COMMENT:
+        return this.eventFactory.createComment(reader.getText());
+      case XMLStreamConstants.PROCESSING_INSTRUCTION:
+        return this.eventFactory.createProcessingInstruction(reader.getPITarget(), reader.getPIData());
+      case XMLStreamConstants.DTD:
+        return this.eventFactory.createDTD(reader.getText());
+      case XMLStreamConstants.ENTITY_REFERENCE:
+        return this.eventFactory.createEntityReference(reader.getLocalName(), null);
+      default:
+        return null;
+    }
+  }
+
+  private List<Attribute> attributes(XMLStreamReader reader) {
+    var attributes = new ArrayList<Attribute>(reader.getAttributeCount());
+    for (int i = 0; i < reader.getAttributeCount(); i++) {
+      attributes.add(
+          this.eventFactory.createAttribute(
+              nullToEmpty(reader.getAttributePrefix(i)),
+              nullToEmpty(reader.getAttributeNamespace(i)),
+              reader.getAttributeLocalName(i),
+              reader.getAttributeValue(i)));
+    }
+
+    return attributes;
+  }
+
+  private List<Namespace> namespaces(XMLStreamReader reader) {
+    var namespaces = new ArrayList<Namespace>(reader.getNamespaceCount());
+    for (int i = 0; i < reader.getNamespaceCount(); i++) {
+      var prefix = reader.getNamespacePrefix(i);
+      namespaces.add(
+          prefix == null || prefix.isEmpty()
+              ? this.eventFactory.createNamespace(reader.getNamespaceURI(i))
+              : this.eventFactory.createNamespace(prefix, reader.getNamespaceURI(i)));
+    }
+
+    return namespaces;
+  }
+
+  private static String nullToEmpty(String value) {
+    return value != null ? value : "";
+  }
+}
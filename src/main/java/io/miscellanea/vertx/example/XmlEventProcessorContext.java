@@ -1,6 +1,10 @@
 package io.miscellanea.vertx.example;
 
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
 import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.json.JsonObject;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -8,16 +12,57 @@ import java.util.Map;
 /**
  * Provides execution context to XML processors.
  *
+ * <p>The context also carries the job's flow control window. A processor verticle grants event
+ * credits to the job's credit address, and the processor spends them with <code>
+ * spendCredits</code> as it sends work downstream. When credits run out the processor
+ * stops the pump by returning <code>false</code>, and the context resumes the job exactly once,
+ * when credits are granted again. Memory held for a job in flight is therefore bounded by the
+ * window, however slow the processor verticle is. Contexts are confined to their shredder.
+ *
+ * <p>A processor that can save its state sets a checkpoint handler, which the shredder calls at
+ * element boundaries of large documents. When a job resumes from a checkpoint, the state the
+ * handler saved is available from <code>getRestoredState</code> before the first event arrives.
+ *
  * @author Jason Hallford
  */
 public class XmlEventProcessorContext {
   // Fields
+
+  /** Set when the job is one part of a split document: the identifier of the whole job. */
+  public static final String PARENT_JOB_ID_PROPERTY = "parent-job-id";
+
+  /** Set when the job is one part of a split document: the number of parts. */
+  public static final String PART_COUNT_PROPERTY = "part-count";
+
+  /** Set when the job is one part of a split document: the part's zero-based index. */
+  public static final String PART_INDEX_PROPERTY = "part-index";
+
+  /**
+   * Set when the job is a part of a split document that begins after the root element's start tag:
+   * the root element's local name. The part's processor never sees the root's start tag.
+   */
+  public static final String ROOT_NAME_PROPERTY = "root-name";
+
+  /** The header with which a processor tells its verticle where to send the job's credits. */
+  public static final String CREDIT_ADDRESS_PROPERTY = "credit-address";
+
+  /** The header with which a processor tells its verticle where to report the job's failure. */
+  public static final String ERROR_ADDRESS_PROPERTY = "error-address";
+
   private Integer id;
   private EventBus eventBus;
   private String nextAddress;
   private String errorAddress;
   private String finishedAddress;
+  private String creditAddress;
   private Map<String, String> properties = new HashMap<>();
+  private ShredEvent nextMessage;
+  private long credits = 0;
+  private boolean suspended = false;
+  private Runnable resumeHandler;
+  private Handler<Promise<JsonObject>> checkpointHandler;
+  private JsonObject restoredState;
+  private Runnable cleanupHandler;
 
   // Constructors
   public XmlEventProcessorContext(
@@ -25,7 +70,8 @@ public class XmlEventProcessorContext {
       EventBus eventBus,
       String nextAddress,
       String finishedAddress,
-      String errorAddress) {
+      String errorAddress,
+      String creditAddress) {
     assert id != null : "id must not be null.";
     this.id = id;
 
@@ -41,6 +87,11 @@ public class XmlEventProcessorContext {
 
     assert errorAddress != null && !errorAddress.isBlank() : "errorAddress must have a value.";
     this.errorAddress = errorAddress;
+
+    assert creditAddress != null && !creditAddress.isBlank() : "creditAddress must have a value.";
+    this.creditAddress = creditAddress;
+
+    this.nextMessage = ShredEvent.next(id);
   }
 
   // Properties
@@ -64,6 +115,72 @@ public class XmlEventProcessorContext {
     return finishedAddress;
   }
 
+  /**
+   * Gets the address to which a processor verticle sends credit grants for this job, as a JSON
+   * object with <code>job-id</code> and <code>credits</code> fields.
+   *
+   * @return The address.
+   */
+  public String getCreditAddress() {
+    return creditAddress;
+  }
+
+  public long getCredits() {
+    return credits;
+  }
+
+  public boolean isSuspended() {
+    return suspended;
+  }
+
+  /**
+   * Replaces the default resume action, which sends the shredder's next message, with a handler.
+   * Used when a job's processor is coordinated by another, such as <code>FanOutProcessor</code>.
+   *
+   * @param resumeHandler The handler.
+   */
+  public void setResumeHandler(Runnable resumeHandler) {
+    this.resumeHandler = resumeHandler;
+  }
+
+  /**
+   * Sets the handler that captures the processor's state for a checkpoint. The handler completes
+   * its promise with the state once everything the processor has sent downstream is reflected in
+   * it; the shredder reads no further until then.
+   *
+   * @param checkpointHandler The handler.
+   */
+  public void setCheckpointHandler(Handler<Promise<JsonObject>> checkpointHandler) {
+    this.checkpointHandler = checkpointHandler;
+  }
+
+  public boolean isCheckpointable() {
+    return this.checkpointHandler != null;
+  }
+
+  /**
+   * Gets the state the processor saved in the checkpoint the job resumed from.
+   *
+   * @return The state, or <code>null</code> if the job started from the beginning.
+   */
+  public JsonObject getRestoredState() {
+    return restoredState;
+  }
+
+  public void setRestoredState(JsonObject restoredState) {
+    this.restoredState = restoredState;
+  }
+
+  /**
+   * Sets a handler that releases the processor's resources, such as open files or threads, when the
+   * job ends, whether it finished or failed.
+   *
+   * @param cleanupHandler The handler.
+   */
+  public void setCleanupHandler(Runnable cleanupHandler) {
+    this.cleanupHandler = cleanupHandler;
+  }
+
   // Methods
   public void putProperty(String name, String value) {
     this.properties.put(name, value);
@@ -72,4 +189,82 @@ public class XmlEventProcessorContext {
   public String getProperty(String name) {
     return this.properties.get(name);
   }
+
+  /**
+   * Captures the processor's state for a checkpoint.
+   *
+   * @return A future completed with the state, or failed if the processor cannot save its state.
+   */
+  public Future<JsonObject> checkpoint() {
+    if (this.checkpointHandler == null) {
+      return Future.failedFuture("The processor for job " + this.id + " cannot be checkpointed.");
+    }
+
+    Promise<JsonObject> promise = Promise.promise();
+    this.checkpointHandler.handle(promise);
+    return promise.future();
+  }
+
+  /** Runs the cleanup handler, if one is set; called by the shredder once the job has ended. */
+  public void cleanup() {
+    if (this.cleanupHandler != null) {
+      this.cleanupHandler.run();
+      this.cleanupHandler = null;
+    }
+  }
+
+  /**
+   * Spends credits for work just sent downstream. Work is sent while any credit remains, so the
+   * balance may go negative by at most one send, and a window smaller than a processor's batch
+   * still makes progress. When the balance is exhausted the job is suspended, and the processor
+   * must return <code>false</code> from <code>process</code>.
+   *
+   * @param count The number of events the work represents.
+   * @return <code>true</code> if credits remain; <code>false</code> if the job must wait for more.
+   */
+  public boolean spendCredits(int count) {
+    this.credits -= count;
+    if (this.credits <= 0) {
+      this.suspend();
+      return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Adds credits to the job's window and resumes the job if it was waiting for them.
+   *
+   * @param count The number of event credits granted.
+   */
+  public void grantCredits(long count) {
+    this.credits += count;
+    if (this.credits > 0) {
+      this.resume();
+    }
+  }
+
+  /**
+   * Marks the job as waiting on its processor; the pump stops once <code>process</code> returns
+   * <code>false</code>.
+   */
+  public void suspend() {
+    this.suspended = true;
+  }
+
+  /**
+   * Resumes a suspended job by sending the shredder's next message, or by running the resume
+   * handler if one is set. Calls made while the job is not suspended are ignored, so a job resumes
+   * exactly once per suspension.
+   */
+  public void resume() {
+    if (this.suspended) {
+      this.suspended = false;
+      if (this.resumeHandler != null) {
+        this.resumeHandler.run();
+      } else {
+        this.eventBus.send(this.nextAddress, this.nextMessage);
+      }
+    }
+  }
 }
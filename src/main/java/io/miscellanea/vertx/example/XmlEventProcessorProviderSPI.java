@@ -23,11 +23,62 @@ public interface XmlEventProcessorProviderSPI {
    */
   boolean handlesDocType(String docTypeIdentifier);
 
+  /**
+   * Determines if this provider handles a given document type for a specific job. Providers whose
+   * answer depends on the processor properties, such as a configured mapping, override this method;
+   * by default, it defers to <code>handlesDocType(String)</code>.
+   *
+   * @param docTypeIdentifier The document type identifier.
+   * @param context The execution context the provider's processor would receive.
+   * @return <code>true</code> if this module can provide a handler for the document in this job.
+   */
+  default boolean handlesDocType(String docTypeIdentifier, XmlEventProcessorContext context) {
+    return this.handlesDocType(docTypeIdentifier);
+  }
+
   /**
    * Provides a SAX <code>DefaultContentHandler</code> for the specified XML document type.
    *
    * @param context The XML processor's execution context.
-   * @return A <code>ContentHandler</code> instance
+   * @return A <code>ContentHandler</code> instance, or an empty optional if the provider cannot
+   *     process this document after all, in which case the next provider that handles its type is
+   *     asked
    */
   Optional<XmlEventProcessor> provide(XmlEventProcessorContext context);
+
+  /**
+   * Provides a cursor-driven processor for the specified XML document type. Providers opt into the
+   * allocation-free cursor contract by overriding this method; by default, the processor returned by
+   * <code>provide</code> is adapted to the cursor.
+   *
+   * @param context The XML processor's execution context.
+   * @return An <code>XmlStreamProcessor</code> instance
+   */
+  default Optional<XmlStreamProcessor> provideStreamProcessor(XmlEventProcessorContext context) {
+    return this.provide(context).map(XmlEventProcessorAdapter::new);
+  }
+
+  /**
+   * Declares the events this provider's processors want. The shredder filters out everything else
+   * before it reaches the processor and skips subtrees the subscription cannot select. By default,
+   * processors see every event.
+   *
+   * @param context The XML processor's execution context.
+   * @return The subscription.
+   */
+  default XmlSubscription getSubscription(XmlEventProcessorContext context) {
+    return XmlSubscription.ALL;
+  }
+
+  /**
+   * Declares how this provider's results may be cached, for providers whose processors publish a
+   * single result per job. The shredder answers a document it has seen before from the cache only
+   * if every provider that would handle it has a binding. By default, results are not cached.
+   *
+   * @param context The XML processor's execution context.
+   * @return The binding, or an empty optional if the provider's results cannot be cached.
+   */
+  default Optional<XmlResultBinding> getResultBinding(XmlEventProcessorContext context) {
+    return Optional.empty();
+  }
 }
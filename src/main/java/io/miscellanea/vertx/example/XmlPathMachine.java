@@ -0,0 +1,168 @@
+package io.miscellanea.vertx.example;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A deterministic state machine compiled from a subscription's paths. Each state stands for the
+ * path from the root to the current element and records whether that element is selected and
+ * whether any element below it still could be. States and their transitions are built lazily, as
+ * element names are first seen under them, and then cached, so steady-state matching costs one map
+ * lookup per element.
+ *
+ * <p>Instances are confined to the verticle that compiled them.
+ *
+ * @author Jason Hallford
+ */
+public final class XmlPathMachine {
+  /** One state: the set of path steps that may match the next element. */
+  public static final class State {
+    private final BitSet steps;
+    private final boolean selected;
+    private final Map<Integer, State> transitions = new HashMap<>();
+
+    private State(BitSet steps, boolean selected) {
+      this.steps = steps;
+      this.selected = selected;
+    }
+
+    /**
+     * Determines if the element that led to this state was selected by a path.
+     *
+     * @return <code>true</code> if the element and its subtree are selected.
+     */
+    public boolean isSelected() {
+      return this.selected;
+    }
+
+    /**
+     * Determines if no element below the one that led to this state can be selected.
+     *
+     * @return <code>true</code> if the element's subtree may be skipped.
+     */
+    public boolean isDead() {
+      return !this.selected && this.steps.isEmpty();
+    }
+  }
+
+  // Fields
+  private static final int WILDCARD = -1;
+
+  private final SymbolTable symbols;
+  private final List<Integer> stepSymbols = new ArrayList<>();
+  private final BitSet descendantSteps = new BitSet();
+  private final BitSet lastSteps = new BitSet();
+  private final Map<BitSet, State> states = new HashMap<>();
+  private final State initialState;
+
+  // Constructors
+  public XmlPathMachine(List<String> paths, SymbolTable symbols) {
+    assert paths != null && !paths.isEmpty() : "paths must not be empty.";
+    assert symbols != null : "symbols must not be null.";
+    this.symbols = symbols;
+
+    var firstSteps = new BitSet();
+    for (String path : paths) {
+      firstSteps.set(this.stepSymbols.size());
+      this.compile(path);
+    }
+    this.initialState = this.state(firstSteps, false);
+  }
+
+  // Properties
+  public State getInitialState() {
+    return this.initialState;
+  }
+
+  // Methods
+
+  /**
+   * Gets the state for an element, given the state of its parent. Every element below a selected
+   * element is selected too.
+   *
+   * @param state The parent's state.
+   * @param symbol The element's local name symbol.
+   * @return The element's state.
+   */
+  public State next(State state, int symbol) {
+    if (state.selected) {
+      return state;
+    }
+
+    var next = state.transitions.get(symbol);
+    if (next == null) {
+      next = this.transition(state, symbol);
+      state.transitions.put(symbol, next);
+    }
+
+    return next;
+  }
+
+  // Helper methods
+  private void compile(String path) {
+    if (path == null || !path.startsWith("/") || path.length() < 2) {
+      throw new IllegalArgumentException("Path '" + path + "' must begin with '/'.");
+    }
+
+    int index = 0;
+    while (index < path.length()) {
+      boolean descendant = path.startsWith("//", index);
+      index += descendant ? 2 : 1;
+
+      int end = path.indexOf('/', index);
+      if (end < 0) {
+        end = path.length();
+      }
+      var name = path.substring(index, end);
+      if (name.isEmpty()) {
+        throw new IllegalArgumentException("Path '" + path + "' has an empty step.");
+      }
+
+      // Steps match local names; a prefix is ignored.
+      name = name.substring(name.indexOf(':') + 1);
+      if (descendant) {
+        this.descendantSteps.set(this.stepSymbols.size());
+      }
+      this.stepSymbols.add(name.equals("*") ? WILDCARD : this.symbols.intern(name));
+      index = end;
+    }
+    this.lastSteps.set(this.stepSymbols.size() - 1);
+  }
+
+  private State transition(State state, int symbol) {
+    var steps = new BitSet();
+    boolean selected = false;
+
+    for (int step = state.steps.nextSetBit(0); step >= 0; step = state.steps.nextSetBit(step + 1)) {
+      // A descendant step may still match an element further down.
+      if (this.descendantSteps.get(step)) {
+        steps.set(step);
+      }
+
+      int stepSymbol = this.stepSymbols.get(step);
+      if (stepSymbol == WILDCARD || stepSymbol == symbol) {
+        if (this.lastSteps.get(step)) {
+          selected = true;
+        } else {
+          steps.set(step + 1);
+        }
+      }
+    }
+
+    return this.state(steps, selected);
+  }
+
+  private State state(BitSet steps, boolean selected) {
+    // A selected element's subtree is delivered whole, so every selected state collapses into one,
+    // keyed past the last step.
+    if (selected) {
+      steps = new BitSet();
+      steps.set(this.stepSymbols.size());
+    }
+
+    return this.states.computeIfAbsent(steps, key -> new State(key, selected));
+  }
+}
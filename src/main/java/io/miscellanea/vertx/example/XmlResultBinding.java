@@ -0,0 +1,81 @@
+package io.miscellanea.vertx.example;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.function.Function;
+
+/**
+ * Declares how a provider's results can be cached: the address on which its processors publish
+ * each finished job's result, as a single message with the job's identifier in the <code>job-id
+ * </code> header, and how that message body converts to and from JSON. A shredder with a result
+ * cache records the results published there and answers a repeated document by publishing the
+ * cached result in the same way, without parsing the document.
+ *
+ * <p>The variant names the settings the result depends on, such as the paths a processor counts,
+ * so that a result is reused only under the same settings.
+ *
+ * @author Jason Hallford
+ */
+public final class XmlResultBinding {
+  // Fields
+  private final String address;
+  private final String variant;
+  private final Function<Object, JsonObject> encoder;
+  private final Function<JsonObject, Object> decoder;
+
+  // Constructors
+  private XmlResultBinding(
+      String address,
+      String variant,
+      Function<Object, JsonObject> encoder,
+      Function<JsonObject, Object> decoder) {
+    assert address != null : "address must not be null.";
+    this.address = address;
+
+    assert variant != null : "variant must not be null.";
+    this.variant = variant;
+
+    assert encoder != null : "encoder must not be null.";
+    this.encoder = encoder;
+
+    assert decoder != null : "decoder must not be null.";
+    this.decoder = decoder;
+  }
+
+  // Factory methods
+
+  /**
+   * Creates a binding.
+   *
+   * @param address The address on which results are published.
+   * @param variant The settings the result depends on, or an empty string.
+   * @param encoder Converts a published result to JSON.
+   * @param decoder Converts cached JSON back to a result that can be published.
+   * @return The binding.
+   */
+  public static XmlResultBinding of(
+      String address,
+      String variant,
+      Function<Object, JsonObject> encoder,
+      Function<JsonObject, Object> decoder) {
+    return new XmlResultBinding(address, variant, encoder, decoder);
+  }
+
+  // Properties
+  public String getAddress() {
+    return address;
+  }
+
+  public String getVariant() {
+    return variant;
+  }
+
+  // Methods
+  public JsonObject encode(Object result) {
+    return this.encoder.apply(result);
+  }
+
+  public Object decode(JsonObject cached) {
+    return this.decoder.apply(cached);
+  }
+}
@@ -1,54 +1,274 @@
 package io.miscellanea.vertx.example;
 
-import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Promise;
-import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import org.codehaus.stax2.LocationInfo;
+import org.codehaus.stax2.XMLStreamReader2;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.XMLEvent;
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.util.*;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * A worker verticle that "shreds" XML documents by cooperating with one or more processor-provided
- * content handlers.
+ * content handlers. Documents are read with a blocking <code>XMLStreamReader</code> over a <code>
+ * FileChannelInputStream</code>.
+ *
+ * <p>Whole, uncompressed documents are checkpointed every <code>checkpoint-interval-bytes</code>,
+ * at the first end tag past the interval, and a job whose document has a checkpoint resumes there:
+ * the shredder re-reads the document's prolog and the start tags of the elements that were open,
+ * then continues from the checkpoint's offset.
+ *
+ * <p>A shredder interleaves its active jobs itself rather than leaving them to the order of their
+ * <code>nextElement</code> messages. Jobs ready for events wait in a run queue by <code>priority
+ * </code> class, and each turn of the verticle's context pumps one time slice of the job that
+ * weighted round-robin picks, so a small interactive document is not held up behind the slices of
+ * bulk documents that share its shredder, and bulk documents still get their share.
  *
  * @author Jason Hallford
  */
-public class XmlShredderVerticle extends AbstractVerticle {
+public class XmlShredderVerticle extends AbstractXmlShredderVerticle {
   private static class ShreddingContext {
-    private XMLEventReader xmlEventReader;
-    private XmlEventProcessor xmlEventProcessor;
+    private InputStream inputStream;
+    private List<FileChannelInputStream> sources;
+    private XMLStreamReader xmlStreamReader;
+    private XmlCursor cursor;
+    private XmlStreamProcessor xmlStreamProcessor;
+    private String priority;
+    private CheckpointTracker checkpointTracker;
+    private boolean started = false;
+    private boolean runnable = false;
+    private long bytesReported = 0;
+
+    public ShreddingContext(
+        InputStream inputStream,
+        List<FileChannelInputStream> sources,
+        XMLStreamReader xmlStreamReader,
+        XmlCursor cursor,
+        XmlStreamProcessor xmlStreamProcessor,
+        String priority) {
+      this.inputStream = inputStream;
+      this.sources = sources;
+      this.xmlStreamReader = xmlStreamReader;
+      this.cursor = cursor;
+      this.xmlStreamProcessor = xmlStreamProcessor;
+      this.priority = priority;
+    }
+
+    public InputStream getInputStream() {
+      return inputStream;
+    }
+
+    /**
+     * Gets the number of file bytes read since the last call.
+     *
+     * @return The byte count.
+     */
+    public long takeBytesRead() {
+      long read = 0;
+      for (FileChannelInputStream source : this.sources) {
+        read += source.getBytesRead();
+      }
+
+      long delta = read - this.bytesReported;
+      this.bytesReported = read;
+      return delta;
+    }
+
+    public XMLStreamReader getXmlStreamReader() {
+      return xmlStreamReader;
+    }
+
+    public XmlCursor getCursor() {
+      return cursor;
+    }
+
+    public XmlStreamProcessor getXmlStreamProcessor() {
+      return xmlStreamProcessor;
+    }
+
+    public String getPriority() {
+      return priority;
+    }
+
+    public CheckpointTracker getCheckpointTracker() {
+      return checkpointTracker;
+    }
+
+    public void setCheckpointTracker(CheckpointTracker checkpointTracker) {
+      this.checkpointTracker = checkpointTracker;
+    }
+
+    public boolean isStarted() {
+      return started;
+    }
+
+    public void setStarted(boolean started) {
+      this.started = started;
+    }
+
+    public boolean isRunnable() {
+      return runnable;
+    }
+
+    public void setRunnable(boolean runnable) {
+      this.runnable = runnable;
+    }
+  }
+
+  /**
+   * Follows the file offsets of the start tags of a job's open elements, so that a checkpoint can
+   * be taken at any end tag. A resumed job reads a stream stitched together from several ranges of
+   * the file, so parser offsets are translated back to file offsets through those segments.
+   */
+  private static class CheckpointTracker {
+    private final Path document;
+    private final LocationInfo location;
+    private final long[] segmentStreamStarts;
+    private final long[] segmentFileStarts;
+    private String[] names = new String[16];
+    private long[] starts = new long[16];
+    private long[] ends = new long[16];
+    private int depth = 0;
+    private long lastCheckpoint;
+
+    public CheckpointTracker(Path document, LocationInfo location, Checkpoint resumePoint) {
+      this.document = document;
+      this.location = location;
+
+      if (resumePoint == null) {
+        this.segmentStreamStarts = new long[] {0L};
+        this.segmentFileStarts = new long[] {0L};
+        this.lastCheckpoint = 0L;
+        return;
+      }
+
+      // The prolog through the root's start tag, each deeper start tag, then the remainder.
+      var openElements = resumePoint.getOpenElements();
+      this.segmentStreamStarts = new long[openElements.size() + 1];
+      this.segmentFileStarts = new long[openElements.size() + 1];
+      long streamOffset = 0L;
+      for (int i = 0; i < openElements.size(); i++) {
+        long fileStart = i == 0 ? 0L : openElements.get(i).getStart();
+        this.segmentStreamStarts[i] = streamOffset;
+        this.segmentFileStarts[i] = fileStart;
+        streamOffset += openElements.get(i).getEnd() - fileStart;
+      }
+      this.segmentStreamStarts[openElements.size()] = streamOffset;
+      this.segmentFileStarts[openElements.size()] = resumePoint.getOffset();
+      this.lastCheckpoint = resumePoint.getOffset();
+    }
+
+    /**
+     * Records the current event.
+     *
+     * @return <code>false</code> if the parser does not report byte offsets, as for documents it
+     *     decodes as characters; the job cannot be checkpointed.
+     */
+    public boolean track(XmlCursor cursor) throws XMLStreamException {
+      if (cursor.isStartElement()) {
+        long start = this.location.getStartingByteOffset();
+        if (start < 0) {
+          return false;
+        }
 
-    public ShreddingContext(XMLEventReader xmlEventReader, XmlEventProcessor xmlEventProcessor) {
-      this.xmlEventReader = xmlEventReader;
-      this.xmlEventProcessor = xmlEventProcessor;
+        if (this.depth == this.names.length) {
+          int capacity = this.depth * 2;
+          this.names = Arrays.copyOf(this.names, capacity);
+          this.starts = Arrays.copyOf(this.starts, capacity);
+          this.ends = Arrays.copyOf(this.ends, capacity);
+        }
+        this.names[this.depth] = cursor.getLocalName();
+        this.starts[this.depth] = this.toFileOffset(start, false);
+        this.ends[this.depth] = this.toFileOffset(this.location.getEndingByteOffset(), true);
+        this.depth++;
+      } else if (cursor.isEndElement()) {
+        this.depth--;
+      }
+
+      return true;
     }
 
-    public XMLEventReader getXmlEventReader() {
-      return xmlEventReader;
+    /**
+     * Determines if a checkpoint is due: the cursor is on an end tag inside the root element, at
+     * least <code>interval</code> bytes past the last checkpoint.
+     */
+    public boolean isDue(XmlCursor cursor, long interval) throws XMLStreamException {
+      return cursor.isEndElement()
+          && this.depth > 0
+          && this.toFileOffset(this.location.getEndingByteOffset(), true) - this.lastCheckpoint
+              >= interval;
+    }
+
+    /** Marks a checkpoint at the current end tag and returns its offset. */
+    public long mark() throws XMLStreamException {
+      this.lastCheckpoint = this.toFileOffset(this.location.getEndingByteOffset(), true);
+      return this.lastCheckpoint;
+    }
+
+    public List<Checkpoint.OpenElement> getOpenElements() {
+      var openElements = new ArrayList<Checkpoint.OpenElement>(this.depth);
+      for (int i = 0; i < this.depth; i++) {
+        openElements.add(new Checkpoint.OpenElement(this.names[i], this.starts[i], this.ends[i]));
+      }
+
+      return openElements;
     }
 
-    public XmlEventProcessor getXmlEventProcessor() {
-      return xmlEventProcessor;
+    /**
+     * Translates a parser offset to a file offset. An offset on a segment boundary is the end of
+     * one segment and the start of the next, so ends are resolved against the earlier segment.
+     */
+    private long toFileOffset(long streamOffset, boolean end) {
+      int segment = this.segmentStreamStarts.length - 1;
+      while (segment > 0
+          && (end
+              ? this.segmentStreamStarts[segment] >= streamOffset
+              : this.segmentStreamStarts[segment] > streamOffset)) {
+        segment--;
+      }
+
+      return this.segmentFileStarts[segment] + streamOffset - this.segmentStreamStarts[segment];
     }
   }
 
   // Fields
   private static final Logger LOGGER = LoggerFactory.getLogger(XmlShredderVerticle.class);
 
-  private List<XmlEventProcessorProviderSPI> providers = new ArrayList<>();
-  private Map<Integer, ShreddingContext> contexts = new HashMap<>();
+  private static final int DEFAULT_INPUT_BUFFER_SIZE = 256 * 1024;
+  private static final long DEFAULT_MMAP_THRESHOLD = 64L * 1024 * 1024;
+  private static final int DEFAULT_MMAP_REGION_SIZE = 256 * 1024 * 1024;
 
-  private final String privateNextAddress = "xml.shred.next." + this.hashCode();
-  private final String privateEndAddress = "xml.shred.end." + this.hashCode();
-  private final String privateErrorAddress = "xml.shred.error." + this.hashCode();
+  private static final long DEFAULT_SPLIT_MIN_FILE_SIZE = 256L * 1024 * 1024;
+
+  private Map<Integer, ShreddingContext> contexts = new HashMap<>();
+  private WeightedRoundRobinQueue<Integer> runQueue;
+  private boolean sliceScheduled = false;
+  private XMLInputFactory inputFactory;
+  private int inputBufferSize;
+  private long mmapThreshold;
+  private int mmapRegionSize;
+  private Set<String> splitRecordElements = new HashSet<>();
+  private long splitMinFileSize;
+  private int splitPartCount;
 
   // Constructors
   public XmlShredderVerticle() {}
@@ -56,143 +276,441 @@ public class XmlShredderVerticle extends AbstractVerticle {
   // Vert.x lifecycle methods
   @Override
   public void start(Promise<Void> startPromise) {
-    LOGGER.info("Starting XML Shredder verticle.");
-
-    // Via the Java Service Loader, load all content handler providers.
-    getVertx()
-        .executeBlocking(
-            this::loadContentHandlers,
-            result -> {
-              if (result.succeeded()) {
-                // Registering shredding handler.
-                getVertx().eventBus().consumer("xml.shred", this::shredDocument);
-                LOGGER.debug("Registered interest in 'xml.shred' address.");
-
-                // Create private address for XML event iteration.
-                getVertx().eventBus().consumer(this.privateNextAddress, this::nextElement);
-                getVertx().eventBus().consumer(this.privateEndAddress, this::endShredding);
-                getVertx().eventBus().consumer(this.privateErrorAddress, this::handleError);
-                LOGGER.debug("Registered private event bus addresses.");
-
-                startPromise.complete();
-              } else {
-                startPromise.fail("Unable to initialize XML Shredder verticle.");
-              }
-            });
-  }
-
-  // Initialization
-  private void loadContentHandlers(Promise<Object> promise) {
-    LOGGER.debug("Loading content handler providers from classpath.");
+    this.inputFactory = XMLInputFactory.newInstance();
+    this.inputBufferSize = config().getInteger("input-buffer-size", DEFAULT_INPUT_BUFFER_SIZE);
+    this.mmapThreshold = config().getLong("input-mmap-threshold", DEFAULT_MMAP_THRESHOLD);
+    this.mmapRegionSize = config().getInteger("input-mmap-region-size", DEFAULT_MMAP_REGION_SIZE);
+    this.runQueue = WeightedRoundRobinQueue.forJobs(config());
+
+    config()
+        .getJsonArray("split-record-elements", new JsonArray())
+        .forEach(name -> this.splitRecordElements.add(name.toString()));
+    this.splitMinFileSize = config().getLong("split-min-file-size", DEFAULT_SPLIT_MIN_FILE_SIZE);
+    this.splitPartCount =
+        config().getInteger("split-part-count", config().getInteger("shred-verticle-count", 1));
+
+    super.start(startPromise);
+  }
+
+  // AbstractXmlShredderVerticle
+  @Override
+  protected boolean supportsCheckpoints() {
+    return true;
+  }
 
+  @Override
+  protected boolean trySplit(JsonObject request) {
+    if (this.splitRecordElements.isEmpty()
+        || this.splitPartCount < 2
+        || request.containsKey("part")) {
+      return false;
+    }
+
+    var jobId = request.getInteger("job-id");
+    var path = Path.of(request.getString("path-to-file"));
     try {
-      var loader = ServiceLoader.load(XmlEventProcessorProviderSPI.class);
+      if (Files.size(path) < this.splitMinFileSize) {
+        return false;
+      }
 
-      if (loader != null) {
-        for (XmlEventProcessorProviderSPI provider : loader) {
-          LOGGER.debug("Adding '{}' to provider list.", provider.getName());
-          this.providers.add(provider);
-        }
-      } else {
-        LOGGER.warn(
-            "No content handler providers registered in class path; shredding is disabled.");
+      // Record boundaries cannot be found by scanning compressed bytes.
+      if (Compression.detect(path) != Compression.NONE) {
+        LOGGER.info("Document '{}' is compressed; job {} will not be split.", path, jobId);
+        return false;
+      }
+
+      var split = RecordBoundaryScanner.scan(path, this.splitRecordElements, this.splitPartCount);
+      if (split.isEmpty()) {
+        LOGGER.info("No record boundaries found in '{}'; job {} will not be split.", path, jobId);
+        return false;
+      }
+
+      this.submitParts(request, split.get());
+      return true;
+    } catch (IOException e) {
+      LOGGER.warn("Unable to scan '" + path + "' for record boundaries; job will not be split.", e);
+      return false;
+    }
+  }
+
+  @Override
+  protected void beginShredding(JsonObject request, XmlStreamProcessor processor) {
+    var jobId = request.getInteger("job-id");
+    var pathToFile = request.getString("path-to-file");
+    var part = request.getJsonObject("part");
+
+    var resumePoint = this.getResumePoint(jobId).orElse(null);
+
+    InputStream inputStream = null;
+    var sources = new ArrayList<FileChannelInputStream>(2);
+    try {
+      inputStream = this.openInput(request, resumePoint, sources);
+      var xmlStreamReader = this.createReader(inputStream);
+      var cursor = new XmlCursor(xmlStreamReader, SymbolTable.shared());
+
+      var priority = this.runQueue.classify(request.getString(PRIORITY));
+      var context =
+          new ShreddingContext(inputStream, sources, xmlStreamReader, cursor, processor, priority);
+      // Only a whole document read straight from the file has offsets a checkpoint can resume at.
+      boolean wholeFile = resumePoint != null || inputStream instanceof FileChannelInputStream;
+      if (part == null
+          && wholeFile
+          && xmlStreamReader instanceof XMLStreamReader2
+          && this.isCheckpointable(jobId)) {
+        context.setCheckpointTracker(
+            new CheckpointTracker(
+                Path.of(pathToFile),
+                ((XMLStreamReader2) xmlStreamReader).getLocationInfo(),
+                resumePoint));
       }
-      promise.complete();
+
+      this.contexts.put(jobId, context);
+      this.makeRunnable(jobId, context);
+      LOGGER.info(
+          "Begin shredding for XML document '{}' (job = {}, priority = {})",
+          pathToFile,
+          jobId,
+          priority);
     } catch (Exception e) {
-      LOGGER.error("Unable to load content handlers; shredding is disabled.", e);
-      promise.fail(e);
-    }
-  }
-
-  // Vert.x handlers
-  private void shredDocument(Message<JsonObject> message) {
-    LOGGER.debug("Attempting to shred document.");
-
-    // Find the first content provider that supports the specified doc type.
-    var docType = message.body().getString("doc-type");
-    var jobId = message.body().getInteger("job-id");
-
-    LOGGER.debug("Looking for a content handler provider .");
-
-    Optional<XmlEventProcessorProviderSPI> provider =
-        this.providers.stream().filter(p -> p.handlesDocType(docType)).findFirst();
-    provider.ifPresent(
-        p -> {
-          var pathToFile = message.body().getString("path-to-file");
-
-          var processorContext =
-              new XmlEventProcessorContext(
-                  jobId,
-                  getVertx().eventBus(),
-                  this.privateNextAddress,
-                  this.privateEndAddress,
-                  this.privateErrorAddress);
-          var processor = p.provide(processorContext);
-
-          try {
-            var factory = XMLInputFactory.newInstance();
-            var xmlEventReader =
-                factory.createXMLEventReader(new BufferedReader(new FileReader(pathToFile)));
-
-            this.contexts.put(jobId, new ShreddingContext(xmlEventReader, processor.get()));
-            vertx.eventBus().send(this.privateNextAddress, new JsonObject().put("job-id", jobId));
-            LOGGER.info("Begin shredding for XML document '{}' (job = {})", pathToFile, jobId);
-          } catch (Exception e) {
-            LOGGER.error("Unable to parse document '" + pathToFile + "'.", e);
-          }
-        });
+      LOGGER.error("Unable to parse document '" + pathToFile + "'.", e);
+      closeQuietly(inputStream);
+      this.sendError(jobId, "Unable to parse document: " + e.getMessage());
+    }
   }
 
-  private void nextElement(Message<JsonObject> message) {
-    var jobId = message.body().getInteger("job-id");
+  /**
+   * Opens the input a request describes: one part of a split document, a document resumed at a
+   * checkpoint, or a whole document. Any file streams are added to <code>sources</code>.
+   *
+   * @param request The <code>xml.shred</code> request.
+   * @param resumePoint The checkpoint at which to resume, or <code>null</code>.
+   * @param sources Receives the file streams the input reads from.
+   * @return The input.
+   * @throws IOException if the document cannot be opened.
+   */
+  protected InputStream openInput(
+      JsonObject request, Checkpoint resumePoint, List<FileChannelInputStream> sources)
+      throws IOException {
+    var jobId = request.getInteger("job-id");
+    var path = Path.of(request.getString("path-to-file"));
+    var part = request.getJsonObject("part");
+    if (part != null) {
+      return this.openPart(path, part, sources);
+    } else if (resumePoint != null) {
+      return this.openResumed(path, resumePoint, sources);
+    } else {
+      return this.openDocument(jobId, path, request, sources);
+    }
+  }
 
-    LOGGER.debug("Received nextElement() for job {}.", jobId);
-    var context = this.contexts.get(jobId);
+  /**
+   * Creates a reader over a document's bytes, letting the parser detect the document's encoding
+   * from its BOM or XML declaration.
+   */
+  protected XMLStreamReader createReader(InputStream inputStream) throws XMLStreamException {
+    return this.inputFactory.createXMLStreamReader(inputStream);
+  }
 
-    if (context.getXmlEventReader().hasNext()) {
-      try {
-        XMLEvent event = context.getXmlEventReader().nextEvent();
-        context.getXmlEventProcessor().process(event);
-      } catch (XMLStreamException e) {
-        LOGGER.error("XML stream processing raised an exception.", e);
+  private void submitParts(JsonObject request, RecordBoundaryScanner.Split split) {
+    var jobId = request.getInteger("job-id");
+    int partCount = split.getPartCount();
+    LOGGER.info(
+        "Splitting document '{}' (job = {}) into {} part(s).",
+        request.getString("path-to-file"),
+        jobId,
+        partCount);
+
+    var successors = new ArrayList<JsonObject>(partCount);
+    for (int i = 0; i < partCount; i++) {
+      long start = i == 0 ? 0L : split.getBoundaries().get(i - 1);
+      long end = i == partCount - 1 ? split.getFileSize() : split.getBoundaries().get(i);
+
+      var part =
+          new JsonObject()
+              .put("parent-job-id", jobId)
+              .put("part-index", i)
+              .put("part-count", partCount)
+              .put("start", start)
+              .put("end", end)
+              .put("size", split.getFileSize())
+              .put("prolog-end", split.getPrologEnd())
+              .put("root-name", split.getRootName());
+      successors.add(request.copy().put("job-id", JobIds.next()).put("part", part));
+    }
+    this.submitSuccessors(request, successors);
+  }
 
-        // Notify the error handler
-        this.getVertx()
-            .eventBus()
-            .send(
-                this.privateErrorAddress,
-                new JsonObject().put("job-id", jobId).put("error-message", e.getMessage()));
-      }
+  /**
+   * Opens a whole document. A compressed document is decompressed on its own thread, and the
+   * returned stream reads from that thread's buffers; a zip archive's entry is named by the
+   * request's <code>zip-entry</code>, or is the archive's only file. Any file stream is added to
+   * <code>sources</code>.
+   */
+  private InputStream openDocument(
+      Integer jobId, Path path, JsonObject request, List<FileChannelInputStream> sources)
+      throws IOException {
+    var compression = Compression.detect(path);
+    if (compression == Compression.ZIP) {
+      var entry = request.getString("zip-entry");
+      return this.decompress(jobId, () -> Compression.openEntry(path, entry)).inputStream();
     }
+
+    var source =
+        FileChannelInputStream.open(
+            path, this.inputBufferSize, this.mmapThreshold, this.mmapRegionSize);
+    sources.add(source);
+    if (compression == Compression.NONE) {
+      return source;
+    }
+
+    LOGGER.debug("Decompressing {} document '{}' (job = {}).", compression, path, jobId);
+    return this.decompress(jobId, () -> compression.decompress(source)).inputStream();
   }
 
-  private void endShredding(Message<JsonObject> message) {
-    var jobId = message.body().getInteger("job-id");
+  /**
+   * Opens one part of a split document. Every part but the first is preceded by the document's
+   * prolog and root start tag, which carry its encoding and namespace context, and every part but
+   * the last is followed by a synthetic root end tag. The file streams are added to <code>sources
+   * </code>.
+   */
+  private InputStream openPart(Path path, JsonObject part, List<FileChannelInputStream> sources)
+      throws IOException {
+    long start = part.getLong("start");
+    long end = part.getLong("end");
+    var streams = new ArrayList<InputStream>(3);
+
+    try {
+      if (start > 0) {
+        sources.add(
+            FileChannelInputStream.open(
+                path,
+                0L,
+                part.getLong("prolog-end"),
+                this.inputBufferSize,
+                this.mmapThreshold,
+                this.mmapRegionSize));
+      }
+      sources.add(
+          FileChannelInputStream.open(
+              path, start, end, this.inputBufferSize, this.mmapThreshold, this.mmapRegionSize));
+      streams.addAll(sources);
+      if (end < part.getLong("size")) {
+        var endTag = "</" + part.getString("root-name") + ">";
+        streams.add(new ByteArrayInputStream(endTag.getBytes(StandardCharsets.UTF_8)));
+      }
+    } catch (IOException e) {
+      sources.forEach(XmlShredderVerticle::closeQuietly);
+      throw e;
+    }
 
-    LOGGER.info("Shredding completed for job {}. Cleaning up context.", jobId);
-    this.cleanupContext(jobId);
+    return new SequenceInputStream(Collections.enumeration(streams));
   }
 
-  private void handleError(Message<JsonObject> message) {
-    var jobId = message.body().getInteger("job-id");
-    var error = message.body().getString("error-message");
+  /**
+   * Opens a document at a checkpoint. The stream replays the document from its start through the
+   * root's start tag, then the start tag of each deeper element that was open, then continues from
+   * the checkpoint's offset. The file streams are added to <code>sources</code>.
+   */
+  private InputStream openResumed(
+      Path path, Checkpoint checkpoint, List<FileChannelInputStream> sources) throws IOException {
+    var openElements = checkpoint.getOpenElements();
+
+    try {
+      for (int i = 0; i < openElements.size(); i++) {
+        sources.add(
+            FileChannelInputStream.open(
+                path,
+                i == 0 ? 0L : openElements.get(i).getStart(),
+                openElements.get(i).getEnd(),
+                this.inputBufferSize,
+                this.mmapThreshold,
+                this.mmapRegionSize));
+      }
+      sources.add(
+          FileChannelInputStream.open(
+              path,
+              checkpoint.getOffset(),
+              checkpoint.getDocumentSize(),
+              this.inputBufferSize,
+              this.mmapThreshold,
+              this.mmapRegionSize));
+    } catch (IOException e) {
+      sources.forEach(XmlShredderVerticle::closeQuietly);
+      throw e;
+    }
 
-    LOGGER.warn("Shredding for job {} terminated with an error: {}", jobId,error);
-    this.cleanupContext(jobId);
+    return new SequenceInputStream(Collections.enumeration(new ArrayList<InputStream>(sources)));
   }
 
-  private void cleanupContext(Integer jobId){
+  @Override
+  protected void continueShredding(Integer jobId) {
     var context = this.contexts.get(jobId);
+
+    if (context != null) {
+      this.makeRunnable(jobId, context);
+    } else {
+      LOGGER.warn("Received nextElement() for unknown job {}.", jobId);
+    }
+  }
+
+  /**
+   * Queues a job for its next time slice, unless it is already waiting for one, and makes sure a
+   * slice will run.
+   */
+  private void makeRunnable(Integer jobId, ShreddingContext context) {
+    if (!context.isRunnable()) {
+      context.setRunnable(true);
+      this.runQueue.addLast(context.getPriority(), jobId);
+    }
+    this.scheduleSlice();
+  }
+
+  /**
+   * Runs the next time slice on a later turn of this verticle's context, so that messages such as
+   * credit grants and job requests are handled between slices. At most one slice is scheduled at
+   * a time.
+   */
+  private void scheduleSlice() {
+    if (!this.sliceScheduled && !this.runQueue.isEmpty()) {
+      this.sliceScheduled = true;
+      this.context.runOnContext(v -> this.runSlice());
+    }
+  }
+
+  private void runSlice() {
+    this.sliceScheduled = false;
+    var jobId = this.runQueue.poll();
+    if (jobId == null) {
+      return;
+    }
+
     try {
-      context.getXmlEventReader().close();
+      var context = this.contexts.get(jobId);
+      context.setRunnable(false);
+      this.pump(jobId, context);
+    } catch (RuntimeException e) {
+      LOGGER.error("A processor for job " + jobId + " raised an exception.", e);
+      this.sendError(jobId, "Processor failed: " + e.getMessage());
+    } finally {
+      // The other jobs must keep running whatever became of this one.
+      this.scheduleSlice();
+    }
+  }
+
+  /**
+   * Drains events from a job's reader until the batch is exhausted, the time budget expires, the
+   * processor signals backpressure, or the document ends. Only when the budget runs out does the
+   * pump put the job back in the run queue, behind the others of its class; when the processor
+   * applies backpressure it becomes responsible for resuming the job. Subtrees the
+   * processor declines are skipped in the tokenizer and count as a single event. When a checkpoint
+   * falls due, the pump stops until it has been saved.
+   *
+   * @param jobId The job identifier.
+   * @param context The job's shredding context.
+   */
+  private void pump(Integer jobId, ShreddingContext context) {
+    var cursor = context.getCursor();
+    var processor = context.getXmlStreamProcessor();
+    var tracker = context.getCheckpointTracker();
+    long deadline = System.nanoTime() + this.batchTimeBudgetNanos;
+    int processed = 0;
+
+    try {
+      // A new reader is already positioned on START_DOCUMENT.
+      if (!context.isStarted()) {
+        context.setStarted(true);
+        if (!processor.process(cursor)) {
+          return;
+        }
+      }
+
+      while (cursor.hasNext()) {
+        cursor.advance();
+        if (tracker != null && !tracker.track(cursor)) {
+          LOGGER.info("The parser reports no byte offsets; job {} cannot be checkpointed.", jobId);
+          context.setCheckpointTracker(null);
+          tracker = null;
+        }
+        if (!processor.process(cursor)) {
+          // The processor will resume the job (or has finished it).
+          return;
+        }
+        if (cursor.isStartElement() && processor.skipsSubtree()) {
+          cursor.skipElement();
+        }
+        if (tracker != null && tracker.isDue(cursor, this.checkpointIntervalBytes)) {
+          processed++;
+          this.checkpoint(jobId, tracker);
+          return;
+        }
+
+        processed++;
+        if (processed >= this.batchSize
+            || (processed % CLOCK_CHECK_INTERVAL == 0 && System.nanoTime() >= deadline)) {
+          break;
+        }
+      }
+
+      if (cursor.hasNext()) {
+        LOGGER.debug("Batch budget exhausted for job {}; yielding to other jobs.", jobId);
+        this.makeRunnable(jobId, context);
+      }
+    } catch (XMLStreamException e) {
+      LOGGER.error("XML stream processing raised an exception.", e);
+
+      // Notify the error handler
+      this.sendError(jobId, e.getMessage());
+    } finally {
+      this.metrics.eventsParsed(processed);
+      this.metrics.bytesRead(context.takeBytesRead());
+    }
+  }
+
+  private void checkpoint(Integer jobId, CheckpointTracker tracker) throws XMLStreamException {
+    this.saveCheckpoint(
+        jobId,
+        tracker.document,
+        tracker.mark(),
+        tracker.getOpenElements(),
+        () -> {
+          var context = this.contexts.get(jobId);
+          if (context != null) {
+            this.makeRunnable(jobId, context);
+          }
+        });
+  }
+
+  @Override
+  protected void cleanupContext(Integer jobId) {
+    var context = this.contexts.remove(jobId);
+    if (context == null) {
+      return;
+    }
+    if (context.isRunnable()) {
+      this.runQueue.remove(context.getPriority(), jobId);
+    }
+
+    try {
+      context.getXmlStreamReader().close();
     } catch (XMLStreamException e) {
       LOGGER.error(
-              "Received an exception closing the XML stream reader for job "
-                      + jobId
-                      + "; cleanup will continue.",
-              e);
+          "Received an exception closing the XML stream reader for job "
+              + jobId
+              + "; cleanup will continue.",
+          e);
     }
 
-    this.contexts.remove(jobId);
+    // Closing a StAX reader does not close its underlying stream.
+    closeQuietly(context.getInputStream());
+  }
+
+  protected static void closeQuietly(InputStream inputStream) {
+    if (inputStream != null) {
+      try {
+        inputStream.close();
+      } catch (IOException e) {
+        LOGGER.warn("Unable to close document input stream.", e);
+      }
+    }
   }
 }
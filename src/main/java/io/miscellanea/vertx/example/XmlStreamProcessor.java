@@ -0,0 +1,34 @@
+package io.miscellanea.vertx.example;
+
+/**
+ * Implemented by classes that process XML documents through the shredder's cursor. Unlike <code>
+ * XmlEventProcessor</code>, no event object is allocated per node: the shredder presents the same
+ * <code>XmlCursor</code> for every event, positioned on the current one.
+ *
+ * @author Jason Hallford
+ */
+public interface XmlStreamProcessor {
+  /**
+   * Processes the event on which the cursor is positioned. The cursor is only valid for the duration
+   * of the call; processors must copy anything they need to retain.
+   *
+   * @param cursor The shredder's cursor.
+   * @return <code>true</code> if the shredder may immediately deliver the next event; <code>false
+   *     </code> if the processor is applying backpressure (or has finished the document), in which
+   *     case it is responsible for resuming the job by sending a message to the context's next
+   *     address.
+   */
+  boolean process(XmlCursor cursor);
+
+  /**
+   * Determines if the processor has no interest in anything below the element it was just given.
+   * The shredder asks after each <code>START_ELEMENT</code> the processor accepted; if the answer is
+   * <code>true</code>, it skips the element's subtree in the tokenizer and next presents the
+   * element's <code>END_ELEMENT</code>.
+   *
+   * @return <code>true</code> if the current element's subtree may be skipped.
+   */
+  default boolean skipsSubtree() {
+    return false;
+  }
+}
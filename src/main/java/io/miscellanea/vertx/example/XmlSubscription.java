@@ -0,0 +1,93 @@
+package io.miscellanea.vertx.example;
+
+import javax.xml.stream.XMLStreamConstants;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Declares the events a processor wants to see: the event kinds it handles and the element paths
+ * whose subtrees it is interested in. Paths use a small, streaming subset of XPath:
+ *
+ * <ul>
+ *   <li><code>/feed/record</code> selects <code>record</code> children of the root <code>feed
+ *       </code> element;
+ *   <li><code>*</code> matches an element of any name, so <code>/feed/record/*</code> selects every
+ *       child of a record;
+ *   <li><code>//</code> matches at any depth, so <code>//name</code> selects every <code>name
+ *       </code> element and <code>//*</code> selects every element.
+ * </ul>
+ *
+ * Steps match an element's local name. A selected element is delivered with its whole subtree,
+ * less the event kinds the processor did not ask for. <code>START_DOCUMENT</code> and <code>
+ * END_DOCUMENT</code> are always delivered, and other events outside the root element are delivered
+ * if their kind was asked for.
+ *
+ * @author Jason Hallford
+ */
+public final class XmlSubscription {
+  // Fields
+  private static final int ALL_EVENTS = -1;
+  private static final String EVERY_ELEMENT = "//*";
+
+  /** Every event of every element: the subscription of a processor that does not declare one. */
+  public static final XmlSubscription ALL = new XmlSubscription(ALL_EVENTS, List.of(EVERY_ELEMENT));
+
+  private final int eventMask;
+  private final List<String> paths;
+
+  // Constructors
+  private XmlSubscription(int eventMask, List<String> paths) {
+    assert paths != null && !paths.isEmpty() : "paths must not be empty.";
+    this.eventMask =
+        eventMask
+            | 1 << XMLStreamConstants.START_DOCUMENT
+            | 1 << XMLStreamConstants.END_DOCUMENT;
+    this.paths = List.copyOf(paths);
+  }
+
+  // Factory methods
+
+  /**
+   * Creates a subscription.
+   *
+   * @param eventTypes The <code>XMLStreamConstants</code> event types to deliver.
+   * @param paths The paths of the elements whose subtrees to deliver.
+   * @return The subscription.
+   */
+  public static XmlSubscription of(Collection<Integer> eventTypes, String... paths) {
+    assert eventTypes != null : "eventTypes must not be null.";
+
+    int eventMask = 0;
+    for (int eventType : eventTypes) {
+      eventMask |= 1 << eventType;
+    }
+    return new XmlSubscription(eventMask, List.of(paths));
+  }
+
+  // Properties
+  public List<String> getPaths() {
+    return this.paths;
+  }
+
+  public boolean includes(int eventType) {
+    return (this.eventMask & 1 << eventType) != 0;
+  }
+
+  /**
+   * Determines if this subscription delivers every event, in which case it needs no filter.
+   *
+   * @return <code>true</code> if nothing is filtered; otherwise, <code>false</code>.
+   */
+  public boolean isAll() {
+    return this.eventMask == ALL_EVENTS && this.paths.contains(EVERY_ELEMENT);
+  }
+
+  @Override
+  public String toString() {
+    return "XmlSubscription{eventMask="
+        + Integer.toBinaryString(this.eventMask)
+        + ", paths="
+        + this.paths
+        + "}";
+  }
+}
@@ -0,0 +1,99 @@
+package io.miscellanea.vertx.example;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.json.JsonObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests <code>ResultCache</code>: the memory tier's byte accounting and least recently used
+ * eviction, and the disk tier's round trip.
+ *
+ * @author Jason Hallford
+ */
+public class ResultCacheTest {
+  // Fields
+  private static final JsonObject RESULT =
+      new JsonObject().put("tags", new JsonObject().put("a", 1));
+  private static final JsonObject LARGER_RESULT =
+      new JsonObject().put("tags", new JsonObject().put("a", 1).put("b", 2));
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  // Tests
+  @Test
+  public void countsTheBytesOfEachEntryOnce() {
+    long entrySize = sizeOf("k1", RESULT);
+    var cache = newCache(10 * entrySize);
+
+    cache.put("k1", RESULT);
+    cache.put("k2", RESULT);
+    assertEquals(2 * entrySize, cache.getBytes());
+
+    // Replacing an entry swaps its size for the new one's rather than adding to it.
+    cache.put("k1", LARGER_RESULT);
+    assertEquals(entrySize + sizeOf("k1", LARGER_RESULT), cache.getBytes());
+    cache.put("k1", RESULT);
+    assertEquals(2 * entrySize, cache.getBytes());
+  }
+
+  @Test
+  public void evictsTheLeastRecentlyUsedEntry() {
+    long entrySize = sizeOf("k1", RESULT);
+    var cache = newCache(2 * entrySize);
+
+    cache.put("k1", RESULT);
+    cache.put("k2", RESULT);
+    assertTrue(cache.get("k1").isPresent());
+    cache.put("k3", RESULT);
+
+    assertEquals(2 * entrySize, cache.getBytes());
+    assertEquals(Optional.of(RESULT), cache.get("k1"));
+    assertFalse(cache.get("k2").isPresent());
+    assertEquals(Optional.of(RESULT), cache.get("k3"));
+  }
+
+  @Test
+  public void skipsAnEntryLargerThanTheMemoryTier() {
+    long entrySize = sizeOf("k1", RESULT);
+    var cache = newCache(entrySize);
+
+    cache.put("k1", RESULT);
+    cache.put("k2", LARGER_RESULT);
+
+    assertEquals(entrySize, cache.getBytes());
+    assertTrue(cache.get("k1").isPresent());
+    assertFalse(cache.get("k2").isPresent());
+  }
+
+  @Test
+  public void promotesAnEntryFoundOnDisk() throws Exception {
+    var directory = folder.newFolder().toPath();
+    long entrySize = sizeOf("k1", RESULT);
+    new ResultCache(entrySize, directory, 4, false, new SimpleMeterRegistry()).put("k1", RESULT);
+
+    var cache = new ResultCache(entrySize, directory, 4, false, new SimpleMeterRegistry());
+    assertEquals(0L, cache.getBytes());
+    assertEquals(Optional.of(RESULT), cache.get("k1"));
+    assertEquals(entrySize, cache.getBytes());
+  }
+
+  // Helper methods
+  private static ResultCache newCache(long maxBytes) {
+    return new ResultCache(maxBytes, null, 4, false, new SimpleMeterRegistry());
+  }
+
+  /** Measures an entry's size as the memory tier accounts for it. */
+  private static long sizeOf(String key, JsonObject result) {
+    var cache = newCache(Long.MAX_VALUE);
+    cache.put(key, result);
+    return cache.getBytes();
+  }
+}
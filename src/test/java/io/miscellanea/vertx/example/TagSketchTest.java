@@ -0,0 +1,143 @@
+package io.miscellanea.vertx.example;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests <code>TagSketch</code>: its estimates against exact counts of a skewed stream of names, the
+ * counts it reports for the most frequent names, and merging.
+ *
+ * @author Jason Hallford
+ */
+public class TagSketchTest {
+  // Fields
+  private static final int TOP_K = 20;
+  private static final double ERROR = 0.001;
+  private static final double CONFIDENCE = 0.99;
+  private static final int DISTINCT_NAMES = 2000;
+  private static final int STREAM_LENGTH = 100_000;
+
+  // Tests
+  @Test
+  public void neverUnderestimatesAndStaysWithinTheErrorBound() {
+    var stream = skewedStream(1L);
+    var sketch = new TagSketch(TOP_K, ERROR, CONFIDENCE);
+    sketch.addAll(stream, stream.length);
+    var counts = countsOf(stream);
+
+    assertEquals(STREAM_LENGTH, sketch.getTotal());
+    long bound = (long) (ERROR * sketch.getTotal());
+    int exceeded = 0;
+    for (var entry : counts.entrySet()) {
+      long estimate = sketch.estimate(entry.getKey());
+      assertTrue(entry.getKey() + " was underestimated", estimate >= entry.getValue());
+      if (estimate - entry.getValue() > bound) {
+        exceeded++;
+      }
+    }
+
+    // The bound may be exceeded only with the probability the confidence leaves.
+    assertTrue(
+        exceeded + " names exceeded the bound", exceeded <= (1.0 - CONFIDENCE) * counts.size());
+  }
+
+  @Test
+  public void reportsTheMostFrequentNamesWithoutUnderestimating() {
+    var stream = skewedStream(2L);
+    var sketch = new TagSketch(TOP_K, ERROR, CONFIDENCE);
+    sketch.addAll(stream, stream.length);
+    var counts = countsOf(stream);
+    var reported = sketch.toMap();
+
+    assertEquals(TOP_K, reported.size());
+    long bound = (long) (ERROR * sketch.getTotal());
+    for (var entry : reported.entrySet()) {
+      long count = counts.getOrDefault(entry.getKey(), 0L);
+      assertTrue(entry.getKey() + " was underestimated", entry.getValue() >= count);
+      assertTrue(entry.getKey() + " exceeded the bound", entry.getValue() - count <= bound);
+    }
+
+    // The heaviest names far outnumber the bound, so none can be missed.
+    for (int i = 0; i < 5; i++) {
+      assertTrue(name(i) + " was not reported", reported.containsKey(name(i)));
+    }
+    assertEquals(name(0), reported.keySet().iterator().next());
+  }
+
+  @Test
+  public void mergesToTheSketchOfBothStreams() {
+    var first = skewedStream(3L);
+    var second = skewedStream(4L);
+
+    var merged = new TagSketch(TOP_K, ERROR, CONFIDENCE);
+    merged.addAll(first, first.length);
+    var other = new TagSketch(TOP_K, ERROR, CONFIDENCE);
+    other.addAll(second, second.length);
+    merged.merge(other);
+
+    var whole = new TagSketch(TOP_K, ERROR, CONFIDENCE);
+    whole.addAll(first, first.length);
+    whole.addAll(second, second.length);
+
+    assertEquals(whole.getTotal(), merged.getTotal());
+    for (int i = 0; i < DISTINCT_NAMES; i++) {
+      assertEquals(whole.estimate(name(i)), merged.estimate(name(i)));
+    }
+    for (var entry : merged.toMap().entrySet()) {
+      assertEquals(whole.estimate(entry.getKey()), (long) entry.getValue());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsAnErrorOutOfRange() {
+    new TagSketch(TOP_K, 1.0, CONFIDENCE);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsAConfidenceOutOfRange() {
+    new TagSketch(TOP_K, ERROR, 0.0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsSketchesWithDifferentParameters() {
+    new TagSketch(TOP_K, ERROR, CONFIDENCE).merge(new TagSketch(TOP_K, ERROR * 2, CONFIDENCE));
+  }
+
+  // Helper methods
+  private static String name(int rank) {
+    return "name" + rank;
+  }
+
+  /** Draws names whose frequencies follow Zipf's law, as element names in real documents do. */
+  private static String[] skewedStream(long seed) {
+    var cumulative = new double[DISTINCT_NAMES];
+    double sum = 0.0;
+    for (int i = 0; i < DISTINCT_NAMES; i++) {
+      sum += 1.0 / (i + 1);
+      cumulative[i] = sum;
+    }
+
+    var random = new Random(seed);
+    var stream = new String[STREAM_LENGTH];
+    for (int i = 0; i < STREAM_LENGTH; i++) {
+      int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+      stream[i] = name(rank >= 0 ? rank : -rank - 1);
+    }
+    return stream;
+  }
+
+  private static Map<String, Long> countsOf(String[] stream) {
+    var counts = new HashMap<String, Long>();
+    for (String name : stream) {
+      counts.merge(name, 1L, Long::sum);
+    }
+    return counts;
+  }
+}
@@ -0,0 +1,107 @@
+package io.miscellanea.vertx.example;
+
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests <code>WeightedRoundRobinQueue</code>: order within a class, shares across classes, and that
+ * a light class is never starved by heavier ones.
+ *
+ * @author Jason Hallford
+ */
+public class WeightedRoundRobinQueueTest {
+  // Fields
+  private static final Map<String, Integer> WEIGHTS = weights();
+  private static final int TOTAL_WEIGHT = 13;
+
+  // Tests
+  @Test
+  public void pollsEachClassInQueueOrder() {
+    var queue = new WeightedRoundRobinQueue<String>(WEIGHTS, "normal");
+    queue.addLast("normal", "a");
+    queue.addLast("normal", "b");
+    queue.addFirst("normal", "c");
+
+    assertEquals("c", queue.poll());
+    assertEquals("a", queue.poll());
+    assertEquals("b", queue.poll());
+    assertNull(queue.poll());
+    assertTrue(queue.isEmpty());
+  }
+
+  @Test
+  public void queuesUnknownClassesInTheDefaultClass() {
+    var queue = new WeightedRoundRobinQueue<String>(WEIGHTS, "normal");
+    queue.addLast("urgent", "a");
+    queue.addLast(null, "b");
+
+    assertEquals("normal", queue.classify("urgent"));
+    assertEquals(2, queue.size());
+    assertTrue(queue.remove("normal", "a"));
+    assertEquals("b", queue.poll());
+    assertEquals(0, queue.size());
+  }
+
+  @Test
+  public void pollsClassesInProportionToTheirWeights() {
+    var queue = this.fill(TOTAL_WEIGHT * 10);
+
+    for (int cycle = 0; cycle < 10; cycle++) {
+      var polled = new LinkedHashMap<String, Integer>();
+      for (int i = 0; i < TOTAL_WEIGHT; i++) {
+        polled.merge(queue.poll(), 1, Integer::sum);
+      }
+      assertEquals(WEIGHTS, polled);
+    }
+  }
+
+  @Test
+  public void neverStarvesALightClass() {
+    var queue = this.fill(TOTAL_WEIGHT * 10);
+
+    // While every class is waiting, the lightest is polled at least once per cycle of turns.
+    int sinceBulk = 0;
+    for (int i = 0; i < TOTAL_WEIGHT * 10; i++) {
+      sinceBulk = "bulk".equals(queue.poll()) ? 0 : sinceBulk + 1;
+      assertTrue("bulk waited " + sinceBulk + " turns", sinceBulk < TOTAL_WEIGHT);
+    }
+  }
+
+  @Test
+  public void drainsTheRemainingClassesOnceOneEmpties() {
+    var queue = new WeightedRoundRobinQueue<String>(WEIGHTS, "normal");
+    queue.addLast("interactive", "interactive");
+    for (int i = 0; i < 3; i++) {
+      queue.addLast("bulk", "bulk");
+    }
+
+    assertEquals("interactive", queue.poll());
+    for (int i = 0; i < 3; i++) {
+      assertEquals("bulk", queue.poll());
+    }
+    assertNull(queue.poll());
+  }
+
+  // Helper methods
+  private static Map<String, Integer> weights() {
+    var weights = new LinkedHashMap<String, Integer>();
+    weights.put("interactive", 8);
+    weights.put("normal", 4);
+    weights.put("bulk", 1);
+    return weights;
+  }
+
+  private WeightedRoundRobinQueue<String> fill(int perClass) {
+    var queue = new WeightedRoundRobinQueue<String>(WEIGHTS, "normal");
+    for (int i = 0; i < perClass; i++) {
+      WEIGHTS.keySet().forEach(name -> queue.addLast(name, name));
+    }
+    return queue;
+  }
+}